@@ -0,0 +1,69 @@
+package io.opentracing.contrib.dropwizard;
+
+import com.sun.jersey.api.core.HttpContext;
+import com.sun.jersey.api.model.AbstractResourceMethod;
+import com.sun.jersey.spi.container.ResourceMethodDispatchAdapter;
+import com.sun.jersey.spi.container.ResourceMethodDispatchProvider;
+import com.sun.jersey.spi.dispatch.RequestDispatcher;
+
+import javax.ws.rs.core.Request;
+import javax.ws.rs.ext.Provider;
+
+/**
+ * When registered to jersey, makes each server request the active request of
+ * the thread invoking its resource method, for ClientTracingFilters built
+ * withActiveRequest.
+ *
+ * The active request is set right before the resource method is invoked and
+ * cleared in a finally block right after, so it is cleared however the
+ * method returns. Response filters, which could clear it otherwise, are
+ * skipped when an exception that no ExceptionMapper maps escapes, which
+ * would leave the request pinned to the pooled thread for the next client
+ * requests made on it.
+ */
+@Provider
+public class ActiveRequestDispatchAdapter implements ResourceMethodDispatchAdapter {
+
+    private final DropWizardTracer tracer;
+
+    /**
+     * @param tracer the tracer of the ClientTracingFilters to set the active
+     *  request for
+     */
+    public ActiveRequestDispatchAdapter(DropWizardTracer tracer) {
+        this.tracer = tracer;
+    }
+
+    @Override
+    public ResourceMethodDispatchProvider adapt(final ResourceMethodDispatchProvider provider) {
+        return new ResourceMethodDispatchProvider() {
+            @Override
+            public RequestDispatcher create(AbstractResourceMethod method) {
+                RequestDispatcher dispatcher = provider.create(method);
+                return dispatcher == null ? null : new ActiveRequestDispatcher(tracer, dispatcher);
+            }
+        };
+    }
+
+    private static final class ActiveRequestDispatcher implements RequestDispatcher {
+
+        private final DropWizardTracer tracer;
+        private final RequestDispatcher dispatcher;
+
+        ActiveRequestDispatcher(DropWizardTracer tracer, RequestDispatcher dispatcher) {
+            this.tracer = tracer;
+            this.dispatcher = dispatcher;
+        }
+
+        @Override
+        public void dispatch(Object resource, HttpContext context) {
+            Request previous = this.tracer.getActiveRequest();
+            this.tracer.setActiveRequest(context.getRequest());
+            try {
+                this.dispatcher.dispatch(resource, context);
+            } finally {
+                this.tracer.setActiveRequest(previous);
+            }
+        }
+    }
+}
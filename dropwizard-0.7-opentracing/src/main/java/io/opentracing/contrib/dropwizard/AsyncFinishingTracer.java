@@ -0,0 +1,459 @@
+package io.opentracing.contrib.dropwizard;
+
+import com.codahale.metrics.Gauge;
+import com.codahale.metrics.Metric;
+import com.codahale.metrics.MetricRegistry;
+import io.dropwizard.lifecycle.Managed;
+import io.opentracing.Span;
+import io.opentracing.SpanContext;
+import io.opentracing.Tracer;
+import io.opentracing.propagation.Format;
+
+import java.util.Map;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.AtomicReferenceArray;
+import java.util.concurrent.locks.LockSupport;
+
+/**
+ * A Tracer that finishes spans on a background thread, so that request
+ * threads never wait for the underlying tracer to encode or report them.
+ *
+ * Finishing a span records its finish timestamp, from the wall clock, and
+ * hands the span to a bounded ring buffer, which a single background thread
+ * drains by finishing the spans of the underlying tracer with their recorded
+ * timestamps. Handing
+ * off takes no lock: request threads claim a slot with one compare-and-set.
+ *
+ * When the ring buffer is full, e.g. because the tracing backend is slow,
+ * spans are dropped (OverflowPolicy.DROP, the default) or finished on the
+ * request thread (OverflowPolicy.FINISH_ON_CALLER), and counted.
+ *
+ * Register it with environment.lifecycle().manage(): the background thread
+ * is started by start(), and stop() finishes the spans still in the ring
+ * buffer. Spans finished after stop() are finished on the calling thread,
+ * and counted as caller finished.
+ *
+ * This tracer is configured and built using AsyncFinishingTracer.Builder
+ */
+public class AsyncFinishingTracer implements Tracer, Managed {
+
+    /**
+     * What to do with a finished span when the ring buffer is full.
+     */
+    public enum OverflowPolicy {
+        /** the span is never finished, so it is not reported */
+        DROP,
+        /** the span is finished on the thread finishing it */
+        FINISH_ON_CALLER
+    }
+
+    private static final long IDLE_NANOS = TimeUnit.MILLISECONDS.toNanos(1);
+
+    private final Tracer tracer;
+    private final OverflowPolicy overflowPolicy;
+    private final int mask;
+    private final AtomicReferenceArray<Span> spans;
+    private final long[] finishMicros;
+    private final AtomicLong tail;
+    private final AtomicLong head;
+    private final AtomicLong droppedSpans;
+    private final AtomicLong callerFinishedSpans;
+    private final Thread finisher;
+    private volatile boolean running;
+    private volatile boolean stopped;
+
+    private AsyncFinishingTracer(Tracer tracer, int capacity, OverflowPolicy overflowPolicy) {
+        this.tracer = tracer;
+        this.overflowPolicy = overflowPolicy;
+        this.mask = capacity - 1;
+        this.spans = new AtomicReferenceArray<Span>(capacity);
+        this.finishMicros = new long[capacity];
+        this.tail = new AtomicLong();
+        this.head = new AtomicLong();
+        this.droppedSpans = new AtomicLong();
+        this.callerFinishedSpans = new AtomicLong();
+        this.running = true;
+        this.finisher = new Thread(new Runnable() {
+            @Override
+            public void run() {
+                drain();
+            }
+        }, "async-span-finisher");
+        this.finisher.setDaemon(true);
+    }
+
+    @Override
+    public SpanBuilder buildSpan(String operationName) {
+        return new AsyncSpanBuilder(this.tracer.buildSpan(operationName));
+    }
+
+    @Override
+    public <C> void inject(SpanContext spanContext, Format<C> format, C carrier) {
+        this.tracer.inject(spanContext, format, carrier);
+    }
+
+    @Override
+    public <C> SpanContext extract(Format<C> format, C carrier) {
+        return this.tracer.extract(format, carrier);
+    }
+
+    /**
+     * @return the number of finished spans waiting to be finished by the
+     *  underlying tracer
+     */
+    public int getQueuedSpanCount() {
+        return (int) (this.tail.get() - this.head.get());
+    }
+
+    /**
+     * @return the number of spans dropped because the ring buffer was full
+     */
+    public long getDroppedSpanCount() {
+        return this.droppedSpans.get();
+    }
+
+    /**
+     * @return the number of spans finished on the calling thread because
+     *  the ring buffer was full
+     */
+    public long getCallerFinishedSpanCount() {
+        return this.callerFinishedSpans.get();
+    }
+
+    /**
+     * Starts the background thread. Spans finished before are kept in the
+     * ring buffer.
+     */
+    @Override
+    public void start() {
+        this.finisher.start();
+    }
+
+    /**
+     * Stops the background thread, then finishes the spans left in the ring
+     * buffer on the calling thread.
+     */
+    @Override
+    public void stop() throws InterruptedException {
+        this.running = false;
+        LockSupport.unpark(this.finisher);
+        this.finisher.join();
+        this.stopped = true;
+        drainStopped();
+    }
+
+    /**
+     * Reads the wall clock tracers start spans with, rather than deriving it
+     * from System.nanoTime(), which drifts away from it over time and doesn't
+     * follow its adjustments, skewing durations.
+     */
+    private static long nowMicros() {
+        return TimeUnit.MILLISECONDS.toMicros(System.currentTimeMillis());
+    }
+
+    /**
+     * Hands span off to the background thread, or applies the overflow
+     * policy if the ring buffer is full.
+     */
+    private void offer(Span span, long finishMicros) {
+        if (this.stopped) {
+            this.callerFinishedSpans.incrementAndGet();
+            span.finish(finishMicros);
+            return;
+        }
+        long tail;
+        do {
+            tail = this.tail.get();
+            if (tail - this.head.get() > this.mask) {
+                if (this.overflowPolicy == OverflowPolicy.FINISH_ON_CALLER) {
+                    this.callerFinishedSpans.incrementAndGet();
+                    span.finish(finishMicros);
+                } else {
+                    this.droppedSpans.incrementAndGet();
+                }
+                return;
+            }
+        } while (!this.tail.compareAndSet(tail, tail + 1));
+        int index = (int) tail & this.mask;
+        this.finishMicros[index] = finishMicros;
+        // publishes finishMicros along with the span
+        this.spans.lazySet(index, span);
+        // stop() may have drained the ring buffer before the slot was claimed
+        if (this.stopped) {
+            drainStopped();
+        }
+    }
+
+    /**
+     * Finishes the spans left in the ring buffer once the background thread
+     * is stopped, on the calling thread.
+     */
+    private synchronized void drainStopped() {
+        while (poll()) {
+            // finish what was handed off while stopping
+        }
+    }
+
+    /**
+     * Finishes the oldest handed off span, if any.
+     * @return false if the ring buffer is empty
+     */
+    private boolean poll() {
+        long head = this.head.get();
+        int index = (int) head & this.mask;
+        Span span = this.spans.get(index);
+        if (span == null) {
+            if (head == this.tail.get()) {
+                return false;
+            }
+            // a slot was claimed but its span is not published yet
+            Thread.yield();
+            return true;
+        }
+        long finishMicros = this.finishMicros[index];
+        this.spans.lazySet(index, null);
+        this.head.lazySet(head + 1);
+        try {
+            span.finish(finishMicros);
+        } catch (RuntimeException e) {
+            // a failing span must not stop the finisher
+        }
+        return true;
+    }
+
+    private void drain() {
+        while (this.running) {
+            if (!poll()) {
+                LockSupport.parkNanos(IDLE_NANOS);
+            }
+        }
+    }
+
+    private final class AsyncSpanBuilder implements SpanBuilder {
+
+        private final SpanBuilder builder;
+
+        AsyncSpanBuilder(SpanBuilder builder) {
+            this.builder = builder;
+        }
+
+        @Override
+        public SpanBuilder asChildOf(SpanContext parent) {
+            this.builder.asChildOf(parent);
+            return this;
+        }
+
+        @Override
+        public SpanBuilder asChildOf(Span parent) {
+            this.builder.asChildOf(parent instanceof AsyncSpan ? ((AsyncSpan) parent).span : parent);
+            return this;
+        }
+
+        @Override
+        public SpanBuilder addReference(String referenceType, SpanContext referencedContext) {
+            this.builder.addReference(referenceType, referencedContext);
+            return this;
+        }
+
+        @Override
+        public SpanBuilder withTag(String key, String value) {
+            this.builder.withTag(key, value);
+            return this;
+        }
+
+        @Override
+        public SpanBuilder withTag(String key, boolean value) {
+            this.builder.withTag(key, value);
+            return this;
+        }
+
+        @Override
+        public SpanBuilder withTag(String key, Number value) {
+            this.builder.withTag(key, value);
+            return this;
+        }
+
+        @Override
+        public SpanBuilder withStartTimestamp(long microseconds) {
+            this.builder.withStartTimestamp(microseconds);
+            return this;
+        }
+
+        @Override
+        public Span start() {
+            return new AsyncSpan(this.builder.start());
+        }
+
+        @Override
+        public Iterable<Map.Entry<String, String>> baggageItems() {
+            return this.builder.baggageItems();
+        }
+    }
+
+    private final class AsyncSpan implements Span {
+
+        private final Span span;
+
+        AsyncSpan(Span span) {
+            this.span = span;
+        }
+
+        @Override
+        public SpanContext context() {
+            return this.span.context();
+        }
+
+        @Override
+        public void finish() {
+            offer(this.span, nowMicros());
+        }
+
+        @Override
+        public void finish(long finishMicros) {
+            offer(this.span, finishMicros);
+        }
+
+        @Override
+        public void close() {
+            finish();
+        }
+
+        @Override
+        public Span setTag(String key, String value) {
+            this.span.setTag(key, value);
+            return this;
+        }
+
+        @Override
+        public Span setTag(String key, boolean value) {
+            this.span.setTag(key, value);
+            return this;
+        }
+
+        @Override
+        public Span setTag(String key, Number value) {
+            this.span.setTag(key, value);
+            return this;
+        }
+
+        @Override
+        public Span log(String eventName, Object payload) {
+            this.span.log(eventName, payload);
+            return this;
+        }
+
+        @Override
+        public Span log(long timestampMicroseconds, String eventName, Object payload) {
+            this.span.log(timestampMicroseconds, eventName, payload);
+            return this;
+        }
+
+        @Override
+        public Span setBaggageItem(String key, String value) {
+            this.span.setBaggageItem(key, value);
+            return this;
+        }
+
+        @Override
+        public String getBaggageItem(String key) {
+            return this.span.getBaggageItem(key);
+        }
+    }
+
+    /**
+     * Use this class to configure and build an AsyncFinishingTracer
+     */
+    public static class Builder {
+
+        private final Tracer tracer;
+        private int capacity;
+        private OverflowPolicy overflowPolicy;
+        private MetricRegistry metricRegistry;
+
+        /**
+         * @param tracer the io.opentracing.Tracer to finish spans of
+         */
+        public Builder(Tracer tracer) {
+            this.tracer = tracer;
+            this.capacity = 8192;
+            this.overflowPolicy = OverflowPolicy.DROP;
+        }
+
+        /**
+         * @param capacity the number of finished spans the ring buffer holds,
+         *  rounded up to a power of two. Defaults to 8192
+         * @return Builder configured with added capacity
+         */
+        public Builder withCapacity(int capacity) {
+            this.capacity = capacity;
+            return this;
+        }
+
+        /**
+         * @param overflowPolicy what to do with finished spans when the ring
+         *  buffer is full. Defaults to OverflowPolicy.DROP
+         * @return Builder configured with added overflowPolicy
+         */
+        public Builder withOverflowPolicy(OverflowPolicy overflowPolicy) {
+            this.overflowPolicy = overflowPolicy;
+            return this;
+        }
+
+        /**
+         * Registers gauges of the queued, dropped and caller finished spans, as
+         * "io.opentracing.contrib.dropwizard.DropWizardTracer.overhead.[queuedSpans|droppedSpans|callerFinishedSpans]"
+         * @param metricRegistry to register the gauges to, e.g. environment.metrics()
+         * @return Builder configured with added metricRegistry
+         */
+        public Builder withMetricRegistry(MetricRegistry metricRegistry) {
+            this.metricRegistry = metricRegistry;
+            return this;
+        }
+
+        /**
+         * @return AsyncFinishingTracer with the configuration of this Builder,
+         *  whose background thread is started by start()
+         */
+        public AsyncFinishingTracer build() {
+            if (this.capacity < 1 || this.capacity > 1 << 30) {
+                throw new IllegalArgumentException("capacity must be between 1 and 2^30, got " + this.capacity);
+            }
+            int capacity = Integer.highestOneBit(this.capacity);
+            if (capacity < this.capacity) {
+                capacity <<= 1;
+            }
+            final AsyncFinishingTracer tracer = new AsyncFinishingTracer(this.tracer, capacity, this.overflowPolicy);
+            if (this.metricRegistry != null) {
+                String name = MetricRegistry.name(DropWizardTracer.class, "overhead");
+                register(this.metricRegistry, MetricRegistry.name(name, "queuedSpans"), new Gauge<Integer>() {
+                    @Override
+                    public Integer getValue() {
+                        return tracer.getQueuedSpanCount();
+                    }
+                });
+                register(this.metricRegistry, MetricRegistry.name(name, "droppedSpans"), new Gauge<Long>() {
+                    @Override
+                    public Long getValue() {
+                        return tracer.getDroppedSpanCount();
+                    }
+                });
+                register(this.metricRegistry, MetricRegistry.name(name, "callerFinishedSpans"), new Gauge<Long>() {
+                    @Override
+                    public Long getValue() {
+                        return tracer.getCallerFinishedSpanCount();
+                    }
+                });
+            }
+            return tracer;
+        }
+
+        private static void register(MetricRegistry registry, String name, Metric metric) {
+            try {
+                registry.register(name, metric);
+            } catch (IllegalArgumentException e) {
+                // registered by another AsyncFinishingTracer, whose gauges are kept
+            }
+        }
+    }
+}
@@ -4,6 +4,7 @@ import com.sun.jersey.api.client.ClientRequest;
 import com.sun.jersey.api.client.ClientResponse;
 import com.sun.jersey.api.client.filter.ClientFilter;
 import io.opentracing.Span;
+import io.opentracing.SpanContext;
 import io.opentracing.propagation.Format;
 import io.opentracing.propagation.TextMap;
 
@@ -11,6 +12,7 @@ import javax.ws.rs.core.MultivaluedMap;
 import javax.ws.rs.core.Request;
 import java.util.HashSet;
 import java.util.Iterator;
+import java.util.LinkedHashMap;
 import java.util.Map;
 import java.util.Set;
 
@@ -21,40 +23,59 @@ import java.util.Set;
 public class ClientTracingFilter extends ClientFilter {
 
     private final Request currentRequest;
+    private final boolean activeRequest;
     private final DropWizardTracer tracer;
     private final Set<ClientAttribute> tracedAttributes;
     private final Set<String> tracedProperties;
+    private final HeaderTags headerTags;
     private final String operationName;
+    private final TracingSampler sampler;
+    private final OperationMetrics metrics;
 
     /**
      * @param tracer to trace requests with
      * @param currentRequest the current request to be a parent span
      *      for any client spans created (null if none)
+     * @param activeRequest whether to continue the trace of the server
+     *      request processed on the calling thread when currentRequest is null
      * @param operationName for any spans created by this filter
      * @param tracedAttributes any ClientAttributes to log to the span
      * @param tracedProperties any request properties to log to the span
+     * @param headerTags the headers to tag individually and to redact
+     * @param sampler decides which requests to trace, or null to trace all
      */
     private ClientTracingFilter(
         DropWizardTracer tracer, 
         Request currentRequest, 
+        boolean activeRequest,
         String operationName,
         Set<ClientAttribute> tracedAttributes, 
-        Set<String> tracedProperties
+        Set<String> tracedProperties,
+        HeaderTags headerTags,
+        TracingSampler sampler
     ) {
         this.tracer = tracer;
         this.currentRequest = currentRequest;
+        this.activeRequest = activeRequest;
         this.operationName = operationName;
         this.tracedAttributes = tracedAttributes;
         this.tracedProperties = tracedProperties;
+        this.headerTags = headerTags;
+        this.sampler = sampler;
+        this.metrics = tracer.getClientMetrics(operationName.equals("") ? "Client" : operationName);
     }
 
     public static class Builder {
 
         private final DropWizardTracer tracer;
         private Request currentRequest;
+        private boolean activeRequest;
         private Set<ClientAttribute> tracedAttributes;
         private Set<String> tracedProperties; 
+        private Set<String> tracedHeaders;
+        private Set<String> redactedHeaders;
         private String operationName;
+        private TracingSampler sampler;
 
         /**
          * @param tracer the tracer to trace the client requests with
@@ -62,8 +83,11 @@ public class ClientTracingFilter extends ClientFilter {
         public Builder(DropWizardTracer tracer) {
             this.tracer = tracer;
             this.currentRequest = null;
+            this.activeRequest = false;
             this.tracedAttributes = new HashSet<ClientAttribute>();
             this.tracedProperties = new HashSet<String>();
+            this.tracedHeaders = new HashSet<String>();
+            this.redactedHeaders = new HashSet<String>();
             this.operationName = "";
         }
 
@@ -78,6 +102,21 @@ public class ClientTracingFilter extends ClientFilter {
             return this;
         }
 
+        /**
+         * Continues, for each client request, the trace of the server request
+         * being processed on the thread making it, rather than the trace of
+         * a fixed request. The filter can then be added once to a Client
+         * shared by all resources, instead of to a new WebResource for each
+         * server request. Requires an ActiveRequestDispatchAdapter to be
+         * registered to jersey. Client requests made outside of a resource
+         * method start new traces. Ignored if a request is set with withRequest.
+         * @return Builder configured to continue the trace of the active request
+         */
+        public Builder withActiveRequest() {
+            this.activeRequest = true;
+            return this;
+        }
+
         /**
          * @param tracedAttributes a set of request attributes that you want 
          *  to tag to spans created for client requests
@@ -98,6 +137,30 @@ public class ClientTracingFilter extends ClientFilter {
             return this;
         }
 
+        /**
+         * Tags each of these headers, when present, as its own tag named
+         * "http.header." followed by the header name in lower case (e.g.
+         * "http.header.x-request-id"). Only these headers are read, so this
+         * is much cheaper than tracing HEADERS.
+         * @param headerNames the headers to tag
+         * @return Builder configured with added traced headers
+         */
+        public Builder withTracedHeaders(Set<String> headerNames) {
+            this.tracedHeaders = headerNames;
+            return this;
+        }
+
+        /**
+         * The values of these headers are replaced by "&lt;redacted&gt;" in traced
+         * headers and in the HEADERS attribute.
+         * @param headerNames the headers whose values are never tagged, e.g. "Authorization"
+         * @return Builder configured with added redacted headers
+         */
+        public Builder withRedactedHeaders(Set<String> headerNames) {
+            this.redactedHeaders = headerNames;
+            return this;
+        }
+
         /**
          * @param operationName for spans created by this feature
          * @return Builder configured with added operationName
@@ -107,17 +170,49 @@ public class ClientTracingFilter extends ClientFilter {
             return this;
         }
 
+        /**
+         * By default, all client requests get a span. With a sampler, client
+         * requests that do not continue the trace of a server request are
+         * only traced if sampled; those that do follow the decision made
+         * for the server request.
+         * @param sampler decides which client requests to trace
+         * @return Builder configured with added sampler
+         */
+        public Builder withSampler(TracingSampler sampler) {
+            this.sampler = sampler;
+            return this;
+        }
+
         /**
          * @return ClientTracingFeature with the configuration of this Builder 
          */
         public ClientTracingFilter build() {
-            return new ClientTracingFilter(this.tracer, this.currentRequest,
-                this.operationName, this.tracedAttributes, this.tracedProperties);
+            return new ClientTracingFilter(this.tracer, this.currentRequest, this.activeRequest,
+                this.operationName, this.tracedAttributes, this.tracedProperties,
+                new HeaderTags(this.tracedHeaders, this.redactedHeaders), this.sampler);
         }
     }
 
     @Override
     public ClientResponse handle(ClientRequest request) {
+        if (this.metrics == null) {
+            return trace(request);
+        }
+
+        // time the request, whether or not it is sampled
+        OperationMetrics.Timing timing = this.metrics.start();
+        ClientResponse response;
+        try {
+            response = trace(request);
+        } catch (RuntimeException e) {
+            timing.stop(true);
+            throw e;
+        }
+        timing.stop(response.getStatus() >= 500);
+        return response;
+    }
+
+    private ClientResponse trace(ClientRequest request) {
         // set the operation name
         String operationName;
         if (this.operationName == ""){
@@ -128,15 +223,32 @@ public class ClientTracingFilter extends ClientFilter {
 
         // create the new span
         Span span = null;
-        if (this.currentRequest != null) {
-            Span parentSpan = this.tracer.getSpan(currentRequest);
+        Span parentSpan = null;
+        Request currentRequest = this.currentRequest;
+        if (currentRequest == null && this.activeRequest) {
+            currentRequest = this.tracer.getActiveRequest();
+        }
+        if (currentRequest != null) {
+            parentSpan = this.tracer.getSpan(currentRequest);
             if (parentSpan == null) {
-                span = this.tracer.getTracer().buildSpan(operationName).start();
-            } else {
-                span = this.tracer.getTracer().buildSpan(operationName).asChildOf(parentSpan.context()).start();
+                // the current request was not sampled: only propagate the
+                // span context it was called with, if any
+                SpanContext unsampledContext = this.tracer.getUnsampledSpanContext(currentRequest);
+                if (unsampledContext != null) {
+                    if (unsampledContext != DropWizardTracer.UNSAMPLED_ROOT) {
+                        inject(unsampledContext, request.getHeaders());
+                    }
+                    return getNext().handle(request);
+                }
+            }
+        }
+        if (parentSpan == null) {
+            if (this.sampler != null && !this.sampler.sample(operationName)) {
+                return getNext().handle(request);
             }
-        } else {
             span = this.tracer.getTracer().buildSpan(operationName).start();
+        } else {
+            span = this.tracer.getTracer().buildSpan(operationName).asChildOf(parentSpan.context()).start();
         }
 
         // trace attributes
@@ -147,34 +259,71 @@ public class ClientTracingFilter extends ClientFilter {
                     catch (NullPointerException npe) {}
                     break;
                 case HEADERS:
-                    try { span.setTag("Headers", request.getHeaders().toString()); }
+                    try {
+                        if (this.headerTags.redactsHeaders()) {
+                            span.setTag("Headers", this.headerTags.toString(request.getHeaders()));
+                        } else {
+                            span.setTag("Headers", request.getHeaders().toString());
+                        }
+                    }
                     catch (NullPointerException npe) {}
                     break;
                 case METHOD:
-                    try { span.setTag("Method", request.getMethod()); }
+                    try { span.setTag(SpanTags.HTTP_METHOD, request.getMethod()); }
                     catch (NullPointerException npe) {}
                     break;
                 case URI:
-                    try { span.setTag("URI", request.getURI().toString()); }
+                    try { span.setTag(SpanTags.HTTP_URL, SpanTags.withoutQuery(request.getURI())); }
                     catch (NullPointerException npe) {}
                     break;
             }
         }
 
-        // trace properties
+        // trace headers
+        this.headerTags.tag(request.getHeaders(), span);
+
+        // trace properties, in a single log event
+        Map<String, Object> properties = null;
         for (String propertyName : this.tracedProperties) {
             Object property = request.getProperties().get(propertyName);
             if (property != null) {
-                span.log(propertyName, property);
+                if (properties == null) {
+                    properties = new LinkedHashMap<String, Object>();
+                }
+                properties.put(propertyName, property);
             }
         }
+        if (properties != null) {
+            span.log(SpanTags.PROPERTIES_EVENT, properties);
+        }
 
         // add the new span to the tracer
         tracer.addClientSpan(request, span);
 
         // add the span to the headers
-        final MultivaluedMap<String, Object> headers = request.getHeaders();
-        tracer.getTracer().inject(span.context(), Format.Builtin.HTTP_HEADERS, new TextMap() {
+        inject(span.context(), request.getHeaders());
+        ClientResponse response;
+        // a TracingHttpClientBuilder's HttpClient logs the phases of the request
+        ConnectionPhases.start(span);
+        try {
+            response = getNext().handle(request);
+        } catch (RuntimeException e) {
+            // e.g. a ClientHandlerException when the connection is refused
+            SpanTags.setError(span, e);
+            this.tracer.finishClientSpan(request);
+            throw e;
+        } finally {
+            ConnectionPhases.end();
+        }
+
+        SpanTags.setStatusCode(span, response.getStatus());
+        this.tracer.finishClientSpan(request);
+
+        return response;
+    }
+
+    private void inject(SpanContext spanContext, final MultivaluedMap<String, Object> headers) {
+        tracer.getTracer().inject(spanContext, Format.Builtin.HTTP_HEADERS, new TextMap() {
             @Override
             public void put(String k, String v) {
                 headers.putSingle(k, v);
@@ -185,10 +334,5 @@ public class ClientTracingFilter extends ClientFilter {
                 throw new UnsupportedOperationException("iterator should never be used with Tracer.inject()");
             }
         });
-        ClientResponse response = getNext().handle(request);
-
-        this.tracer.finishClientSpan(request);
-
-        return response;
     }
 }
@@ -0,0 +1,65 @@
+package io.opentracing.contrib.dropwizard;
+
+import io.opentracing.Span;
+
+/**
+ * The client span of the request the calling thread is making, for the
+ * instrumentation of a TracingHttpClientBuilder's HttpClient to log the
+ * phases of the request to.
+ *
+ * Each phase is logged when it ends, at the time it ends, with its duration
+ * in microseconds as the payload.
+ */
+final class ConnectionPhases {
+
+    static final String LEASE_EVENT = "connection.lease";
+    static final String CONNECT_EVENT = "connection.connect";
+    static final String TLS_HANDSHAKE_EVENT = "connection.tls_handshake";
+    static final String REQUEST_WRITE_EVENT = "request.write";
+    static final String FIRST_BYTE_EVENT = "response.first_byte";
+
+    private static final ThreadLocal<ConnectionPhases> current = new ThreadLocal<ConnectionPhases>();
+
+    private final Span span;
+    private final long startMicros;
+    private final long startNanos;
+    long sentNanos;
+
+    private ConnectionPhases(Span span) {
+        this.span = span;
+        this.startMicros = System.currentTimeMillis() * 1000;
+        this.startNanos = System.nanoTime();
+    }
+
+    /**
+     * @param span of the client request the calling thread is about to make
+     */
+    static void start(Span span) {
+        current.set(new ConnectionPhases(span));
+    }
+
+    /**
+     * Called once the client request made by the calling thread is done.
+     */
+    static void end() {
+        current.remove();
+    }
+
+    /**
+     * @return the phases of the client request the calling thread is
+     *  making, or null if it makes none or that request is not traced
+     */
+    static ConnectionPhases current() {
+        return current.get();
+    }
+
+    /**
+     * Logs the end of a phase, now.
+     * @param event the phase that ended
+     * @param phaseStartNanos System.nanoTime() when the phase started
+     */
+    void log(String event, long phaseStartNanos) {
+        long now = System.nanoTime();
+        this.span.log(this.startMicros + (now - this.startNanos) / 1000, event, (now - phaseStartNanos) / 1000);
+    }
+}
@@ -4,8 +4,13 @@ import com.sun.jersey.spi.container.ContainerRequest;
 
 import io.opentracing.Tracer;
 import io.opentracing.Span;
+import io.opentracing.SpanContext;
 
+import com.codahale.metrics.MetricRegistry;
+
+import java.util.Collections;
 import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
 import java.util.Map;
 import javax.ws.rs.core.Context;
 import javax.ws.rs.core.Request;
@@ -16,18 +21,55 @@ import com.sun.jersey.api.client.ClientRequest;
  */
 public class DropWizardTracer {
 
+    static final String UNSAMPLED_CONTEXT_PROPERTY = DropWizardTracer.class.getName() + ".unsampledContext";
+
+    /**
+     * The unsampled span context of requests that were not sampled and were
+     * called without a span context, so that the client requests they make
+     * don't sample a trace of their own. It is never injected.
+     */
+    static final SpanContext UNSAMPLED_ROOT = new SpanContext() {
+        @Override
+        public Iterable<Map.Entry<String, String>> baggageItems() {
+            return Collections.<String, String>emptyMap().entrySet();
+        }
+    };
+
     private Tracer tracer;
     private Map<Request, Span> serverSpans;
     private Map<ClientRequest, Span> clientSpans;
+    private final MetricRegistry metricRegistry;
+    private final ConcurrentMap<String, OperationMetrics> serverMetrics;
+    private final ConcurrentMap<String, OperationMetrics> clientMetrics;
+    private final ThreadLocal<Request> activeRequest;
 
     /**
      * Create a tracer for DropWizard applications.
      * @param tracer an io.opentracing.Tracer to trace requests with
      */
     public DropWizardTracer(Tracer tracer) {
+        this(tracer, null);
+    }
+
+    /**
+     * Create a tracer for DropWizard applications that also keeps, for each
+     * server and client operation name, a Timer of its requests
+     * ("io.opentracing.contrib.dropwizard.DropWizardTracer.[server|client].[operation name].requests")
+     * and a Meter of its failed requests (same name, ending in ".errors"),
+     * whether or not the requests are sampled. Characters of operation names
+     * that are not letters, digits, '_' or '-' are replaced by '_' in metric
+     * names.
+     * @param tracer an io.opentracing.Tracer to trace requests with
+     * @param metricRegistry to register the metrics to, e.g. environment.metrics()
+     */
+    public DropWizardTracer(Tracer tracer, MetricRegistry metricRegistry) {
         this.serverSpans = new ConcurrentHashMap<Request, Span>();
         this.clientSpans = new ConcurrentHashMap<ClientRequest, Span>();
         this.tracer = tracer;
+        this.metricRegistry = metricRegistry;
+        this.serverMetrics = new ConcurrentHashMap<String, OperationMetrics>();
+        this.clientMetrics = new ConcurrentHashMap<String, OperationMetrics>();
+        this.activeRequest = new ThreadLocal<Request>();
     }
 
     /**
@@ -55,6 +97,52 @@ public class DropWizardTracer {
         return this.clientSpans.get(request);
     }
 
+    /**
+     * @param request a server request that was not sampled
+     * @return the span context this server request was called with, if it
+     *  was not sampled (an empty span context, that must not be injected,
+     *  if it was called without one). Otherwise returns null.
+     */
+    protected SpanContext getUnsampledSpanContext(Request request) {
+        if (request instanceof ContainerRequest) {
+            return (SpanContext) ((ContainerRequest) request).getProperties().get(UNSAMPLED_CONTEXT_PROPERTY);
+        }
+        return null;
+    }
+
+    /**
+     * @return the server request whose resource method this thread is
+     *  invoking, as set by an ActiveRequestDispatchAdapter, or null if none
+     */
+    Request getActiveRequest() {
+        return this.activeRequest.get();
+    }
+
+    /**
+     * @param request the server request whose resource method this thread
+     *  is invoking, or null once it returned
+     */
+    void setActiveRequest(Request request) {
+        if (request == null) {
+            this.activeRequest.remove();
+        } else {
+            this.activeRequest.set(request);
+        }
+    }
+
+    /**
+     * Keeps spanContext as a property of request, so that it goes away with
+     * the request however its processing ends.
+     * @param request a server request that was not sampled, ignored unless
+     *  it is a ContainerRequest
+     * @param spanContext the span context request was called with
+     */
+    protected void addUnsampledSpanContext(Request request, SpanContext spanContext) {
+        if (request instanceof ContainerRequest) {
+            ((ContainerRequest) request).getProperties().put(UNSAMPLED_CONTEXT_PROPERTY, spanContext);
+        }
+    }
+
     protected void addServerSpan(Request request, Span span) {
         this.serverSpans.put(request, span);
     }
@@ -78,4 +166,37 @@ public class DropWizardTracer {
             span.finish();
         }
     }
+
+    /**
+     * @return the metrics of server requests with this operation name, or
+     *  null if this tracer keeps no metrics
+     */
+    OperationMetrics getServerMetrics(String operationName) {
+        return getMetrics(this.serverMetrics, "server", operationName);
+    }
+
+    /**
+     * @return the metrics of client requests with this operation name, or
+     *  null if this tracer keeps no metrics
+     */
+    OperationMetrics getClientMetrics(String operationName) {
+        return getMetrics(this.clientMetrics, "client", operationName);
+    }
+
+    private OperationMetrics getMetrics(ConcurrentMap<String, OperationMetrics> metrics, String kind,
+            String operationName) {
+        if (this.metricRegistry == null) {
+            return null;
+        }
+        OperationMetrics operationMetrics = metrics.get(operationName);
+        if (operationMetrics == null) {
+            operationMetrics = new OperationMetrics(this.metricRegistry,
+                MetricRegistry.name(DropWizardTracer.class, kind, OperationMetrics.metricName(operationName)));
+            OperationMetrics existing = metrics.putIfAbsent(operationName, operationMetrics);
+            if (existing != null) {
+                operationMetrics = existing;
+            }
+        }
+        return operationMetrics;
+    }
 }
@@ -0,0 +1,117 @@
+package io.opentracing.contrib.dropwizard;
+
+import io.opentracing.Span;
+
+import java.util.HashSet;
+import java.util.List;
+import java.util.Locale;
+import java.util.Map;
+import java.util.Set;
+import javax.ws.rs.core.MultivaluedMap;
+
+/**
+ * Tags chosen request headers to spans, each as its own tag, and redacts
+ * the values of sensitive headers.
+ *
+ * The tag key of each traced header ("http.header." followed by the header
+ * name in lower case) is computed once, and only the traced headers are
+ * looked up on each request.
+ */
+final class HeaderTags {
+
+    static final String TAG_PREFIX = "http.header.";
+    static final String REDACTED = "<redacted>";
+
+    static final HeaderTags NONE = new HeaderTags(new HashSet<String>(), new HashSet<String>());
+
+    private final String[] names;
+    private final String[] tagKeys;
+    private final boolean[] redacted;
+    private final Set<String> redactedHeaders;
+
+    /**
+     * @param tracedHeaders the headers to tag, each as its own tag
+     * @param redactedHeaders the headers whose values are never tagged
+     */
+    HeaderTags(Set<String> tracedHeaders, Set<String> redactedHeaders) {
+        this.redactedHeaders = new HashSet<String>();
+        for (String header : redactedHeaders) {
+            this.redactedHeaders.add(header.toLowerCase(Locale.ROOT));
+        }
+        this.names = tracedHeaders.toArray(new String[tracedHeaders.size()]);
+        this.tagKeys = new String[this.names.length];
+        this.redacted = new boolean[this.names.length];
+        for (int i = 0; i < this.names.length; i++) {
+            String name = this.names[i].toLowerCase(Locale.ROOT);
+            this.tagKeys[i] = (TAG_PREFIX + name).intern();
+            this.redacted[i] = this.redactedHeaders.contains(name);
+        }
+    }
+
+    /**
+     * @return whether any header is traced
+     */
+    boolean tracesHeaders() {
+        return this.names.length > 0;
+    }
+
+    /**
+     * @return whether any header is redacted
+     */
+    boolean redactsHeaders() {
+        return !this.redactedHeaders.isEmpty();
+    }
+
+    /**
+     * @return whether the values of this header are redacted
+     */
+    boolean isRedacted(String header) {
+        return this.redactedHeaders.contains(header.toLowerCase(Locale.ROOT));
+    }
+
+    /**
+     * Tags each traced header present in headers.
+     */
+    void tag(MultivaluedMap<String, ?> headers, Span span) {
+        for (int i = 0; i < this.names.length; i++) {
+            List<?> values = headers.get(this.names[i]);
+            if (values != null && !values.isEmpty()) {
+                span.setTag(this.tagKeys[i], this.redacted[i] ? REDACTED : join(values));
+            }
+        }
+    }
+
+    /**
+     * @return headers as a string, like MultivaluedMap.toString(), with the
+     *  values of redacted headers replaced
+     */
+    String toString(MultivaluedMap<String, ?> headers) {
+        StringBuilder builder = new StringBuilder("{");
+        for (Map.Entry<String, ? extends List<?>> header : headers.entrySet()) {
+            if (builder.length() > 1) {
+                builder.append(", ");
+            }
+            builder.append(header.getKey()).append('=');
+            if (isRedacted(header.getKey())) {
+                builder.append('[').append(REDACTED).append(']');
+            } else {
+                builder.append(header.getValue());
+            }
+        }
+        return builder.append('}').toString();
+    }
+
+    private static String join(List<?> values) {
+        if (values.size() == 1) {
+            return String.valueOf(values.get(0));
+        }
+        StringBuilder builder = new StringBuilder();
+        for (Object value : values) {
+            if (builder.length() > 0) {
+                builder.append(',');
+            }
+            builder.append(value);
+        }
+        return builder.toString();
+    }
+}
@@ -0,0 +1,107 @@
+package io.opentracing.contrib.dropwizard;
+
+import com.codahale.metrics.Meter;
+import com.codahale.metrics.Metric;
+import com.codahale.metrics.MetricRegistry;
+import com.codahale.metrics.Timer;
+
+import java.util.concurrent.TimeUnit;
+
+/**
+ * The request rate, error rate and duration metrics of one operation:
+ * a Timer named "[name].requests" and a Meter named "[name].errors".
+ *
+ * Requests are timed whether or not they are sampled, with a Timing kept as
+ * a property of server requests.
+ */
+final class OperationMetrics {
+
+    static final String PROPERTY = OperationMetrics.class.getName();
+
+    private static final int RESERVOIR_SIZE = 1028;
+
+    private final Timer requests;
+    private final Meter errors;
+
+    OperationMetrics(MetricRegistry registry, String name) {
+        this.requests = register(registry, MetricRegistry.name(name, "requests"),
+            new Timer(new LockFreeSlidingWindowReservoir(RESERVOIR_SIZE)), Timer.class);
+        this.errors = register(registry, MetricRegistry.name(name, "errors"), new Meter(), Meter.class);
+    }
+
+    /**
+     * @return a Timing of a request starting now
+     */
+    Timing start() {
+        return new Timing(this, System.nanoTime());
+    }
+
+    /**
+     * @return operationName as a single segment of a metric name: runs of
+     *  characters other than letters, digits, '_' and '-' (e.g. the spaces,
+     *  slashes, braces and dots of "GET /users/{id}") become one '_', and
+     *  leading and trailing ones are dropped, giving "GET_users_id".
+     *  Operations whose names only differ in such characters share metrics.
+     */
+    static String metricName(String operationName) {
+        StringBuilder name = new StringBuilder(operationName.length());
+        boolean separated = false;
+        for (int i = 0; i < operationName.length(); i++) {
+            char c = operationName.charAt(i);
+            if (Character.isLetterOrDigit(c) || c == '_' || c == '-') {
+                if (separated && name.length() > 0) {
+                    name.append('_');
+                }
+                separated = false;
+                name.append(c);
+            } else {
+                separated = true;
+            }
+        }
+        return name.length() > 0 ? name.toString() : "unnamed";
+    }
+
+    /**
+     * @return metric once registered as name, or the metric of the same type
+     *  already registered as name, e.g. by another DropWizardTracer
+     * @throws IllegalArgumentException if a metric of another type is
+     *  registered as name
+     */
+    private static <T extends Metric> T register(MetricRegistry registry, String name, T metric, Class<T> type) {
+        try {
+            return registry.register(name, metric);
+        } catch (IllegalArgumentException e) {
+            Metric registered = registry.getMetrics().get(name);
+            if (!type.isInstance(registered)) {
+                throw new IllegalArgumentException("Can't register a " + type.getSimpleName() + " as " + name
+                    + ", which is already registered as a "
+                    + (registered == null ? "metric" : registered.getClass().getName()), e);
+            }
+            return type.cast(registered);
+        }
+    }
+
+    /**
+     * The timing of one request.
+     */
+    static final class Timing {
+
+        private final OperationMetrics metrics;
+        private final long startNanos;
+
+        private Timing(OperationMetrics metrics, long startNanos) {
+            this.metrics = metrics;
+            this.startNanos = startNanos;
+        }
+
+        /**
+         * @param error whether the request failed
+         */
+        void stop(boolean error) {
+            this.metrics.requests.update(System.nanoTime() - this.startNanos, TimeUnit.NANOSECONDS);
+            if (error) {
+                this.metrics.errors.mark();
+            }
+        }
+    }
+}
@@ -0,0 +1,19 @@
+package io.opentracing.contrib.dropwizard;
+
+import com.sun.jersey.api.model.AbstractMethod;
+
+/**
+ * OperationNameStrategy names the spans of requests to a resource method.
+ *
+ * It is called once per resource method, when Jersey asks the
+ * ServerTracingResourceFilterFactory for the filters of that method, so
+ * implementations may be as expensive as they need to be. See
+ * StandardOperationNameStrategy for the strategies provided.
+ */
+public interface OperationNameStrategy {
+    /**
+     * @param method the resource method being traced
+     * @return the operation name for all spans of requests to that method
+     */
+    String getOperationName(AbstractMethod method);
+}
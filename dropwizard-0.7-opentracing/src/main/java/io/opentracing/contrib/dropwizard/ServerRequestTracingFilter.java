@@ -5,11 +5,10 @@ import com.sun.jersey.spi.container.ContainerRequestFilter;
 import io.opentracing.Span;
 import io.opentracing.SpanContext;
 import io.opentracing.propagation.Format;
-import io.opentracing.propagation.TextMapExtractAdapter;
 
-import javax.ws.rs.core.MultivaluedMap;
-import java.util.HashMap;
 import java.util.HashSet;
+import java.util.LinkedHashMap;
+import java.util.Map;
 import java.util.Set;
 
 /**
@@ -21,28 +20,41 @@ public class ServerRequestTracingFilter implements ContainerRequestFilter {
     private final DropWizardTracer tracer;
     private final Set<ServerAttribute> tracedAttributes;
     private final Set<String> tracedProperties;
+    private final HeaderTags headerTags;
     private final String operationName;
     private final RequestSpanDecorator decorator;
+    private final String[] extractedHeaders;
+    private final TracingSampler sampler;
 
     /**
      * @param tracer to trace requests with
      * @param operationName the operation name for the request spans
      * @param tracedAttributes any ServiceAttributes to log to spans
      * @param tracedProperties any request properties to log to spans
+     * @param headerTags the headers to tag individually and to redact
      * @param decorator an optional decorator for request spans
+     * @param extractedHeaders the only headers to extract span contexts from,
+     *  or null for all headers
+     * @param sampler decides which requests to trace, or null to trace all
      */
-    private ServerRequestTracingFilter(
+    ServerRequestTracingFilter(
         DropWizardTracer tracer,
         String operationName,
         Set<ServerAttribute> tracedAttributes, 
         Set<String> tracedProperties,
-        RequestSpanDecorator decorator
+        HeaderTags headerTags,
+        RequestSpanDecorator decorator,
+        String[] extractedHeaders,
+        TracingSampler sampler
     ) {
         this.tracer = tracer;
         this.operationName = operationName;
         this.tracedProperties = tracedProperties;
         this.tracedAttributes = tracedAttributes;
+        this.headerTags = headerTags;
         this.decorator = decorator;
+        this.extractedHeaders = extractedHeaders;
+        this.sampler = sampler;
     }
 
     public static class Builder {
@@ -50,8 +62,12 @@ public class ServerRequestTracingFilter implements ContainerRequestFilter {
         private final DropWizardTracer tracer;
         private Set<ServerAttribute> tracedAttributes = new HashSet<ServerAttribute>();
         private Set<String> tracedProperties = new HashSet<String>();
+        private Set<String> tracedHeaders = new HashSet<String>();
+        private Set<String> redactedHeaders = new HashSet<String>();
         private String operationName = "";
         private RequestSpanDecorator decorator;
+        private String[] extractedHeaders;
+        private TracingSampler sampler;
 
         /**
          * @param tracer the tracer to trace the server requests with
@@ -80,6 +96,31 @@ public class ServerRequestTracingFilter implements ContainerRequestFilter {
             return this;
         }
 
+        /**
+         * Tags each of these headers, when present, as its own tag named
+         * "http.header." followed by the header name in lower case (e.g.
+         * "http.header.x-request-id"). Only these headers are read, so this
+         * is much cheaper than tracing HEADERS.
+         * @param headerNames the headers to tag
+         * @return Builder configured with added traced headers
+         */
+        public Builder withTracedHeaders(Set<String> headerNames) {
+            this.tracedHeaders = headerNames;
+            return this;
+        }
+
+        /**
+         * The values of these headers are replaced by "&lt;redacted&gt;" in traced
+         * headers and in the HEADERS attribute. Redacting "Cookie" also
+         * reduces the COOKIES attribute to the names of the cookies.
+         * @param headerNames the headers whose values are never tagged, e.g. "Authorization"
+         * @return Builder configured with added redacted headers
+         */
+        public Builder withRedactedHeaders(Set<String> headerNames) {
+            this.redactedHeaders = headerNames;
+            return this;
+        }
+
         /**
          * @param decorator an (optional) RequestSpanDecorator which is applied to each [Request, Span] pair.
          * @return Builder for chaining
@@ -98,43 +139,84 @@ public class ServerRequestTracingFilter implements ContainerRequestFilter {
             return this;
         }
 
+        /**
+         * By default, every request header is offered to the tracer to extract
+         * the parent span context from. If you know which headers your tracer
+         * uses (e.g. "ot-tracer-traceid", "ot-tracer-spanid" and
+         * "ot-tracer-sampled"), only those are then looked up.
+         * NOTE: baggage headers not in this set are not extracted.
+         * @param headerNames the headers to extract span contexts from
+         * @return Builder configured with added extracted headers
+         */
+        public Builder withExtractedHeaders(Set<String> headerNames) {
+            this.extractedHeaders = headerNames.toArray(new String[headerNames.size()]);
+            return this;
+        }
+
+        /**
+         * By default, all requests get a span. With a sampler, the sampler
+         * decides for each request whether to build a span. Requests that
+         * are not sampled only propagate the span context they were called with.
+         * @param sampler decides which requests to trace
+         * @return Builder configured with added sampler
+         */
+        public Builder withSampler(TracingSampler sampler) {
+            this.sampler = sampler;
+            return this;
+        }
+
         /**
          * @return ServerRequestTracingFilter with the configuration of this Builder 
          */
         public ServerRequestTracingFilter build() {
             return new ServerRequestTracingFilter(this.tracer, this.operationName,
-                this.tracedAttributes, this.tracedProperties, this.decorator);
+                this.tracedAttributes, this.tracedProperties,
+                new HeaderTags(this.tracedHeaders, this.redactedHeaders), this.decorator, this.extractedHeaders,
+                this.sampler);
         }
     }
     
     @Override
     public ContainerRequest filter(ContainerRequest request) {
         String operationName;
-        if (this.operationName == "") {
+        if (this.operationName.equals("")) {
             operationName = request.getRequestUri().toString();
         } else {
             operationName = this.operationName;
         }
-        // format the headers for extraction
-        Span span;
-        MultivaluedMap<String, String> rawHeaders = request.getRequestHeaders();
-        final HashMap<String, String> headers = new HashMap<String, String>();
-        for (String key : rawHeaders.keySet()){
-            headers.put(key, rawHeaders.get(key).get(0));
+
+        // time the request, whether or not it is sampled; request URIs are
+        // too many to keep metrics of, so only named operations are timed
+        if (!this.operationName.equals("")) {
+            OperationMetrics metrics = tracer.getServerMetrics(operationName);
+            if (metrics != null) {
+                request.getProperties().put(OperationMetrics.PROPERTY, metrics.start());
+            }
         }
 
         // extract the client span
+        SpanContext parentSpan;
         try {
-            SpanContext parentSpan = tracer.getTracer().extract(
+            parentSpan = tracer.getTracer().extract(
                     Format.Builtin.HTTP_HEADERS,
-                    new TextMapExtractAdapter(headers));
-            if (parentSpan == null){
-                span = tracer.getTracer().buildSpan(operationName).start();
-            } else {
-                span = tracer.getTracer().buildSpan(operationName).asChildOf(parentSpan).start();
-            }
+                    new HeadersExtractAdapter(request.getRequestHeaders(), this.extractedHeaders));
         } catch(IllegalArgumentException e) {
+            parentSpan = null;
+        }
+
+        // requests that are not sampled only propagate their span context,
+        // and those called without one keep their client requests from
+        // starting traces of their own
+        if (this.sampler != null && !this.sampler.sample(operationName)) {
+            tracer.addUnsampledSpanContext(request, parentSpan != null ? parentSpan : DropWizardTracer.UNSAMPLED_ROOT);
+            return request;
+        }
+
+        Span span;
+        if (parentSpan == null){
             span = tracer.getTracer().buildSpan(operationName).start();
+        } else {
+            span = tracer.getTracer().buildSpan(operationName).asChildOf(parentSpan).start();
         }
 
         // trace attributes
@@ -161,11 +243,23 @@ public class ServerRequestTracingFilter implements ContainerRequestFilter {
                     catch(NullPointerException npe) {}
                     break;
                case COOKIES:
-                    try { span.setTag("Cookies", request.getCookies().toString()); }
+                    try {
+                        if (this.headerTags.isRedacted("Cookie")) {
+                            span.setTag("Cookies", request.getCookies().keySet().toString());
+                        } else {
+                            span.setTag("Cookies", request.getCookies().toString());
+                        }
+                    }
                     catch(NullPointerException npe) {}
                     break;
                 case HEADERS:
-                    try { span.setTag("Headers", request.getRequestHeaders().toString()); }
+                    try {
+                        if (this.headerTags.redactsHeaders()) {
+                            span.setTag("Headers", this.headerTags.toString(request.getRequestHeaders()));
+                        } else {
+                            span.setTag("Headers", request.getRequestHeaders().toString());
+                        }
+                    }
                     catch(NullPointerException npe) {}
                     break;
                 case IS_SECURE: 
@@ -177,7 +271,7 @@ public class ServerRequestTracingFilter implements ContainerRequestFilter {
                     catch(NullPointerException npe) {}
                     break;
                 case METHOD:
-                    try { span.setTag("Method", request.getMethod()); }
+                    try { span.setTag(SpanTags.HTTP_METHOD, request.getMethod()); }
                     catch(NullPointerException npe) {}
                     break;
                 case MEDIA_TYPE: 
@@ -197,7 +291,7 @@ public class ServerRequestTracingFilter implements ContainerRequestFilter {
                     catch(NullPointerException npe) {}
                     break;
                 case URI:
-                    try { span.setTag("URI", request.getRequestUri().toString()); }
+                    try { span.setTag(SpanTags.HTTP_URL, request.getAbsolutePath().toString()); }
                     catch(NullPointerException npe) {}
                     break;
                 case USER_PRINCIPAL: 
@@ -207,13 +301,23 @@ public class ServerRequestTracingFilter implements ContainerRequestFilter {
             }
         }
 
-        // trace properties
+        // trace headers
+        this.headerTags.tag(request.getRequestHeaders(), span);
+
+        // trace properties, in a single log event
+        Map<String, Object> properties = null;
         for (String propertyName : this.tracedProperties) {
             Object property = request.getProperties().get(propertyName);
             if (property != null) {
-                span.log(propertyName, property);
+                if (properties == null) {
+                    properties = new LinkedHashMap<String, Object>();
+                }
+                properties.put(propertyName, property);
             }
         }
+        if (properties != null) {
+            span.log(SpanTags.PROPERTIES_EVENT, properties);
+        }
 
         if (this.decorator != null) {
             this.decorator.decorate(request, span);
@@ -23,6 +23,14 @@ public class ServerResponseTracingFilter implements ContainerResponseFilter {
     
     @Override
     public ContainerResponse filter(ContainerRequest request, ContainerResponse response) {
+        OperationMetrics.Timing timing = (OperationMetrics.Timing) request.getProperties().remove(OperationMetrics.PROPERTY);
+        if (timing != null) {
+            timing.stop(response.getStatus() >= 500);
+        }
+        Span span = tracer.getSpan(request);
+        if (span != null) {
+            SpanTags.setStatusCode(span, response.getStatus());
+        }
         tracer.finishServerSpan(request);
         return response;
     }
@@ -0,0 +1,202 @@
+package io.opentracing.contrib.dropwizard;
+
+import com.sun.jersey.api.model.AbstractMethod;
+import com.sun.jersey.api.model.AbstractResourceMethod;
+import com.sun.jersey.spi.container.ContainerRequestFilter;
+import com.sun.jersey.spi.container.ContainerResponseFilter;
+import com.sun.jersey.spi.container.ResourceFilter;
+import com.sun.jersey.spi.container.ResourceFilterFactory;
+
+import java.util.Collections;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Set;
+
+/**
+ * When added to the ResourceFilterFactories of a DropWizard application, this
+ * factory registers filters to trace the requests to each resource method.
+ *
+ * Unlike a global ServerRequestTracingFilter, which only sees the request URI,
+ * the factory knows which resource method it is creating filters for, so the
+ * operation name of each method is computed once, at startup, by an
+ * OperationNameStrategy.
+ *
+ * This factory is configured and built using ServerTracingResourceFilterFactory.Builder
+ */
+public class ServerTracingResourceFilterFactory implements ResourceFilterFactory {
+
+    private final DropWizardTracer tracer;
+    private final Set<ServerAttribute> tracedAttributes;
+    private final Set<String> tracedProperties;
+    private final HeaderTags headerTags;
+    private final OperationNameStrategy operationNameStrategy;
+    private final RequestSpanDecorator decorator;
+    private final String[] extractedHeaders;
+    private final TracingSampler sampler;
+    private final ServerResponseTracingFilter responseFilter;
+
+    private ServerTracingResourceFilterFactory(
+        DropWizardTracer tracer,
+        OperationNameStrategy operationNameStrategy,
+        Set<ServerAttribute> tracedAttributes,
+        Set<String> tracedProperties,
+        HeaderTags headerTags,
+        RequestSpanDecorator decorator,
+        String[] extractedHeaders,
+        TracingSampler sampler
+    ) {
+        this.tracer = tracer;
+        this.operationNameStrategy = operationNameStrategy;
+        this.tracedAttributes = tracedAttributes;
+        this.tracedProperties = tracedProperties;
+        this.headerTags = headerTags;
+        this.decorator = decorator;
+        this.extractedHeaders = extractedHeaders;
+        this.sampler = sampler;
+        this.responseFilter = new ServerResponseTracingFilter(tracer);
+    }
+
+    @Override
+    public List<ResourceFilter> create(AbstractMethod method) {
+        if (!(method instanceof AbstractResourceMethod)) {
+            return null;
+        }
+        final ServerRequestTracingFilter requestFilter = new ServerRequestTracingFilter(this.tracer,
+            this.operationNameStrategy.getOperationName(method), this.tracedAttributes,
+            this.tracedProperties, this.headerTags, this.decorator, this.extractedHeaders, this.sampler);
+        return Collections.<ResourceFilter>singletonList(new ResourceFilter() {
+            @Override
+            public ContainerRequestFilter getRequestFilter() {
+                return requestFilter;
+            }
+
+            @Override
+            public ContainerResponseFilter getResponseFilter() {
+                return responseFilter;
+            }
+        });
+    }
+
+    /**
+     * Use this class to configure and build a ServerTracingResourceFilterFactory
+     */
+    public static class Builder {
+
+        private final DropWizardTracer tracer;
+        private Set<ServerAttribute> tracedAttributes = new HashSet<ServerAttribute>();
+        private Set<String> tracedProperties = new HashSet<String>();
+        private Set<String> tracedHeaders = new HashSet<String>();
+        private Set<String> redactedHeaders = new HashSet<String>();
+        private OperationNameStrategy operationNameStrategy = StandardOperationNameStrategy.RESOURCE_CLASS;
+        private RequestSpanDecorator decorator;
+        private String[] extractedHeaders;
+        private TracingSampler sampler;
+
+        /**
+         * @param tracer the tracer to trace the server requests with
+         */
+        public Builder(DropWizardTracer tracer) {
+            this.tracer = tracer;
+        }
+
+        /**
+         * @param attributes a set of request attributes that you want
+         *  to tag to spans created for server requests
+         * @return Builder configured with added traced attributes
+         */
+        public Builder withTracedAttributes(Set<ServerAttribute> attributes) {
+            this.tracedAttributes = attributes;
+            return this;
+        }
+
+        /**
+         * @param properties of a request to the server to tag
+         *  to spans created for that request
+         * @return Builder configured with added traced properties
+         */
+        public Builder withTracedProperties(Set<String> properties) {
+            this.tracedProperties = properties;
+            return this;
+        }
+
+        /**
+         * Tags each of these headers, when present, as its own tag named
+         * "http.header." followed by the header name in lower case (e.g.
+         * "http.header.x-request-id"). Only these headers are read, so this
+         * is much cheaper than tracing HEADERS.
+         * @param headerNames the headers to tag
+         * @return Builder configured with added traced headers
+         */
+        public Builder withTracedHeaders(Set<String> headerNames) {
+            this.tracedHeaders = headerNames;
+            return this;
+        }
+
+        /**
+         * The values of these headers are replaced by "&lt;redacted&gt;" in traced
+         * headers and in the HEADERS attribute. Redacting "Cookie" also
+         * reduces the COOKIES attribute to the names of the cookies.
+         * @param headerNames the headers whose values are never tagged, e.g. "Authorization"
+         * @return Builder configured with added redacted headers
+         */
+        public Builder withRedactedHeaders(Set<String> headerNames) {
+            this.redactedHeaders = headerNames;
+            return this;
+        }
+
+        /**
+         * @param decorator an (optional) RequestSpanDecorator which is applied to each [Request, Span] pair.
+         * @return Builder for chaining
+         */
+        public Builder withRequestSpanDecorator(RequestSpanDecorator decorator) {
+            this.decorator = decorator;
+            return this;
+        }
+
+        /**
+         * @param operationNameStrategy names the spans of each resource method.
+         *  Defaults to StandardOperationNameStrategy.RESOURCE_CLASS
+         * @return Builder configured with added operationNameStrategy
+         */
+        public Builder withOperationNameStrategy(OperationNameStrategy operationNameStrategy) {
+            this.operationNameStrategy = operationNameStrategy;
+            return this;
+        }
+
+        /**
+         * By default, every request header is offered to the tracer to extract
+         * the parent span context from. If you know which headers your tracer
+         * uses (e.g. "ot-tracer-traceid", "ot-tracer-spanid" and
+         * "ot-tracer-sampled"), only those are then looked up.
+         * NOTE: baggage headers not in this set are not extracted.
+         * @param headerNames the headers to extract span contexts from
+         * @return Builder configured with added extracted headers
+         */
+        public Builder withExtractedHeaders(Set<String> headerNames) {
+            this.extractedHeaders = headerNames.toArray(new String[headerNames.size()]);
+            return this;
+        }
+
+        /**
+         * By default, all requests get a span. With a sampler, the sampler
+         * decides for each request whether to build a span. Requests that
+         * are not sampled only propagate the span context they were called with.
+         * @param sampler decides which requests to trace
+         * @return Builder configured with added sampler
+         */
+        public Builder withSampler(TracingSampler sampler) {
+            this.sampler = sampler;
+            return this;
+        }
+
+        /**
+         * @return ServerTracingResourceFilterFactory with the configuration of this Builder
+         */
+        public ServerTracingResourceFilterFactory build() {
+            return new ServerTracingResourceFilterFactory(this.tracer, this.operationNameStrategy,
+                this.tracedAttributes, this.tracedProperties,
+                new HeaderTags(this.tracedHeaders, this.redactedHeaders), this.decorator, this.extractedHeaders,
+                this.sampler);
+        }
+    }
+}
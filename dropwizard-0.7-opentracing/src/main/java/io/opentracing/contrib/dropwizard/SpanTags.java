@@ -0,0 +1,70 @@
+package io.opentracing.contrib.dropwizard;
+
+import io.opentracing.Span;
+import io.opentracing.tag.Tags;
+
+import java.net.URI;
+
+/**
+ * The keys of the tags and logs that follow the OpenTracing semantic
+ * conventions, and helpers to emit them without allocating.
+ */
+final class SpanTags {
+
+    static final String HTTP_METHOD = "http.method";
+    static final String HTTP_URL = Tags.HTTP_URL.getKey();
+    static final String HTTP_STATUS_CODE = Tags.HTTP_STATUS.getKey();
+
+    /**
+     * The event name of the single log of the traced properties of a request,
+     * whose payload maps property names to values.
+     */
+    static final String PROPERTIES_EVENT = "properties";
+
+    /**
+     * The event name of the log of the exception a request failed with.
+     */
+    static final String ERROR_EVENT = "error";
+
+    private static final Integer[] STATUS_CODES = new Integer[600];
+
+    static {
+        for (int i = 0; i < STATUS_CODES.length; i++) {
+            STATUS_CODES[i] = i;
+        }
+    }
+
+    private SpanTags() {
+    }
+
+    /**
+     * Tags the status code of a response, without boxing it for the usual
+     * status codes.
+     */
+    static void setStatusCode(Span span, int statusCode) {
+        span.setTag(HTTP_STATUS_CODE, statusCode >= 0 && statusCode < STATUS_CODES.length
+            ? STATUS_CODES[statusCode]
+            : Integer.valueOf(statusCode));
+    }
+
+    /**
+     * @return uri without its query and fragment, which may hold tokens or
+     *  personal data, for the http.url tag
+     */
+    static String withoutQuery(URI uri) {
+        String url = uri.toString();
+        if (uri.getRawQuery() == null && uri.getRawFragment() == null) {
+            return url;
+        }
+        // '?' and '#' are escaped anywhere before the query and fragment
+        return url.substring(0, url.indexOf(uri.getRawQuery() != null ? '?' : '#'));
+    }
+
+    /**
+     * Tags a span as an error, and logs the exception that caused it.
+     */
+    static void setError(Span span, Throwable exception) {
+        Tags.ERROR.set(span, true);
+        span.log(ERROR_EVENT, exception);
+    }
+}
@@ -0,0 +1,74 @@
+package io.opentracing.contrib.dropwizard;
+
+import com.sun.jersey.api.model.AbstractMethod;
+import com.sun.jersey.api.model.AbstractResourceMethod;
+import com.sun.jersey.api.model.AbstractSubResourceMethod;
+import com.sun.jersey.api.model.PathValue;
+
+/**
+ * The OperationNameStrategies provided with DropWizard-OpenTracing.
+ */
+public enum StandardOperationNameStrategy implements OperationNameStrategy {
+
+    /**
+     * The simple name of the resource class, e.g. "UserResource"
+     */
+    RESOURCE_CLASS {
+        @Override
+        public String getOperationName(AbstractMethod method) {
+            return method.getResource().getResourceClass().getSimpleName();
+        }
+    },
+
+    /**
+     * The simple name of the resource class and the name of the resource
+     * method, e.g. "UserResource.getUser"
+     */
+    CLASS_AND_METHOD {
+        @Override
+        public String getOperationName(AbstractMethod method) {
+            return method.getResource().getResourceClass().getSimpleName() + "."
+                + method.getMethod().getName();
+        }
+    },
+
+    /**
+     * The HTTP method and the @Path template of the resource method,
+     * e.g. "GET /users/{id}"
+     */
+    HTTP_METHOD_AND_PATH {
+        @Override
+        public String getOperationName(AbstractMethod method) {
+            StringBuilder path = new StringBuilder();
+            appendPath(path, method.getResource().getPath());
+            if (method instanceof AbstractSubResourceMethod) {
+                appendPath(path, ((AbstractSubResourceMethod) method).getPath());
+            }
+            if (path.length() == 0) {
+                path.append('/');
+            }
+            if (method instanceof AbstractResourceMethod) {
+                return ((AbstractResourceMethod) method).getHttpMethod() + " " + path;
+            }
+            return path.toString();
+        }
+    };
+
+    private static void appendPath(StringBuilder builder, PathValue path) {
+        if (path == null || path.getValue() == null) {
+            return;
+        }
+        String value = path.getValue();
+        int start = 0;
+        int end = value.length();
+        while (start < end && value.charAt(start) == '/') {
+            start++;
+        }
+        while (end > start && value.charAt(end - 1) == '/') {
+            end--;
+        }
+        if (start < end) {
+            builder.append('/').append(value, start, end);
+        }
+    }
+}
@@ -0,0 +1,230 @@
+package io.opentracing.contrib.dropwizard;
+
+import com.codahale.metrics.MetricRegistry;
+import com.codahale.metrics.RatioGauge;
+import com.codahale.metrics.Timer;
+import com.codahale.metrics.httpclient.InstrumentedClientConnManager;
+import com.codahale.metrics.httpclient.InstrumentedHttpClient;
+import io.dropwizard.client.HttpClientBuilder;
+import io.dropwizard.client.HttpClientConfiguration;
+import io.dropwizard.setup.Environment;
+import io.dropwizard.util.Duration;
+import org.apache.http.HttpEntity;
+import org.apache.http.HttpEntityEnclosingRequest;
+import org.apache.http.HttpRequest;
+import org.apache.http.HttpRequestInterceptor;
+import org.apache.http.HttpResponse;
+import org.apache.http.HttpResponseInterceptor;
+import org.apache.http.conn.ClientConnectionManager;
+import org.apache.http.conn.ClientConnectionRequest;
+import org.apache.http.conn.ConnectionPoolTimeoutException;
+import org.apache.http.conn.DnsResolver;
+import org.apache.http.conn.ManagedClientConnection;
+import org.apache.http.conn.routing.HttpRoute;
+import org.apache.http.conn.scheme.SchemeRegistry;
+import org.apache.http.entity.HttpEntityWrapper;
+import org.apache.http.impl.conn.SystemDefaultDnsResolver;
+import org.apache.http.pool.PoolStats;
+import org.apache.http.protocol.HttpContext;
+
+import java.io.IOException;
+import java.io.OutputStream;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * An HttpClientBuilder whose HttpClients log the phases of each traced
+ * client request to its span: the wait for a connection from the pool
+ * ("connection.lease"), connecting ("connection.connect"), the TLS handshake
+ * ("connection.tls_handshake"), writing the request entity ("request.write")
+ * and waiting for the response ("response.first_byte", until its headers are
+ * read). Each log is made when its phase ends, with the duration of the
+ * phase in microseconds. Reused connections skip connecting and the handshake.
+ *
+ * Client requests are traced by a ClientTracingFilter added to a Jersey
+ * client using the HttpClient, e.g.
+ *
+ *      HttpClient httpClient = new TracingHttpClientBuilder(environment)
+ *          .using(configuration.getHttpClientConfiguration())
+ *          .build("downstream");
+ *      Client client = new ApacheHttpClient4(new ApacheHttpClient4Handler(httpClient, null, true));
+ *      client.addFilter(new ClientTracingFilter.Builder(tracer).build());
+ *
+ * Besides the gauges of its connection pool that every HttpClientBuilder
+ * registers, it registers a gauge of the ratio of leased to maximum
+ * connections ("connection-utilization") and a Timer of the waits for a
+ * connection ("connection-lease"), whether or not requests are traced.
+ */
+public class TracingHttpClientBuilder extends HttpClientBuilder {
+
+    private final MetricRegistry metricRegistry;
+    private HttpClientConfiguration configuration = new HttpClientConfiguration();
+    private DnsResolver resolver = new SystemDefaultDnsResolver();
+
+    /**
+     * @param metricRegistry to register the metrics of the clients to
+     */
+    public TracingHttpClientBuilder(MetricRegistry metricRegistry) {
+        super(metricRegistry);
+        this.metricRegistry = metricRegistry;
+    }
+
+    /**
+     * @param environment whose metrics to register the metrics of the clients to
+     */
+    public TracingHttpClientBuilder(Environment environment) {
+        super(environment);
+        this.metricRegistry = environment.metrics();
+    }
+
+    @Override
+    public TracingHttpClientBuilder using(HttpClientConfiguration configuration) {
+        super.using(configuration);
+        this.configuration = configuration;
+        return this;
+    }
+
+    @Override
+    public TracingHttpClientBuilder using(DnsResolver resolver) {
+        super.using(resolver);
+        this.resolver = resolver;
+        return this;
+    }
+
+    /**
+     * Dropwizard's JerseyClientBuilder builds its own HttpClient, so its
+     * clients can't log all phases. Passing it a registry wrapped with this
+     * method, with JerseyClientBuilder.using(SchemeRegistry), makes them log
+     * connecting ("connection.connect") and the TLS handshake
+     * ("connection.tls_handshake") at least.
+     * @param registry the schemes to connect with, e.g.
+     *  SchemeRegistryFactory.createSystemDefault()
+     * @return a registry of the same schemes, whose socket factories log
+     *  connecting and the TLS handshake to traced client requests
+     */
+    @SuppressWarnings("deprecation")
+    public static SchemeRegistry trace(SchemeRegistry registry) {
+        return TracingSchemeSocketFactory.wrap(registry);
+    }
+
+    @Override
+    @SuppressWarnings("deprecation")
+    protected InstrumentedClientConnManager createConnectionManager(SchemeRegistry registry, String name) {
+        Duration ttl = this.configuration.getTimeToLive();
+        InstrumentedClientConnManager manager = new TracingClientConnManager(this.metricRegistry,
+            trace(registry), ttl.getQuantity(), ttl.getUnit(), this.resolver, name);
+        manager.setDefaultMaxPerRoute(this.configuration.getMaxConnectionsPerRoute());
+        manager.setMaxTotal(this.configuration.getMaxConnections());
+        return manager;
+    }
+
+    @Override
+    protected void setStrategiesForClient(InstrumentedHttpClient client) {
+        super.setStrategiesForClient(client);
+        // last, so that the request is sent right after it
+        client.addRequestInterceptor(REQUEST_WRITE_INTERCEPTOR);
+        // first, so that it runs right after the response headers are read
+        client.addResponseInterceptor(FIRST_BYTE_INTERCEPTOR, 0);
+    }
+
+    /**
+     * Wraps the entity of the request to log when it is written.
+     */
+    private static final HttpRequestInterceptor REQUEST_WRITE_INTERCEPTOR = new HttpRequestInterceptor() {
+        @Override
+        public void process(HttpRequest request, HttpContext context) {
+            ConnectionPhases phases = ConnectionPhases.current();
+            if (phases == null) {
+                return;
+            }
+            phases.sentNanos = System.nanoTime();
+            if (request instanceof HttpEntityEnclosingRequest) {
+                HttpEntityEnclosingRequest entityRequest = (HttpEntityEnclosingRequest) request;
+                HttpEntity entity = entityRequest.getEntity();
+                if (entity != null && !(entity instanceof WriteLoggingEntity)) {
+                    entityRequest.setEntity(new WriteLoggingEntity(entity));
+                }
+            }
+        }
+    };
+
+    private static final HttpResponseInterceptor FIRST_BYTE_INTERCEPTOR = new HttpResponseInterceptor() {
+        @Override
+        public void process(HttpResponse response, HttpContext context) {
+            ConnectionPhases phases = ConnectionPhases.current();
+            if (phases != null && phases.sentNanos != 0) {
+                phases.log(ConnectionPhases.FIRST_BYTE_EVENT, phases.sentNanos);
+            }
+        }
+    };
+
+    private static final class WriteLoggingEntity extends HttpEntityWrapper {
+
+        WriteLoggingEntity(HttpEntity entity) {
+            super(entity);
+        }
+
+        @Override
+        public void writeTo(OutputStream out) throws IOException {
+            ConnectionPhases phases = ConnectionPhases.current();
+            if (phases == null) {
+                super.writeTo(out);
+                return;
+            }
+            long startNanos = System.nanoTime();
+            super.writeTo(out);
+            phases.log(ConnectionPhases.REQUEST_WRITE_EVENT, startNanos);
+            // the response is waited for from now on
+            phases.sentNanos = System.nanoTime();
+        }
+    }
+
+    /**
+     * Times the waits for a connection from the pool.
+     */
+    @SuppressWarnings("deprecation")
+    private static final class TracingClientConnManager extends InstrumentedClientConnManager {
+
+        private final Timer leases;
+
+        TracingClientConnManager(MetricRegistry metricRegistry, SchemeRegistry registry, long ttl,
+                TimeUnit ttlUnit, DnsResolver resolver, String name) {
+            super(metricRegistry, registry, ttl, ttlUnit, resolver, name);
+            this.leases = metricRegistry.timer(MetricRegistry.name(ClientConnectionManager.class, name,
+                "connection-lease"));
+            metricRegistry.register(MetricRegistry.name(ClientConnectionManager.class, name, "connection-utilization"),
+                new RatioGauge() {
+                    @Override
+                    protected Ratio getRatio() {
+                        PoolStats stats = getTotalStats();
+                        return Ratio.of(stats.getLeased(), stats.getMax());
+                    }
+                });
+        }
+
+        @Override
+        public ClientConnectionRequest requestConnection(HttpRoute route, Object state) {
+            final ClientConnectionRequest request = super.requestConnection(route, state);
+            return new ClientConnectionRequest() {
+                @Override
+                public ManagedClientConnection getConnection(long timeout, TimeUnit unit)
+                        throws InterruptedException, ConnectionPoolTimeoutException {
+                    long startNanos = System.nanoTime();
+                    try {
+                        return request.getConnection(timeout, unit);
+                    } finally {
+                        leases.update(System.nanoTime() - startNanos, TimeUnit.NANOSECONDS);
+                        ConnectionPhases phases = ConnectionPhases.current();
+                        if (phases != null) {
+                            phases.log(ConnectionPhases.LEASE_EVENT, startNanos);
+                        }
+                    }
+                }
+
+                @Override
+                public void abortRequest() {
+                    request.abortRequest();
+                }
+            };
+        }
+    }
+}
@@ -0,0 +1,127 @@
+package io.opentracing.contrib.dropwizard;
+
+import org.apache.http.conn.ConnectTimeoutException;
+import org.apache.http.conn.HttpInetSocketAddress;
+import org.apache.http.conn.scheme.PlainSocketFactory;
+import org.apache.http.conn.scheme.Scheme;
+import org.apache.http.conn.scheme.SchemeLayeredSocketFactory;
+import org.apache.http.conn.scheme.SchemeRegistry;
+import org.apache.http.conn.scheme.SchemeSocketFactory;
+import org.apache.http.params.HttpParams;
+
+import java.io.IOException;
+import java.net.InetSocketAddress;
+import java.net.Socket;
+import java.net.UnknownHostException;
+
+/**
+ * Logs the time spent connecting sockets, and for TLS sockets the time spent
+ * in the handshake, to the client span of the calling thread (see
+ * ConnectionPhases).
+ *
+ * TLS sockets are connected as plain sockets first, then layered with the
+ * TLS socket factory of the scheme, as the TLS socket factory itself does,
+ * so that the handshake is timed separately.
+ */
+@SuppressWarnings("deprecation")
+class TracingSchemeSocketFactory implements SchemeSocketFactory {
+
+    private final SchemeSocketFactory delegate;
+
+    private TracingSchemeSocketFactory(SchemeSocketFactory delegate) {
+        this.delegate = delegate;
+    }
+
+    /**
+     * @return a copy of registry whose socket factories log their phases
+     */
+    static SchemeRegistry wrap(SchemeRegistry registry) {
+        SchemeRegistry wrapped = new SchemeRegistry();
+        for (String name : registry.getSchemeNames()) {
+            Scheme scheme = registry.getScheme(name);
+            SchemeSocketFactory factory = scheme.getSchemeSocketFactory();
+            if (!(factory instanceof TracingSchemeSocketFactory)) {
+                factory = factory instanceof SchemeLayeredSocketFactory
+                    ? new Layered((SchemeLayeredSocketFactory) factory)
+                    : new TracingSchemeSocketFactory(factory);
+            }
+            wrapped.register(new Scheme(scheme.getName(), scheme.getDefaultPort(), factory));
+        }
+        return wrapped;
+    }
+
+    @Override
+    public Socket createSocket(HttpParams params) throws IOException {
+        return this.delegate.createSocket(params);
+    }
+
+    @Override
+    public Socket connectSocket(Socket socket, InetSocketAddress remoteAddress, InetSocketAddress localAddress,
+            HttpParams params) throws IOException, UnknownHostException, ConnectTimeoutException {
+        ConnectionPhases phases = ConnectionPhases.current();
+        if (phases == null) {
+            return this.delegate.connectSocket(socket, remoteAddress, localAddress, params);
+        }
+        long startNanos = System.nanoTime();
+        Socket connected = this.delegate.connectSocket(socket, remoteAddress, localAddress, params);
+        phases.log(ConnectionPhases.CONNECT_EVENT, startNanos);
+        return connected;
+    }
+
+    @Override
+    public boolean isSecure(Socket socket) {
+        return this.delegate.isSecure(socket);
+    }
+
+    private static final class Layered extends TracingSchemeSocketFactory implements SchemeLayeredSocketFactory {
+
+        private final SchemeLayeredSocketFactory delegate;
+
+        Layered(SchemeLayeredSocketFactory delegate) {
+            super(delegate);
+            this.delegate = delegate;
+        }
+
+        @Override
+        public Socket createSocket(HttpParams params) throws IOException {
+            if (ConnectionPhases.current() == null) {
+                return this.delegate.createSocket(params);
+            }
+            return PlainSocketFactory.getSocketFactory().createSocket(params);
+        }
+
+        @Override
+        public Socket connectSocket(Socket socket, InetSocketAddress remoteAddress, InetSocketAddress localAddress,
+                HttpParams params) throws IOException, UnknownHostException, ConnectTimeoutException {
+            ConnectionPhases phases = ConnectionPhases.current();
+            if (phases == null) {
+                return this.delegate.connectSocket(socket, remoteAddress, localAddress, params);
+            }
+            long startNanos = System.nanoTime();
+            Socket plain = PlainSocketFactory.getSocketFactory().connectSocket(
+                socket == null ? new Socket() : socket, remoteAddress, localAddress, params);
+            phases.log(ConnectionPhases.CONNECT_EVENT, startNanos);
+
+            startNanos = System.nanoTime();
+            String hostName = remoteAddress instanceof HttpInetSocketAddress
+                ? ((HttpInetSocketAddress) remoteAddress).getHttpHost().getHostName()
+                : remoteAddress.getHostName();
+            Socket layered = this.delegate.createLayeredSocket(plain, hostName, remoteAddress.getPort(), params);
+            phases.log(ConnectionPhases.TLS_HANDSHAKE_EVENT, startNanos);
+            return layered;
+        }
+
+        @Override
+        public Socket createLayeredSocket(Socket socket, String target, int port, HttpParams params)
+                throws IOException, UnknownHostException {
+            ConnectionPhases phases = ConnectionPhases.current();
+            if (phases == null) {
+                return this.delegate.createLayeredSocket(socket, target, port, params);
+            }
+            long startNanos = System.nanoTime();
+            Socket layered = this.delegate.createLayeredSocket(socket, target, port, params);
+            phases.log(ConnectionPhases.TLS_HANDSHAKE_EVENT, startNanos);
+            return layered;
+        }
+    }
+}
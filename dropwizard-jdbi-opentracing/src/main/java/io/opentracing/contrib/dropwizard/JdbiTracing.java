@@ -0,0 +1,190 @@
+package io.opentracing.contrib.dropwizard;
+
+import io.dropwizard.db.ManagedDataSource;
+import io.opentracing.Span;
+import io.opentracing.Tracer;
+import io.opentracing.tag.Tags;
+import org.skife.jdbi.v2.DBI;
+import org.skife.jdbi.v2.StatementContext;
+import org.skife.jdbi.v2.tweak.StatementBuilder;
+import org.skife.jdbi.v2.tweak.StatementBuilderFactory;
+
+import javax.sql.DataSource;
+import java.lang.reflect.Method;
+import java.sql.Connection;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+
+/**
+ * Traces the statements run by a DBI, each with a child span of the request
+ * span of the thread running it (see ServerTracingFeature.getThreadLocalRequestSpan()).
+ *
+ * Spans of statements run by a SQL object method are named after the method
+ * (e.g. "UserDAO.findById"), other spans get the operation name of this
+ * JdbiTracing. Each span covers preparing the statement, executing it and
+ * reading its results, and is tagged with:
+ *
+ * - "Execution Micros": executing the statement
+ * - "Rows": the rows read from its results, or the rows it updated
+ * - "Connection Acquire Micros": getting a connection from the data source,
+ *   for the first statement run on it, if the data source was wrapped with
+ *   trace(DataSource)
+ *
+ * The SQL of statements is not tagged unless withSqlStatements() is used, as
+ * it may contain literal values.
+ */
+public final class JdbiTracing {
+
+    static final String COMPONENT = "jdbi";
+    static final String DB_TYPE = "db.type";
+    static final String DB_STATEMENT = "db.statement";
+
+    private final DropWizardTracer tracer;
+    private final String operationName;
+    private final boolean sqlStatements;
+    private final TracingSampler sampler;
+    private final ConcurrentMap<Method, String> methodOperationNames;
+
+    private JdbiTracing(DropWizardTracer tracer, String operationName, boolean sqlStatements,
+            TracingSampler sampler) {
+        this.tracer = tracer;
+        this.operationName = operationName;
+        this.sqlStatements = sqlStatements;
+        this.sampler = sampler;
+        this.methodOperationNames = new ConcurrentHashMap<Method, String>();
+    }
+
+    public static class Builder {
+
+        private final DropWizardTracer tracer;
+        private String operationName;
+        private boolean sqlStatements;
+        private TracingSampler sampler;
+
+        /**
+         * @param tracer to trace the statements with
+         */
+        public Builder(DropWizardTracer tracer) {
+            this.tracer = tracer;
+            this.operationName = COMPONENT;
+            this.sqlStatements = false;
+        }
+
+        /**
+         * @param operationName for spans of statements not run by a SQL
+         *  object method; "jdbi" by default
+         * @return Builder configured with added operationName
+         */
+        public Builder withOperationName(String operationName) {
+            this.operationName = operationName;
+            return this;
+        }
+
+        /**
+         * Tags the SQL of each statement as "db.statement". Parameters are
+         * bound separately and never tagged, but literal values written in
+         * the SQL are.
+         * @return Builder configured to tag the SQL of statements
+         */
+        public Builder withSqlStatements() {
+            this.sqlStatements = true;
+            return this;
+        }
+
+        /**
+         * By default, only statements run while a traced request is
+         * processed (or a task traced by a TaskTracing runs) are traced, so
+         * that e.g. the validation queries of health checks start no traces.
+         * With a sampler, other statements are traced if sampled.
+         * @param sampler decides which statements run outside of traced
+         *  requests to trace
+         * @return Builder configured with added sampler
+         */
+        public Builder withSampler(TracingSampler sampler) {
+            this.sampler = sampler;
+            return this;
+        }
+
+        /**
+         * @return JdbiTracing with the configuration of this Builder
+         */
+        public JdbiTracing build() {
+            return new JdbiTracing(this.tracer, this.operationName, this.sqlStatements, this.sampler);
+        }
+    }
+
+    /**
+     * Traces the statements run by dbi, by wrapping the StatementBuilders
+     * of its StatementBuilderFactory.
+     * @param dbi to trace the statements of
+     * @return dbi
+     */
+    public DBI trace(DBI dbi) {
+        final StatementBuilderFactory delegate = dbi.getStatementBuilderFactory();
+        dbi.setStatementBuilderFactory(new StatementBuilderFactory() {
+            @Override
+            public StatementBuilder createStatementBuilder(Connection conn) {
+                return new TracingStatementBuilder(JdbiTracing.this, delegate.createStatementBuilder(conn));
+            }
+        });
+        return dbi;
+    }
+
+    /**
+     * @param dataSource to time getting connections from
+     * @return a data source getting connections from dataSource, to build a
+     *  DBI with, whose spans are then tagged with the time spent getting
+     *  their connection. It starts and stops dataSource if it is managed.
+     */
+    public ManagedDataSource trace(DataSource dataSource) {
+        return new TracingDataSource(dataSource);
+    }
+
+    /**
+     * @param connection to run the statement on
+     * @param sql of the statement
+     * @param context of the statement
+     * @return a span for the statement, or null if it is not traced
+     */
+    Span startSpan(Connection connection, String sql, StatementContext context) {
+        Span parentSpan = ServerTracingFeature.getThreadLocalRequestSpan();
+        String operationName = operationName(context);
+        if (parentSpan == null && (ServerTracingFeature.isThreadLocalRequestUnsampled()
+                || this.sampler == null || !this.sampler.sample(operationName))) {
+            return null;
+        }
+
+        Tracer.SpanBuilder spanBuilder = this.tracer.getTracer().buildSpan(operationName)
+            .withTag(Tags.SPAN_KIND.getKey(), Tags.SPAN_KIND_CLIENT)
+            .withTag(Tags.COMPONENT.getKey(), COMPONENT)
+            .withTag(DB_TYPE, "sql");
+        if (parentSpan != null) {
+            spanBuilder = spanBuilder.asChildOf(parentSpan.context());
+        }
+        if (this.sqlStatements) {
+            spanBuilder = spanBuilder.withTag(DB_STATEMENT, sql);
+        }
+        long acquireNanos = TracingDataSource.takeAcquireNanos(connection);
+        if (acquireNanos >= 0) {
+            spanBuilder = spanBuilder.withTag("Connection Acquire Micros", acquireNanos / 1000);
+        }
+        return spanBuilder.start();
+    }
+
+    /**
+     * @return the name of the SQL object method running the statement,
+     *  computed once per method, or the operation name of this JdbiTracing
+     */
+    private String operationName(StatementContext context) {
+        Method method = context.getSqlObjectMethod();
+        if (method == null) {
+            return this.operationName;
+        }
+        String operationName = this.methodOperationNames.get(method);
+        if (operationName == null) {
+            operationName = method.getDeclaringClass().getSimpleName() + "." + method.getName();
+            this.methodOperationNames.putIfAbsent(method, operationName);
+        }
+        return operationName;
+    }
+}
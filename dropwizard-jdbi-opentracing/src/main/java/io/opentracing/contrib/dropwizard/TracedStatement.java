@@ -0,0 +1,147 @@
+package io.opentracing.contrib.dropwizard;
+
+import io.opentracing.Span;
+
+import java.lang.reflect.InvocationHandler;
+import java.lang.reflect.InvocationTargetException;
+import java.lang.reflect.Method;
+import java.lang.reflect.Proxy;
+import java.sql.PreparedStatement;
+import java.sql.ResultSet;
+import java.sql.Statement;
+
+/**
+ * A PreparedStatement timing its execution, and counting the rows read from
+ * its results or updated by it, for its span.
+ *
+ * Statements are used by one thread at a time, so nothing is synchronized.
+ */
+final class TracedStatement implements InvocationHandler {
+
+    private static final Class<?>[] STATEMENT_INTERFACES = new Class<?>[] { PreparedStatement.class };
+    private static final Class<?>[] RESULT_SET_INTERFACES = new Class<?>[] { ResultSet.class };
+
+    private final PreparedStatement delegate;
+    private final Span span;
+    private long executionNanos;
+    private long rows;
+    private boolean finished;
+
+    private TracedStatement(PreparedStatement delegate, Span span) {
+        this.delegate = delegate;
+        this.span = span;
+    }
+
+    /**
+     * @param statement to trace
+     * @param span of the statement
+     * @return a PreparedStatement tracing statement
+     */
+    static PreparedStatement wrap(PreparedStatement statement, Span span) {
+        return (PreparedStatement) Proxy.newProxyInstance(TracedStatement.class.getClassLoader(),
+            STATEMENT_INTERFACES, new TracedStatement(statement, span));
+    }
+
+    /**
+     * @return the TracedStatement of statement, or null if it is not traced
+     */
+    static TracedStatement of(Statement statement) {
+        if (statement == null || !Proxy.isProxyClass(statement.getClass())) {
+            return null;
+        }
+        InvocationHandler handler = Proxy.getInvocationHandler(statement);
+        return handler instanceof TracedStatement ? (TracedStatement) handler : null;
+    }
+
+    /**
+     * @return the statement being traced
+     */
+    PreparedStatement getDelegate() {
+        return this.delegate;
+    }
+
+    /**
+     * Tags the execution time and rows of the statement, and finishes its
+     * span. Called once the statement is closed.
+     */
+    void finish() {
+        if (this.finished) {
+            return;
+        }
+        this.finished = true;
+        this.span.setTag("Execution Micros", this.executionNanos / 1000);
+        this.span.setTag("Rows", this.rows);
+        this.span.finish();
+    }
+
+    @Override
+    public Object invoke(Object proxy, Method method, Object[] args) throws Throwable {
+        String name = method.getName();
+        if (name.startsWith("execute")) {
+            long startNanos = System.nanoTime();
+            Object result;
+            try {
+                result = call(this.delegate, method, args);
+            } catch (Throwable e) {
+                SpanTags.setError(this.span, e);
+                throw e;
+            } finally {
+                this.executionNanos += System.nanoTime() - startNanos;
+            }
+            if (result instanceof ResultSet) {
+                return countRows((ResultSet) result);
+            } else if (result instanceof Integer) {
+                this.rows += (Integer) result;
+            } else if (result instanceof int[]) {
+                for (int count : (int[]) result) {
+                    if (count > 0) {
+                        this.rows += count;
+                    }
+                }
+            }
+            return result;
+        }
+
+        Object result = call(this.delegate, method, args);
+        if (name.equals("getResultSet") && result != null) {
+            return countRows((ResultSet) result);
+        } else if (name.equals("getUpdateCount") && (Integer) result > 0) {
+            this.rows += (Integer) result;
+        }
+        return result;
+    }
+
+    private ResultSet countRows(ResultSet resultSet) {
+        return (ResultSet) Proxy.newProxyInstance(TracedStatement.class.getClassLoader(),
+            RESULT_SET_INTERFACES, new RowCounter(resultSet));
+    }
+
+    private static Object call(Object target, Method method, Object[] args) throws Throwable {
+        try {
+            return method.invoke(target, args);
+        } catch (InvocationTargetException e) {
+            throw e.getCause();
+        }
+    }
+
+    /**
+     * Counts the rows read from a ResultSet of the statement.
+     */
+    private final class RowCounter implements InvocationHandler {
+
+        private final ResultSet delegate;
+
+        RowCounter(ResultSet delegate) {
+            this.delegate = delegate;
+        }
+
+        @Override
+        public Object invoke(Object proxy, Method method, Object[] args) throws Throwable {
+            Object result = call(this.delegate, method, args);
+            if (method.getName().equals("next") && Boolean.TRUE.equals(result)) {
+                rows++;
+            }
+            return result;
+        }
+    }
+}
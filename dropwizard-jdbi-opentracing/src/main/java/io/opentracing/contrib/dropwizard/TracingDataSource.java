@@ -0,0 +1,122 @@
+package io.opentracing.contrib.dropwizard;
+
+import io.dropwizard.db.ManagedDataSource;
+import io.dropwizard.lifecycle.Managed;
+
+import javax.sql.DataSource;
+import java.io.PrintWriter;
+import java.sql.Connection;
+import java.sql.SQLException;
+import java.sql.SQLFeatureNotSupportedException;
+import java.util.logging.Logger;
+
+/**
+ * Times getting connections from a data source. The time it took to get the
+ * last connection of each thread is kept until the first statement run on
+ * that connection, whose span is tagged with it.
+ */
+class TracingDataSource implements ManagedDataSource {
+
+    private static final ThreadLocal<Acquisition> lastAcquisition = new ThreadLocal<Acquisition>() {
+        @Override
+        protected Acquisition initialValue() {
+            return new Acquisition();
+        }
+    };
+
+    private final DataSource delegate;
+
+    TracingDataSource(DataSource delegate) {
+        this.delegate = delegate;
+    }
+
+    /**
+     * @param connection a statement is about to be run on
+     * @return the nanoseconds it took the calling thread to get connection,
+     *  or -1 if unknown or already returned for an earlier statement
+     */
+    static long takeAcquireNanos(Connection connection) {
+        Acquisition acquisition = lastAcquisition.get();
+        if (acquisition.connection != connection) {
+            return -1;
+        }
+        acquisition.connection = null;
+        return acquisition.nanos;
+    }
+
+    @Override
+    public Connection getConnection() throws SQLException {
+        long startNanos = System.nanoTime();
+        Connection connection = this.delegate.getConnection();
+        acquired(connection, startNanos);
+        return connection;
+    }
+
+    @Override
+    public Connection getConnection(String username, String password) throws SQLException {
+        long startNanos = System.nanoTime();
+        Connection connection = this.delegate.getConnection(username, password);
+        acquired(connection, startNanos);
+        return connection;
+    }
+
+    private static void acquired(Connection connection, long startNanos) {
+        Acquisition acquisition = lastAcquisition.get();
+        acquisition.connection = connection;
+        acquisition.nanos = System.nanoTime() - startNanos;
+    }
+
+    @Override
+    public void start() throws Exception {
+        if (this.delegate instanceof Managed) {
+            ((Managed) this.delegate).start();
+        }
+    }
+
+    @Override
+    public void stop() throws Exception {
+        if (this.delegate instanceof Managed) {
+            ((Managed) this.delegate).stop();
+        }
+    }
+
+    @Override
+    public PrintWriter getLogWriter() throws SQLException {
+        return this.delegate.getLogWriter();
+    }
+
+    @Override
+    public void setLogWriter(PrintWriter out) throws SQLException {
+        this.delegate.setLogWriter(out);
+    }
+
+    @Override
+    public void setLoginTimeout(int seconds) throws SQLException {
+        this.delegate.setLoginTimeout(seconds);
+    }
+
+    @Override
+    public int getLoginTimeout() throws SQLException {
+        return this.delegate.getLoginTimeout();
+    }
+
+    @Override
+    public Logger getParentLogger() throws SQLFeatureNotSupportedException {
+        return this.delegate.getParentLogger();
+    }
+
+    @Override
+    public <T> T unwrap(Class<T> iface) throws SQLException {
+        return iface.isInstance(this.delegate) ? iface.cast(this.delegate) : this.delegate.unwrap(iface);
+    }
+
+    @Override
+    public boolean isWrapperFor(Class<?> iface) throws SQLException {
+        return iface.isInstance(this.delegate) || this.delegate.isWrapperFor(iface);
+    }
+
+    private static final class Acquisition {
+        private Connection connection;
+        private long nanos;
+    }
+}
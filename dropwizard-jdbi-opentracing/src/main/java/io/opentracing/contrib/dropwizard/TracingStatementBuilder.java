@@ -0,0 +1,73 @@
+package io.opentracing.contrib.dropwizard;
+
+import io.opentracing.Span;
+import org.skife.jdbi.v2.StatementContext;
+import org.skife.jdbi.v2.tweak.StatementBuilder;
+
+import java.sql.CallableStatement;
+import java.sql.Connection;
+import java.sql.PreparedStatement;
+import java.sql.SQLException;
+import java.sql.Statement;
+
+/**
+ * Starts a span when a statement is prepared, and finishes it when JDBI
+ * closes the statement, once its results have been read.
+ *
+ * Calls of stored procedures are not traced.
+ */
+class TracingStatementBuilder implements StatementBuilder {
+
+    private final JdbiTracing tracing;
+    private final StatementBuilder delegate;
+
+    TracingStatementBuilder(JdbiTracing tracing, StatementBuilder delegate) {
+        this.tracing = tracing;
+        this.delegate = delegate;
+    }
+
+    @Override
+    public PreparedStatement create(Connection conn, String sql, StatementContext ctx) throws SQLException {
+        Span span = this.tracing.startSpan(conn, sql, ctx);
+        if (span == null) {
+            return this.delegate.create(conn, sql, ctx);
+        }
+        PreparedStatement statement;
+        try {
+            statement = this.delegate.create(conn, sql, ctx);
+        } catch (SQLException e) {
+            SpanTags.setError(span, e);
+            span.finish();
+            throw e;
+        } catch (RuntimeException e) {
+            SpanTags.setError(span, e);
+            span.finish();
+            throw e;
+        }
+        return TracedStatement.wrap(statement, span);
+    }
+
+    @Override
+    public void close(Connection conn, String sql, Statement stmt) throws SQLException {
+        TracedStatement traced = TracedStatement.of(stmt);
+        if (traced == null) {
+            this.delegate.close(conn, sql, stmt);
+            return;
+        }
+        try {
+            this.delegate.close(conn, sql, traced.getDelegate());
+        } finally {
+            traced.finish();
+        }
+    }
+
+    @Override
+    public void close(Connection conn) {
+        this.delegate.close(conn);
+    }
+
+    @Override
+    public CallableStatement createCall(Connection conn, String sql, StatementContext ctx) throws SQLException {
+        return this.delegate.createCall(conn, sql, ctx);
+    }
+}
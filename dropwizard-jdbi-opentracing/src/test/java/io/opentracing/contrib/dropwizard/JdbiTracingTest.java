@@ -0,0 +1,154 @@
+package io.opentracing.contrib.dropwizard;
+
+import io.opentracing.Span;
+import io.opentracing.mock.MockSpan;
+import io.opentracing.mock.MockTracer;
+import org.h2.jdbcx.JdbcConnectionPool;
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+import org.skife.jdbi.v2.DBI;
+import org.skife.jdbi.v2.Handle;
+import org.skife.jdbi.v2.sqlobject.Bind;
+import org.skife.jdbi.v2.sqlobject.SqlQuery;
+import org.skife.jdbi.v2.sqlobject.SqlUpdate;
+
+import java.util.Arrays;
+import java.util.List;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+
+public class JdbiTracingTest {
+
+    private static final AtomicInteger DATABASES = new AtomicInteger();
+
+    public interface UserDAO {
+
+        @SqlUpdate("create table users (id int primary key, name varchar(100))")
+        void createTable();
+
+        @SqlUpdate("insert into users (id, name) values (:id, :name)")
+        int insert(@Bind("id") int id, @Bind("name") String name);
+
+        @SqlQuery("select name from users order by id")
+        List<String> findNames();
+    }
+
+    private MockTracer mockTracer;
+    private DropWizardTracer tracer;
+    private JdbcConnectionPool pool;
+    private Span requestSpan;
+
+    @Before
+    public void setUp() {
+        this.mockTracer = new MockTracer();
+        this.tracer = new DropWizardTracer(this.mockTracer);
+        this.pool = JdbcConnectionPool.create("jdbc:h2:mem:test" + DATABASES.incrementAndGet(), "sa", "");
+        this.requestSpan = this.tracer.getTracer().buildSpan("request").start();
+        ServerTracingFeature.threadLocalRequestSpan.set(this.requestSpan);
+    }
+
+    @After
+    public void tearDown() {
+        ServerTracingFeature.threadLocalRequestSpan.remove();
+        this.pool.dispose();
+    }
+
+    private DBI dbi(JdbiTracing jdbiTracing) {
+        return jdbiTracing.trace(new DBI(jdbiTracing.trace(this.pool)));
+    }
+
+    private List<String> operationNames() {
+        String[] names = new String[this.mockTracer.finishedSpans().size()];
+        for (int i = 0; i < names.length; i++) {
+            names[i] = this.mockTracer.finishedSpans().get(i).operationName();
+        }
+        return Arrays.asList(names);
+    }
+
+    @Test
+    public void spansAreNamedAfterSqlObjectMethods() {
+        UserDAO dao = dbi(new JdbiTracing.Builder(this.tracer).build()).onDemand(UserDAO.class);
+        dao.createTable();
+        dao.insert(1, "alice");
+        dao.findNames();
+
+        assertEquals(Arrays.asList("UserDAO.createTable", "UserDAO.insert", "UserDAO.findNames"),
+            operationNames());
+        long requestSpanId = ((MockSpan) this.requestSpan).context().spanId();
+        for (MockSpan span : this.mockTracer.finishedSpans()) {
+            assertEquals(requestSpanId, span.parentId());
+            assertEquals("client", span.tags().get("span.kind"));
+            assertEquals("jdbi", span.tags().get("component"));
+            assertEquals("sql", span.tags().get("db.type"));
+        }
+    }
+
+    @Test
+    public void rowsAreTagged() {
+        UserDAO dao = dbi(new JdbiTracing.Builder(this.tracer).build()).onDemand(UserDAO.class);
+        dao.createTable();
+        dao.insert(1, "alice");
+        dao.insert(2, "bob");
+        assertEquals(Arrays.asList("alice", "bob"), dao.findNames());
+
+        List<MockSpan> spans = this.mockTracer.finishedSpans();
+        assertEquals(4, spans.size());
+        assertEquals(1L, spans.get(1).tags().get("Rows"));
+        assertEquals(1L, spans.get(2).tags().get("Rows"));
+        assertEquals(2L, spans.get(3).tags().get("Rows"));
+        assertTrue(spans.get(3).tags().get("Execution Micros") instanceof Long);
+    }
+
+    @Test
+    public void connectionAcquireIsTaggedOnTheFirstStatement() {
+        Handle handle = dbi(new JdbiTracing.Builder(this.tracer).build()).open();
+        try {
+            handle.execute("create table users (id int primary key, name varchar(100))");
+            handle.execute("insert into users (id, name) values (1, 'alice')");
+        } finally {
+            handle.close();
+        }
+
+        List<MockSpan> spans = this.mockTracer.finishedSpans();
+        assertEquals(Arrays.asList("jdbi", "jdbi"), operationNames());
+        assertTrue(spans.get(0).tags().get("Connection Acquire Micros") instanceof Long);
+        assertFalse(spans.get(1).tags().containsKey("Connection Acquire Micros"));
+    }
+
+    @Test
+    public void sqlIsNotTaggedByDefault() {
+        UserDAO dao = dbi(new JdbiTracing.Builder(this.tracer).build()).onDemand(UserDAO.class);
+        dao.createTable();
+
+        assertEquals(1, this.mockTracer.finishedSpans().size());
+        assertFalse(this.mockTracer.finishedSpans().get(0).tags().containsKey("db.statement"));
+    }
+
+    @Test
+    public void sqlIsTaggedWithSqlStatements() {
+        UserDAO dao = dbi(new JdbiTracing.Builder(this.tracer).withSqlStatements().build())
+            .onDemand(UserDAO.class);
+        dao.createTable();
+
+        assertEquals("create table users (id int primary key, name varchar(100))",
+            this.mockTracer.finishedSpans().get(0).tags().get("db.statement"));
+    }
+
+    @Test
+    public void statementsOutsideOfRequestsAreOnlyTracedIfSampled() {
+        ServerTracingFeature.threadLocalRequestSpan.remove();
+        dbi(new JdbiTracing.Builder(this.tracer).build()).onDemand(UserDAO.class).createTable();
+        assertEquals(0, this.mockTracer.finishedSpans().size());
+
+        JdbiTracing sampled = new JdbiTracing.Builder(this.tracer)
+            .withSampler(new ProbabilisticSampler(1.0))
+            .build();
+        dbi(sampled).onDemand(UserDAO.class).insert(1, "alice");
+        assertEquals(Arrays.asList("UserDAO.insert"), operationNames());
+        assertEquals(0, this.mockTracer.finishedSpans().get(0).parentId());
+    }
+}
@@ -0,0 +1,102 @@
+package io.opentracing.contrib.dropwizard;
+
+import com.sun.jersey.api.client.Client;
+import com.sun.jersey.api.client.ClientHandler;
+import com.sun.jersey.api.client.ClientRequest;
+import com.sun.jersey.api.client.ClientResponse;
+import com.sun.jersey.core.header.InBoundHeaders;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Threads;
+import org.openjdk.jmh.annotations.Warmup;
+
+import java.net.URI;
+import java.util.Collections;
+import java.util.EnumSet;
+import java.util.HashSet;
+import java.util.Set;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Measures ClientTracingFilter.handle for one outbound call, against a
+ * terminal handler that answers immediately without any I/O.
+ */
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@Warmup(iterations = 5, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+@State(Scope.Benchmark)
+public class ClientFilterBenchmark {
+
+    /**
+     * NONE traces no attributes, COMMON traces METHOD and URI,
+     * ALL traces every ClientAttribute.
+     */
+    @Param({"NONE", "COMMON", "ALL"})
+    public String attributes;
+
+    private ClientHandler handler;
+
+    @Setup
+    public void setup() {
+        DropWizardTracer tracer = new DropWizardTracer(new BenchmarkTracer());
+        final ClientResponse response = new ClientResponse(200, new InBoundHeaders(), null, null);
+        Client client = new Client(new ClientHandler() {
+            @Override
+            public ClientResponse handle(ClientRequest request) {
+                return response;
+            }
+        });
+        client.addFilter(new ClientTracingFilter.Builder(tracer)
+            .withTracedAttributes(tracedAttributes(this.attributes))
+            .withTracedProperties(Collections.singleton("traced-property"))
+            .build());
+        this.handler = client.getHeadHandler();
+    }
+
+    static Set<ClientAttribute> tracedAttributes(String attributes) {
+        switch (attributes) {
+            case "COMMON":
+                return EnumSet.of(ClientAttribute.METHOD, ClientAttribute.URI);
+            case "ALL":
+                return EnumSet.allOf(ClientAttribute.class);
+            default:
+                return new HashSet<ClientAttribute>();
+        }
+    }
+
+    @State(Scope.Thread)
+    public static class Call {
+
+        ClientRequest request;
+
+        @Setup
+        public void setup() {
+            this.request = ClientRequest.create()
+                .accept("application/json")
+                .build(URI.create("http://downstream:8080/users/42"), "GET");
+            this.request.getProperties().put("traced-property", "value");
+        }
+    }
+
+    @Benchmark
+    @Threads(1)
+    public ClientResponse clientFilter(Call call) {
+        return this.handler.handle(call.request);
+    }
+
+    @Benchmark
+    @Threads(Threads.MAX)
+    public ClientResponse clientFilterContended(Call call) {
+        return this.handler.handle(call.request);
+    }
+}
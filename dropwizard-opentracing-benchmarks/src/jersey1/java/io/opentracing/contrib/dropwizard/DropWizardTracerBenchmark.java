@@ -0,0 +1,97 @@
+package io.opentracing.contrib.dropwizard;
+
+import com.sun.jersey.api.client.ClientRequest;
+import com.sun.jersey.core.header.InBoundHeaders;
+import com.sun.jersey.server.impl.application.WebApplicationImpl;
+import com.sun.jersey.spi.container.ContainerRequest;
+import io.opentracing.Span;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Threads;
+import org.openjdk.jmh.annotations.Warmup;
+
+import java.io.ByteArrayInputStream;
+import java.net.URI;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Measures the put/get/remove cycle on the DropWizardTracer span maps
+ * that every traced request and client call goes through.
+ */
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@Warmup(iterations = 5, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+@State(Scope.Benchmark)
+public class DropWizardTracerBenchmark {
+
+    private DropWizardTracer tracer;
+
+    @Setup
+    public void setup() {
+        this.tracer = new DropWizardTracer(new BenchmarkTracer());
+    }
+
+    @State(Scope.Thread)
+    public static class Requests {
+
+        ContainerRequest serverRequest;
+        ClientRequest clientRequest;
+        Span span;
+
+        @Setup
+        public void setup(DropWizardTracerBenchmark benchmark) {
+            this.serverRequest = new ContainerRequest(new WebApplicationImpl(), "GET", URI.create("http://localhost:8080/"),
+                URI.create("http://localhost:8080/users/42"), new InBoundHeaders(),
+                new ByteArrayInputStream(new byte[0]));
+            this.clientRequest = ClientRequest.create().build(URI.create("http://downstream:8080/users/42"), "GET");
+            this.span = benchmark.tracer.getTracer().buildSpan("benchmark").start();
+        }
+    }
+
+    @Benchmark
+    @Threads(1)
+    public Span serverSpans(Requests requests) {
+        return serverSpanCycle(requests);
+    }
+
+    @Benchmark
+    @Threads(Threads.MAX)
+    public Span serverSpansContended(Requests requests) {
+        return serverSpanCycle(requests);
+    }
+
+    @Benchmark
+    @Threads(1)
+    public Span clientSpans(Requests requests) {
+        return clientSpanCycle(requests);
+    }
+
+    @Benchmark
+    @Threads(Threads.MAX)
+    public Span clientSpansContended(Requests requests) {
+        return clientSpanCycle(requests);
+    }
+
+    private Span serverSpanCycle(Requests requests) {
+        this.tracer.addServerSpan(requests.serverRequest, requests.span);
+        Span span = this.tracer.getSpan(requests.serverRequest);
+        this.tracer.finishServerSpan(requests.serverRequest);
+        return span;
+    }
+
+    private Span clientSpanCycle(Requests requests) {
+        this.tracer.addClientSpan(requests.clientRequest, requests.span);
+        Span span = this.tracer.getSpan(requests.clientRequest);
+        this.tracer.finishClientSpan(requests.clientRequest);
+        return span;
+    }
+}
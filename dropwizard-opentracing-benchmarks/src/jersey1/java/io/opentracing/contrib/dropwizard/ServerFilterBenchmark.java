@@ -0,0 +1,145 @@
+package io.opentracing.contrib.dropwizard;
+
+import com.sun.jersey.core.header.InBoundHeaders;
+import com.sun.jersey.server.impl.application.WebApplicationImpl;
+import com.sun.jersey.spi.container.ContainerRequest;
+import com.sun.jersey.spi.container.ContainerResponse;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Threads;
+import org.openjdk.jmh.annotations.Warmup;
+
+import javax.ws.rs.core.SecurityContext;
+import java.io.ByteArrayInputStream;
+import java.net.URI;
+import java.security.Principal;
+import java.util.Collections;
+import java.util.EnumSet;
+import java.util.HashSet;
+import java.util.Set;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Measures ServerRequestTracingFilter.filter followed by
+ * ServerResponseTracingFilter.filter for one request, which is
+ * what every traced request to a DropWizard 0.7 service pays.
+ */
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@Warmup(iterations = 5, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+@State(Scope.Benchmark)
+public class ServerFilterBenchmark {
+
+    /**
+     * NONE traces no attributes, COMMON traces METHOD and URI,
+     * ALL traces every ServerAttribute.
+     */
+    @Param({"NONE", "COMMON", "ALL"})
+    public String attributes;
+
+    /**
+     * Whether the inbound request carries a parent span context.
+     */
+    @Param({"false", "true"})
+    public boolean propagated;
+
+    private ServerRequestTracingFilter requestFilter;
+    private ServerResponseTracingFilter responseFilter;
+
+    @Setup
+    public void setup() {
+        DropWizardTracer tracer = new DropWizardTracer(new BenchmarkTracer());
+        this.requestFilter = new ServerRequestTracingFilter.Builder(tracer)
+            .withTracedAttributes(tracedAttributes(this.attributes))
+            .withTracedProperties(Collections.singleton("traced-property"))
+            .build();
+        this.responseFilter = new ServerResponseTracingFilter(tracer);
+    }
+
+    static Set<ServerAttribute> tracedAttributes(String attributes) {
+        switch (attributes) {
+            case "COMMON":
+                return EnumSet.of(ServerAttribute.METHOD, ServerAttribute.URI);
+            case "ALL":
+                return EnumSet.allOf(ServerAttribute.class);
+            default:
+                return new HashSet<ServerAttribute>();
+        }
+    }
+
+    @State(Scope.Thread)
+    public static class Exchange {
+
+        ContainerRequest request;
+        ContainerResponse response;
+
+        @Setup
+        public void setup(ServerFilterBenchmark benchmark) {
+            InBoundHeaders headers = new InBoundHeaders();
+            for (int i = 0; i < 30; i++) {
+                headers.add("X-Header-" + i, "value-" + i);
+            }
+            headers.add("Accept", "application/json");
+            headers.add("Accept-Language", "en-US");
+            headers.add("Content-Type", "application/json");
+            headers.add("Cookie", "session=abc123");
+            if (benchmark.propagated) {
+                headers.add(BenchmarkTracer.TRACE_ID_HEADER, "4d2");
+                headers.add(BenchmarkTracer.SPAN_ID_HEADER, "10e1");
+            }
+            this.request = new ContainerRequest(new WebApplicationImpl(), "GET", URI.create("http://localhost:8080/"),
+                URI.create("http://localhost:8080/users/42?expand=true"), headers,
+                new ByteArrayInputStream(new byte[0]));
+            this.request.setSecurityContext(new SecurityContext() {
+                @Override
+                public Principal getUserPrincipal() {
+                    return null;
+                }
+
+                @Override
+                public boolean isUserInRole(String role) {
+                    return false;
+                }
+
+                @Override
+                public boolean isSecure() {
+                    return false;
+                }
+
+                @Override
+                public String getAuthenticationScheme() {
+                    return null;
+                }
+            });
+            this.request.getProperties().put("traced-property", "value");
+            this.response = new ContainerResponse(null, this.request, null);
+        }
+    }
+
+    @Benchmark
+    @Threads(1)
+    public void serverFilters(Exchange exchange) {
+        traceRequest(exchange);
+    }
+
+    @Benchmark
+    @Threads(Threads.MAX)
+    public void serverFiltersContended(Exchange exchange) {
+        traceRequest(exchange);
+    }
+
+    private void traceRequest(Exchange exchange) {
+        this.requestFilter.filter(exchange.request);
+        this.responseFilter.filter(exchange.request, exchange.response);
+    }
+}
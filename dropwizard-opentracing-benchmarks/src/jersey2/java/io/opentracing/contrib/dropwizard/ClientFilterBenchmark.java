@@ -0,0 +1,118 @@
+package io.opentracing.contrib.dropwizard;
+
+import org.glassfish.jersey.client.ClientConfig;
+import org.glassfish.jersey.client.ClientRequest;
+import org.glassfish.jersey.client.ClientResponse;
+import org.glassfish.jersey.client.JerseyClientBuilder;
+import org.glassfish.jersey.internal.MapPropertiesDelegate;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Threads;
+import org.openjdk.jmh.annotations.Warmup;
+
+import javax.ws.rs.core.Response;
+import java.io.IOException;
+import java.net.URI;
+import java.util.Collections;
+import java.util.EnumSet;
+import java.util.HashSet;
+import java.util.Set;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Measures ClientRequestTracingFilter.filter followed by
+ * ClientResponseTracingFilter.filter for one outbound call.
+ */
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@Warmup(iterations = 5, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+@State(Scope.Benchmark)
+public class ClientFilterBenchmark {
+
+    /**
+     * NONE traces no attributes, COMMON traces METHOD and URI,
+     * ALL traces every ClientAttribute.
+     */
+    @Param({"NONE", "COMMON", "ALL"})
+    public String attributes;
+
+    /**
+     * Where the DropWizardTracer keeps in-flight spans: in the shared
+     * maps, or as request properties.
+     */
+    @Param({"map", "request"})
+    public String storage;
+
+    private ClientRequestTracingFilter requestFilter;
+    private ClientResponseTracingFilter responseFilter;
+
+    @Setup
+    public void setup() {
+        DropWizardTracer tracer = ServerFilterBenchmark.newTracer(this.storage);
+        this.requestFilter = new ClientRequestTracingFilter(tracer, null, "",
+            tracedAttributes(this.attributes), Collections.singleton("traced-property"));
+        this.responseFilter = new ClientResponseTracingFilter(tracer);
+    }
+
+    static Set<ClientAttribute> tracedAttributes(String attributes) {
+        switch (attributes) {
+            case "COMMON":
+                return EnumSet.of(ClientAttribute.METHOD, ClientAttribute.URI);
+            case "ALL":
+                return EnumSet.allOf(ClientAttribute.class);
+            default:
+                return new HashSet<ClientAttribute>();
+        }
+    }
+
+    static ClientRequest newClientRequest() {
+        ClientConfig config = new JerseyClientBuilder().build().getConfiguration();
+        ClientRequest request = new ClientRequest(URI.create("http://downstream:8080/users/42"),
+            config, new MapPropertiesDelegate()) {};
+        request.setMethod("GET");
+        return request;
+    }
+
+    @State(Scope.Thread)
+    public static class Exchange {
+
+        ClientRequest request;
+        ClientResponse response;
+
+        @Setup
+        public void setup() {
+            this.request = newClientRequest();
+            this.request.getHeaders().add("Accept", "application/json");
+            this.request.getHeaders().add("Accept-Language", "en-US");
+            this.request.setProperty("traced-property", "value");
+            this.response = new ClientResponse(Response.Status.OK, this.request);
+        }
+    }
+
+    @Benchmark
+    @Threads(1)
+    public void clientFilters(Exchange exchange) throws IOException {
+        traceCall(exchange);
+    }
+
+    @Benchmark
+    @Threads(Threads.MAX)
+    public void clientFiltersContended(Exchange exchange) throws IOException {
+        traceCall(exchange);
+    }
+
+    private void traceCall(Exchange exchange) throws IOException {
+        this.requestFilter.filter(exchange.request);
+        this.responseFilter.filter(exchange.request, exchange.response);
+    }
+}
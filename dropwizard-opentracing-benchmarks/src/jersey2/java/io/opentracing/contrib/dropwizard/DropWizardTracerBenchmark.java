@@ -0,0 +1,102 @@
+package io.opentracing.contrib.dropwizard;
+
+import io.opentracing.Span;
+import org.glassfish.jersey.client.ClientRequest;
+import org.glassfish.jersey.internal.MapPropertiesDelegate;
+import org.glassfish.jersey.server.ContainerRequest;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Threads;
+import org.openjdk.jmh.annotations.Warmup;
+
+import java.net.URI;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Measures the put/get/remove cycle on the DropWizardTracer span maps
+ * that every traced request and client call goes through.
+ */
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@Warmup(iterations = 5, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+@State(Scope.Benchmark)
+public class DropWizardTracerBenchmark {
+
+    /**
+     * Where the DropWizardTracer keeps in-flight spans: in the shared
+     * maps, or as request properties.
+     */
+    @Param({"map", "request"})
+    public String storage;
+
+    private DropWizardTracer tracer;
+
+    @Setup
+    public void setup() {
+        this.tracer = ServerFilterBenchmark.newTracer(this.storage);
+    }
+
+    @State(Scope.Thread)
+    public static class Requests {
+
+        ContainerRequest serverRequest;
+        ClientRequest clientRequest;
+        Span span;
+
+        @Setup
+        public void setup(DropWizardTracerBenchmark benchmark) {
+            this.serverRequest = new ContainerRequest(URI.create("http://localhost:8080/"),
+                URI.create("http://localhost:8080/users/42"), "GET", null, new MapPropertiesDelegate());
+            this.clientRequest = ClientFilterBenchmark.newClientRequest();
+            this.span = benchmark.tracer.getTracer().buildSpan("benchmark").start();
+        }
+    }
+
+    @Benchmark
+    @Threads(1)
+    public Span serverSpans(Requests requests) {
+        return serverSpanCycle(requests);
+    }
+
+    @Benchmark
+    @Threads(Threads.MAX)
+    public Span serverSpansContended(Requests requests) {
+        return serverSpanCycle(requests);
+    }
+
+    @Benchmark
+    @Threads(1)
+    public Span clientSpans(Requests requests) {
+        return clientSpanCycle(requests);
+    }
+
+    @Benchmark
+    @Threads(Threads.MAX)
+    public Span clientSpansContended(Requests requests) {
+        return clientSpanCycle(requests);
+    }
+
+    private Span serverSpanCycle(Requests requests) {
+        this.tracer.addServerSpan(requests.serverRequest, requests.span);
+        Span span = this.tracer.getSpan(requests.serverRequest);
+        this.tracer.finishServerSpan(requests.serverRequest);
+        return span;
+    }
+
+    private Span clientSpanCycle(Requests requests) {
+        this.tracer.addClientSpan(requests.clientRequest, requests.span);
+        Span span = this.tracer.getSpan(requests.clientRequest);
+        this.tracer.finishClientSpan(requests.clientRequest);
+        return span;
+    }
+}
@@ -0,0 +1,143 @@
+package io.opentracing.contrib.dropwizard;
+
+import org.glassfish.jersey.internal.MapPropertiesDelegate;
+import org.glassfish.jersey.server.ContainerRequest;
+import org.glassfish.jersey.server.ContainerResponse;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Threads;
+import org.openjdk.jmh.annotations.Warmup;
+
+import javax.ws.rs.core.Response;
+import java.io.ByteArrayInputStream;
+import java.io.IOException;
+import java.net.URI;
+import java.util.EnumSet;
+import java.util.HashSet;
+import java.util.Set;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Measures ServerRequestTracingFilter.filter followed by
+ * ServerResponseTracingFilter.filter for one request, which is
+ * what every traced request to a DropWizard service pays.
+ */
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@Warmup(iterations = 5, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+@State(Scope.Benchmark)
+public class ServerFilterBenchmark {
+
+    /**
+     * NONE traces no attributes, COMMON traces METHOD and URI,
+     * ALL traces every ServerAttribute.
+     */
+    @Param({"NONE", "COMMON", "ALL"})
+    public String attributes;
+
+    /**
+     * Whether the inbound request carries a parent span context.
+     */
+    @Param({"false", "true"})
+    public boolean propagated;
+
+    /**
+     * Where the DropWizardTracer keeps in-flight spans: in the shared
+     * maps, or as request properties.
+     */
+    @Param({"map", "request"})
+    public String storage;
+
+    /**
+     * Fraction of requests sampled by a ProbabilisticSampler: 0.0 measures
+     * the cost of requests that only propagate their span context.
+     */
+    @Param({"1.0", "0.0"})
+    public double sampleRate;
+
+    private ServerRequestTracingFilter requestFilter;
+    private ServerResponseTracingFilter responseFilter;
+
+    @Setup
+    public void setup() {
+        DropWizardTracer tracer = newTracer(this.storage);
+        this.requestFilter = new ServerRequestTracingFilter(tracer, "",
+            ServerAttributeExtractor.compile(tracedAttributes(this.attributes)),
+            new String[] {"traced-property"}, null, null, new ProbabilisticSampler(this.sampleRate), null);
+        this.responseFilter = new ServerResponseTracingFilter(tracer);
+    }
+
+    static DropWizardTracer newTracer(String storage) {
+        DropWizardTracer.Builder builder = new DropWizardTracer.Builder(new BenchmarkTracer());
+        if (storage.equals("request")) {
+            builder.withRequestScopedSpans();
+        }
+        return builder.build();
+    }
+
+    static Set<ServerAttribute> tracedAttributes(String attributes) {
+        switch (attributes) {
+            case "COMMON":
+                return EnumSet.of(ServerAttribute.METHOD, ServerAttribute.URI);
+            case "ALL":
+                return EnumSet.allOf(ServerAttribute.class);
+            default:
+                return new HashSet<ServerAttribute>();
+        }
+    }
+
+    @State(Scope.Thread)
+    public static class Exchange {
+
+        ContainerRequest request;
+        ContainerResponse response;
+
+        @Setup
+        public void setup(ServerFilterBenchmark benchmark) {
+            this.request = new ContainerRequest(URI.create("http://localhost:8080/"),
+                URI.create("http://localhost:8080/users/42?expand=true"), "GET", null,
+                new MapPropertiesDelegate());
+            for (int i = 0; i < 30; i++) {
+                this.request.getHeaders().add("X-Header-" + i, "value-" + i);
+            }
+            this.request.getHeaders().add("Accept", "application/json");
+            this.request.getHeaders().add("Accept-Language", "en-US");
+            this.request.getHeaders().add("Content-Type", "application/json");
+            this.request.getHeaders().add("Cookie", "session=abc123");
+            if (benchmark.propagated) {
+                this.request.getHeaders().add(BenchmarkTracer.TRACE_ID_HEADER, "4d2");
+                this.request.getHeaders().add(BenchmarkTracer.SPAN_ID_HEADER, "10e1");
+            }
+            this.request.setEntityStream(new ByteArrayInputStream(new byte[0]));
+            this.request.setProperty("traced-property", "value");
+            this.response = new ContainerResponse(this.request, Response.ok().build());
+        }
+    }
+
+    @Benchmark
+    @Threads(1)
+    public void serverFilters(Exchange exchange) throws IOException {
+        traceRequest(exchange);
+    }
+
+    @Benchmark
+    @Threads(Threads.MAX)
+    public void serverFiltersContended(Exchange exchange) throws IOException {
+        traceRequest(exchange);
+    }
+
+    private void traceRequest(Exchange exchange) throws IOException {
+        this.requestFilter.filter(exchange.request);
+        this.responseFilter.filter(exchange.request, exchange.response);
+    }
+}
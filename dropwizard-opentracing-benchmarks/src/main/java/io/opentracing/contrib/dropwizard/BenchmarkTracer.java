@@ -0,0 +1,214 @@
+package io.opentracing.contrib.dropwizard;
+
+import io.opentracing.Span;
+import io.opentracing.SpanContext;
+import io.opentracing.Tracer;
+import io.opentracing.propagation.Format;
+import io.opentracing.propagation.TextMap;
+
+import java.util.Collections;
+import java.util.Map;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * A minimal in-process Tracer for the benchmarks. It propagates context through
+ * two HTTP headers (like most real tracers do) and keeps just enough state per
+ * span that the JIT can't eliminate the work done by the filters, while adding
+ * as little cost of its own as possible.
+ */
+public class BenchmarkTracer implements Tracer {
+
+    static final String TRACE_ID_HEADER = "ot-tracer-traceid";
+    static final String SPAN_ID_HEADER = "ot-tracer-spanid";
+
+    private final AtomicLong ids = new AtomicLong();
+    private final AtomicLong finished = new AtomicLong();
+
+    /**
+     * @return the number of spans finished by this tracer
+     */
+    public long finishedSpans() {
+        return this.finished.get();
+    }
+
+    @Override
+    public SpanBuilder buildSpan(String operationName) {
+        return new BenchmarkSpanBuilder(operationName);
+    }
+
+    @Override
+    public <C> void inject(SpanContext spanContext, Format<C> format, C carrier) {
+        BenchmarkSpanContext context = (BenchmarkSpanContext) spanContext;
+        TextMap textMap = (TextMap) carrier;
+        textMap.put(TRACE_ID_HEADER, Long.toHexString(context.traceId));
+        textMap.put(SPAN_ID_HEADER, Long.toHexString(context.spanId));
+    }
+
+    @Override
+    public <C> SpanContext extract(Format<C> format, C carrier) {
+        long traceId = 0;
+        long spanId = 0;
+        for (Map.Entry<String, String> entry : (TextMap) carrier) {
+            if (TRACE_ID_HEADER.equalsIgnoreCase(entry.getKey())) {
+                traceId = Long.parseLong(entry.getValue(), 16);
+            } else if (SPAN_ID_HEADER.equalsIgnoreCase(entry.getKey())) {
+                spanId = Long.parseLong(entry.getValue(), 16);
+            }
+        }
+        if (traceId == 0) {
+            return null;
+        }
+        return new BenchmarkSpanContext(traceId, spanId);
+    }
+
+    static final class BenchmarkSpanContext implements SpanContext {
+
+        final long traceId;
+        final long spanId;
+
+        BenchmarkSpanContext(long traceId, long spanId) {
+            this.traceId = traceId;
+            this.spanId = spanId;
+        }
+
+        @Override
+        public Iterable<Map.Entry<String, String>> baggageItems() {
+            return Collections.<String, String>emptyMap().entrySet();
+        }
+    }
+
+    final class BenchmarkSpanBuilder implements SpanBuilder {
+
+        private final String operationName;
+        private BenchmarkSpanContext parent;
+        private long startMicros;
+
+        BenchmarkSpanBuilder(String operationName) {
+            this.operationName = operationName;
+        }
+
+        @Override
+        public SpanBuilder asChildOf(SpanContext parent) {
+            this.parent = (BenchmarkSpanContext) parent;
+            return this;
+        }
+
+        @Override
+        public SpanBuilder asChildOf(Span parent) {
+            return asChildOf(parent.context());
+        }
+
+        @Override
+        public SpanBuilder addReference(String referenceType, SpanContext referencedContext) {
+            return asChildOf(referencedContext);
+        }
+
+        @Override
+        public SpanBuilder withTag(String key, String value) {
+            return this;
+        }
+
+        @Override
+        public SpanBuilder withTag(String key, boolean value) {
+            return this;
+        }
+
+        @Override
+        public SpanBuilder withTag(String key, Number value) {
+            return this;
+        }
+
+        @Override
+        public SpanBuilder withStartTimestamp(long microseconds) {
+            this.startMicros = microseconds;
+            return this;
+        }
+
+        @Override
+        public Span start() {
+            long spanId = ids.incrementAndGet();
+            long traceId = this.parent == null ? spanId : this.parent.traceId;
+            return new BenchmarkSpan(this.operationName, new BenchmarkSpanContext(traceId, spanId), this.startMicros);
+        }
+
+        @Override
+        public Iterable<Map.Entry<String, String>> baggageItems() {
+            return Collections.<String, String>emptyMap().entrySet();
+        }
+    }
+
+    final class BenchmarkSpan implements Span {
+
+        private final String operationName;
+        private final BenchmarkSpanContext context;
+        private final long startMicros;
+        private int tags;
+        private int logs;
+
+        BenchmarkSpan(String operationName, BenchmarkSpanContext context, long startMicros) {
+            this.operationName = operationName;
+            this.context = context;
+            this.startMicros = startMicros;
+        }
+
+        @Override
+        public SpanContext context() {
+            return this.context;
+        }
+
+        @Override
+        public void finish() {
+            finished.incrementAndGet();
+        }
+
+        @Override
+        public void finish(long finishMicros) {
+            finished.incrementAndGet();
+        }
+
+        @Override
+        public void close() {
+            finish();
+        }
+
+        @Override
+        public Span setTag(String key, String value) {
+            this.tags++;
+            return this;
+        }
+
+        @Override
+        public Span setTag(String key, boolean value) {
+            this.tags++;
+            return this;
+        }
+
+        @Override
+        public Span setTag(String key, Number value) {
+            this.tags++;
+            return this;
+        }
+
+        @Override
+        public Span log(String eventName, Object payload) {
+            this.logs++;
+            return this;
+        }
+
+        @Override
+        public Span log(long timestampMicroseconds, String eventName, Object payload) {
+            this.logs++;
+            return this;
+        }
+
+        @Override
+        public Span setBaggageItem(String key, String value) {
+            return this;
+        }
+
+        @Override
+        public String getBaggageItem(String key) {
+            return null;
+        }
+    }
+}
@@ -0,0 +1,193 @@
+package io.opentracing.contrib.dropwizard;
+
+import io.opentracing.Span;
+
+import java.util.Arrays;
+import java.util.Set;
+import javax.ws.rs.client.ClientRequestContext;
+
+/**
+ * Tags one ClientAttribute of a client request to its span.
+ *
+ * The configured set of ClientAttributes is compiled once into an array of
+ * extractors, so that tracing a client request is a plain loop over that array.
+ */
+abstract class ClientAttributeExtractor {
+
+    abstract void extract(ClientRequestContext requestContext, Span span);
+
+    /**
+     * @param attributes the ClientAttributes to trace
+     * @return an extractor for each of the attributes, in declaration order
+     */
+    static ClientAttributeExtractor[] compile(Set<ClientAttribute> attributes) {
+        return compile(attributes, HeaderTags.NONE);
+    }
+
+    /**
+     * @param attributes the ClientAttributes to trace
+     * @param headerTags the headers to tag individually and to redact
+     * @return an extractor for each of the attributes, in declaration order,
+     *  redacting HEADERS and COOKIES if needed, then one for the traced headers.
+     *  CLIENT and CONFIGURATION are not traced, as they have no useful string
+     *  form.
+     */
+    static ClientAttributeExtractor[] compile(Set<ClientAttribute> attributes, final HeaderTags headerTags) {
+        ClientAttributeExtractor[] extractors = new ClientAttributeExtractor[
+            attributes.size() + (headerTags.tracesHeaders() ? 1 : 0)];
+        int i = 0;
+        for (ClientAttribute attribute : ClientAttribute.values()) {
+            if (attributes.contains(attribute)) {
+                ClientAttributeExtractor extractor = headerTags.redactsHeaders()
+                    ? forRedactedAttribute(attribute, headerTags)
+                    : forAttribute(attribute);
+                if (extractor != null) {
+                    extractors[i++] = extractor;
+                }
+            }
+        }
+        if (headerTags.tracesHeaders()) {
+            extractors[i++] = new ClientAttributeExtractor() {
+                void extract(ClientRequestContext requestContext, Span span) {
+                    headerTags.tag(requestContext.getHeaders(), span);
+                }
+            };
+        }
+        return i == extractors.length ? extractors : Arrays.copyOf(extractors, i);
+    }
+
+    private static ClientAttributeExtractor forRedactedAttribute(ClientAttribute attribute,
+            final HeaderTags headerTags) {
+        switch (attribute) {
+            case COOKIES:
+                if (!headerTags.isRedacted("Cookie")) {
+                    return forAttribute(attribute);
+                }
+                // only the names of the cookies
+                return new ClientAttributeExtractor() {
+                    void extract(ClientRequestContext requestContext, Span span) {
+                        setTag(span, "Cookies", requestContext.getCookies().keySet());
+                    }
+                };
+            case HEADERS:
+                return new ClientAttributeExtractor() {
+                    void extract(ClientRequestContext requestContext, Span span) {
+                        span.setTag("Headers", headerTags.toString(requestContext.getHeaders()));
+                    }
+                };
+            default:
+                return forAttribute(attribute);
+        }
+    }
+
+    static ClientAttributeExtractor forAttribute(ClientAttribute attribute) {
+        switch (attribute) {
+            case ACCEPTABLE_LANGUAGES:
+                return new ClientAttributeExtractor() {
+                    void extract(ClientRequestContext requestContext, Span span) {
+                        setTag(span, "Acceptable Languages", requestContext.getAcceptableLanguages());
+                    }
+                };
+            case ACCEPTABLE_MEDIA_TYPES:
+                return new ClientAttributeExtractor() {
+                    void extract(ClientRequestContext requestContext, Span span) {
+                        setTag(span, "Acceptable Media Types", requestContext.getAcceptableMediaTypes());
+                    }
+                };
+            case CLIENT:
+            case CONFIGURATION:
+                // not traced: they have no useful string form
+                return null;
+            case COOKIES:
+                return new ClientAttributeExtractor() {
+                    void extract(ClientRequestContext requestContext, Span span) {
+                        setTag(span, "Cookies", requestContext.getCookies());
+                    }
+                };
+            case DATE:
+                return new ClientAttributeExtractor() {
+                    void extract(ClientRequestContext requestContext, Span span) {
+                        setTag(span, "Date", requestContext.getDate());
+                    }
+                };
+            case ENTITY:
+                return new ClientAttributeExtractor() {
+                    void extract(ClientRequestContext requestContext, Span span) {
+                        Object entity = requestContext.getEntity();
+                        if (entity != null) {
+                            span.log("Entity", entity);
+                        }
+                    }
+                };
+            case ENTITY_ANNOTATIONS:
+                return new ClientAttributeExtractor() {
+                    void extract(ClientRequestContext requestContext, Span span) {
+                        if (requestContext.getEntityAnnotations() != null) {
+                            span.setTag("Entity Annotations", Arrays.toString(requestContext.getEntityAnnotations()));
+                        }
+                    }
+                };
+            case ENTITY_CLASS:
+                return new ClientAttributeExtractor() {
+                    void extract(ClientRequestContext requestContext, Span span) {
+                        setTag(span, "Entity Class", requestContext.getEntityClass());
+                    }
+                };
+            case ENTITY_STREAM:
+                return new ClientAttributeExtractor() {
+                    void extract(ClientRequestContext requestContext, Span span) {
+                        EntityStreamTracker tracker = new EntityStreamTracker(span);
+                        requestContext.setProperty(EntityStreamTracker.PROPERTY, tracker);
+                        if (requestContext.hasEntity()) {
+                            requestContext.setEntityStream(tracker.countRequest(requestContext.getEntityStream()));
+                        }
+                    }
+                };
+            case HEADERS:
+                return new ClientAttributeExtractor() {
+                    void extract(ClientRequestContext requestContext, Span span) {
+                        setTag(span, "Headers", requestContext.getHeaders());
+                    }
+                };
+            case LANGUAGE:
+                return new ClientAttributeExtractor() {
+                    void extract(ClientRequestContext requestContext, Span span) {
+                        setTag(span, "Language", requestContext.getLanguage());
+                    }
+                };
+            case MEDIA_TYPE:
+                return new ClientAttributeExtractor() {
+                    void extract(ClientRequestContext requestContext, Span span) {
+                        setTag(span, "Media Type", requestContext.getMediaType());
+                    }
+                };
+            case METHOD:
+                return new ClientAttributeExtractor() {
+                    void extract(ClientRequestContext requestContext, Span span) {
+                        setTag(span, SpanTags.HTTP_METHOD, requestContext.getMethod());
+                    }
+                };
+            case PROPERTY_NAMES:
+                return new ClientAttributeExtractor() {
+                    void extract(ClientRequestContext requestContext, Span span) {
+                        setTag(span, "Property Names", requestContext.getPropertyNames());
+                    }
+                };
+            case URI:
+                return new ClientAttributeExtractor() {
+                    void extract(ClientRequestContext requestContext, Span span) {
+                        // like on servers, the query string is left out
+                        span.setTag(SpanTags.HTTP_URL, SpanTags.withoutQuery(requestContext.getUri()));
+                    }
+                };
+            default:
+                throw new IllegalArgumentException("Unsupported ClientAttribute: " + attribute);
+        }
+    }
+
+    static void setTag(Span span, String key, Object value) {
+        if (value != null) {
+            span.setTag(key, value.toString());
+        }
+    }
+}
@@ -1,6 +1,7 @@
 package io.opentracing.contrib.dropwizard;
 
 import io.opentracing.Span;
+import io.opentracing.SpanContext;
 import io.opentracing.propagation.Format;
 import io.opentracing.propagation.TextMap;
 
@@ -10,6 +11,7 @@ import javax.ws.rs.core.MultivaluedMap;
 import javax.ws.rs.core.Request;
 import java.io.IOException;
 import java.util.Iterator;
+import java.util.LinkedHashMap;
 import java.util.Map;
 import java.util.Set;
 
@@ -20,10 +22,14 @@ import java.util.Set;
 public class ClientRequestTracingFilter implements ClientRequestFilter {
 
     private final Request request;
+    private final boolean activeRequest;
     private final DropWizardTracer tracer;
-    private final Set<ClientAttribute> tracedAttributes;
-    private final Set<String> tracedProperties;
-    private String operationName;
+    private final ClientAttributeExtractor[] attributeExtractors;
+    private final String[] tracedProperties;
+    private final String operationName;
+    private final TracingSampler sampler;
+    private final DynamicTracingPolicy policy;
+    private final OperationMetrics metrics;
 
     /**
      * @param tracer to trace requests with
@@ -39,111 +45,139 @@ public class ClientRequestTracingFilter implements ClientRequestFilter {
         String operationName,
         Set<ClientAttribute> tracedAttributes, 
         Set<String> tracedProperties
+    ) {
+        this(tracer, request, false, operationName, ClientAttributeExtractor.compile(tracedAttributes),
+            tracedProperties.toArray(new String[tracedProperties.size()]), null, null);
+    }
+
+    ClientRequestTracingFilter(
+        DropWizardTracer tracer,
+        Request request,
+        boolean activeRequest,
+        String operationName,
+        ClientAttributeExtractor[] attributeExtractors,
+        String[] tracedProperties,
+        TracingSampler sampler,
+        DynamicTracingPolicy policy
     ) {
         this.tracer = tracer;
         this.request = request;
-        this.operationName = operationName;
-        this.tracedAttributes = tracedAttributes;
+        this.activeRequest = activeRequest;
+        this.operationName = operationName.equals("") ? "Client" : operationName;
+        this.attributeExtractors = attributeExtractors;
         this.tracedProperties = tracedProperties;
+        this.sampler = sampler;
+        this.policy = policy;
+        this.metrics = tracer.getClientMetrics(this.operationName);
     }
 
     @Override
     public void filter(ClientRequestContext requestContext) throws IOException {
-        
-        // set the operation name
-        if (this.operationName == ""){
-            this.operationName = "Client";
+        // time the request, whether or not it is sampled
+        if (this.metrics != null) {
+            requestContext.setProperty(OperationMetrics.PROPERTY, this.metrics.start());
         }
 
-        // create the new span
-        Span span = null;
+        TracingOverhead overhead = this.tracer.getOverhead();
+
+        // read the policy once for the whole request
+        ClientAttributeExtractor[] attributeExtractors = this.attributeExtractors;
+        TracingSampler sampler = this.sampler;
+        if (this.policy != null) {
+            TracingPolicy policy = this.policy.get();
+            attributeExtractors = policy.clientAttributeExtractors;
+            sampler = policy.getSampler();
+        }
+
+        // find the span of the server request to continue the trace of
+        Span parentSpan = null;
+        SpanContext unsampledContext = null;
         if (this.request != null) {
-            Span parentSpan = this.tracer.getSpan(request);
+            parentSpan = this.tracer.getSpan(request);
             if (parentSpan == null) {
-                span = this.tracer.getTracer().buildSpan(operationName).start();
-            } else {
-                span = this.tracer.getTracer().buildSpan(operationName).asChildOf(parentSpan.context()).start();
+                unsampledContext = this.tracer.getUnsampledSpanContext(request);
+            }
+        } else if (this.activeRequest) {
+            parentSpan = ServerTracingFeature.threadLocalRequestSpan.get();
+            if (parentSpan == null) {
+                unsampledContext = ServerTracingFeature.threadLocalUnsampledContext.get();
+            }
+        }
+        if (unsampledContext != null) {
+            // the server request was not sampled: only propagate the span
+            // context it was called with, if any
+            if (unsampledContext != DropWizardTracer.UNSAMPLED_ROOT) {
+                inject(unsampledContext, requestContext.getHeaders(), overhead);
+            }
+            if (overhead != null) {
+                overhead.count(false);
+            }
+            return;
+        }
+
+        // create the new span
+        Span span = null;
+        if (parentSpan == null) {
+            if (sampler != null && !sampler.sample(operationName)) {
+                if (overhead != null) {
+                    overhead.count(false);
+                }
+                return;
             }
-        } else {
             span = this.tracer.getTracer().buildSpan(operationName).start();
+        } else {
+            span = this.tracer.getTracer().buildSpan(operationName).asChildOf(parentSpan.context()).start();
+        }
+
+        if (overhead != null) {
+            overhead.count(true);
         }
 
         // trace attributes
-       for (ClientAttribute attribute : this.tracedAttributes) {
-            switch(attribute) {
-                case ACCEPTABLE_LANGUAGES: 
-                    try { span.setTag("Acceptable Languages", requestContext.getAcceptableLanguages().toString()); }
-                    catch (NullPointerException npe) {}
-                    break;
-                case ACCEPTABLE_MEDIA_TYPES: 
-                    try{ span.setTag("Acceptable Media Types", requestContext.getAcceptableMediaTypes().toString()); }
-                    catch (NullPointerException npe) {}
-                    break;
-                case COOKIES:
-                    try { span.setTag("Cookies", requestContext.getCookies().toString()); }
-                    catch (NullPointerException npe) {}
-                    break;
-                case DATE:
-                    try { span.setTag("Date", requestContext.getDate().toString()); }
-                    catch (NullPointerException npe) {}
-                    break;
-                case ENTITY:
-                    try { span.log("Entity", requestContext.getEntity()); }
-                    catch (NullPointerException npe) {}
-                    break;
-                case ENTITY_ANNOTATIONS:
-                    try { span.setTag("Entity Stream", requestContext.getEntityStream().toString()); }
-                    catch (NullPointerException npe) {}
-                    break;
-                case ENTITY_CLASS:
-                    try { span.setTag("Entity Class", requestContext.getEntityClass().toString()); }
-                    catch (NullPointerException npe) {}
-                    break;
-                case ENTITY_STREAM:
-                    try { span.log("Entity Stream", requestContext.getEntityStream()); }
-                    catch (NullPointerException npe) {}
-                    break;
-                case HEADERS:
-                    try { span.setTag("Headers", requestContext.getHeaders().toString()); }
-                    catch (NullPointerException npe) {}
-                    break;
-                case LANGUAGE:
-                    try { span.setTag("Language", requestContext.getLanguage().toString()); }
-                    catch (NullPointerException npe) {}
-                    break;
-                case MEDIA_TYPE: 
-                    try { span.setTag("Media Type", requestContext.getMediaType().toString()); }
-                    catch (NullPointerException npe) {}
-                    break;
-                case METHOD:
-                    try { span.setTag("Method", requestContext.getMethod()); }
-                    catch (NullPointerException npe) {}
-                    break;
-                case PROPERTY_NAMES:
-                    try { span.setTag("Property Names", requestContext.getPropertyNames().toString()); }
-                    catch (NullPointerException npe) {}
-                    break;
-                case URI:
-                    try { span.setTag("URI", requestContext.getUri().toString()); }
-                    catch (NullPointerException npe) {}
-                    break;
-            }
+        boolean timed = overhead != null && overhead.timed();
+        long startNanos = timed ? System.nanoTime() : 0;
+        for (ClientAttributeExtractor extractor : attributeExtractors) {
+            extractor.extract(requestContext, span);
         }
 
-        // trace properties
+        // trace properties, in a single log event
+        Map<String, Object> properties = null;
         for (String propertyName : this.tracedProperties) {
             Object property = requestContext.getProperty(propertyName);
             if (property != null) {
-                span.log(propertyName, property);
+                if (properties == null) {
+                    properties = new LinkedHashMap<String, Object>();
+                }
+                properties.put(propertyName, property);
             }
         }
+        if (properties != null) {
+            span.log(SpanTags.PROPERTIES_EVENT, properties);
+        }
+        if (timed) {
+            overhead.tagged(startNanos);
+        }
 
         // add the new span to the tracer
         tracer.addClientSpan(requestContext, span);
 
         // add the span to the headers
-        final MultivaluedMap<String, Object> headers = requestContext.getHeaders();
-        tracer.getTracer().inject(span.context(), Format.Builtin.HTTP_HEADERS, new TextMap() {
+        inject(span.context(), requestContext.getHeaders(), overhead);
+    }
+
+    private void inject(SpanContext spanContext, final MultivaluedMap<String, Object> headers,
+            TracingOverhead overhead) {
+        boolean timed = overhead != null && overhead.timed();
+        long startNanos = timed ? System.nanoTime() : 0;
+        TraceParentCodec traceParentCodec = tracer.getTraceParentCodec();
+        if (traceParentCodec != null) {
+            traceParentCodec.inject(tracer.getTracer(), spanContext, headers);
+            if (timed) {
+                overhead.injected(startNanos);
+            }
+            return;
+        }
+        tracer.getTracer().inject(spanContext, Format.Builtin.HTTP_HEADERS, new TextMap() {
             @Override
             public void put(String k, String v) {
                 headers.putSingle(k, v);
@@ -154,5 +188,8 @@ public class ClientRequestTracingFilter implements ClientRequestFilter {
                 throw new UnsupportedOperationException("iterator should never be used with Tracer.inject()");
             }
         });
+        if (timed) {
+            overhead.injected(startNanos);
+        }
     }
 }
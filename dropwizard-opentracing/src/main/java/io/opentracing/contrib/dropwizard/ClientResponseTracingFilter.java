@@ -11,6 +11,10 @@ import javax.ws.rs.client.ClientResponseFilter;
 /**
  * When registered to a client or webtarget along with a ClientResponseTracingFilter,
  * this filter ends the span for a client request when the request finishes.
+ *
+ * With ClientAttribute.ENTITY_STREAM, the span of a response with an entity
+ * is only finished once that entity is closed, e.g. by Response.close() or
+ * by reading it with Response.readEntity().
  */
 public class ClientResponseTracingFilter implements ClientResponseFilter {
 
@@ -21,7 +25,33 @@ public class ClientResponseTracingFilter implements ClientResponseFilter {
     }
 
     @Override
-    public void filter(ClientRequestContext requestContext, ClientResponseContext responseContext) throws IOException {
+    public void filter(final ClientRequestContext requestContext, ClientResponseContext responseContext) throws IOException {
+        OperationMetrics.Timing timing = (OperationMetrics.Timing) requestContext.getProperty(OperationMetrics.PROPERTY);
+        if (timing != null) {
+            requestContext.removeProperty(OperationMetrics.PROPERTY);
+            timing.stop(responseContext.getStatus() >= 500);
+        }
+        Span span = this.tracer.getSpan(requestContext);
+        if (span != null) {
+            SpanTags.setStatusCode(span, responseContext.getStatus());
+        }
+        final EntityStreamTracker tracker = (EntityStreamTracker) requestContext.getProperty(EntityStreamTracker.PROPERTY);
+        if (tracker != null && span != null && responseContext.hasEntity()) {
+            // finish the span once the response entity is closed; until then
+            // it is kept in flight, where it is reaped if it is never closed
+            this.tracer.deferClientSpan(requestContext);
+            responseContext.setEntityStream(tracker.countResponse(responseContext.getEntityStream(),
+                new Runnable() {
+                    @Override
+                    public void run() {
+                        tracer.finishDeferredClientSpan(requestContext, tracker);
+                    }
+                }));
+            return;
+        }
+        if (tracker != null) {
+            tracker.tag();
+        }
         this.tracer.finishClientSpan(requestContext);
     }
 }
\ No newline at end of file
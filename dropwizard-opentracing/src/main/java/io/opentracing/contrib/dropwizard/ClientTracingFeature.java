@@ -28,22 +28,34 @@ public class ClientTracingFeature {
 
     private final DropWizardTracer tracer;
     private final Request request;
-    private final Set<ClientAttribute> tracedAttributes;
-    private final Set<String> tracedProperties;
+    private final boolean activeRequest;
+    private final ClientAttributeExtractor[] attributeExtractors;
+    private final String[] tracedProperties;
     private final String operationName;
+    private final TracingSampler sampler;
+    private final DynamicTracingPolicy policy;
 
     private ClientTracingFeature(
         DropWizardTracer tracer, 
         Request request, 
+        boolean activeRequest,
         String operationName,
         Set<ClientAttribute> tracedAttributes, 
-        Set<String> tracedProperties
+        Set<String> tracedHeaders,
+        Set<String> redactedHeaders,
+        Set<String> tracedProperties,
+        TracingSampler sampler,
+        DynamicTracingPolicy policy
     ) {
         this.tracer = tracer;
         this.request = request;
+        this.activeRequest = activeRequest;
         this.operationName = operationName;
-        this.tracedAttributes = tracedAttributes;
-        this.tracedProperties = tracedProperties;
+        this.attributeExtractors = ClientAttributeExtractor.compile(tracedAttributes,
+            new HeaderTags(tracedHeaders, redactedHeaders));
+        this.tracedProperties = tracedProperties.toArray(new String[tracedProperties.size()]);
+        this.sampler = sampler;
+        this.policy = policy;
     }
 
     /**
@@ -51,7 +63,7 @@ public class ClientTracingFeature {
      */
     public void registerTo(Client client) {
         client.register(new ClientRequestTracingFilter(this.tracer, this.request, 
-            this.operationName, this.tracedAttributes, this.tracedProperties));
+            this.activeRequest, this.operationName, this.attributeExtractors, this.tracedProperties, this.sampler, this.policy));
         client.register(new ClientResponseTracingFilter(this.tracer));
     }
 
@@ -60,7 +72,7 @@ public class ClientTracingFeature {
      */
     public void registerTo(WebTarget target) {
         target.register(new ClientRequestTracingFilter(this.tracer, this.request, 
-            this.operationName, this.tracedAttributes, this.tracedProperties));
+            this.activeRequest, this.operationName, this.attributeExtractors, this.tracedProperties, this.sampler, this.policy));
         target.register(new ClientResponseTracingFilter(this.tracer));
     }
 
@@ -71,9 +83,14 @@ public class ClientTracingFeature {
 
         private final DropWizardTracer tracer;
         private Request request;
+        private boolean activeRequest;
         private Set<ClientAttribute> tracedAttributes;
+        private Set<String> tracedHeaders;
+        private Set<String> redactedHeaders;
         private Set<String> tracedProperties; 
         private String operationName;
+        private TracingSampler sampler;
+        private DynamicTracingPolicy policy;
 
         /**
          * @param tracer the tracer to trace the client requests with
@@ -81,7 +98,10 @@ public class ClientTracingFeature {
         public Builder(DropWizardTracer tracer) {
             this.tracer = tracer;
             this.request = null;
+            this.activeRequest = false;
             this.tracedAttributes = new HashSet<ClientAttribute>();
+            this.tracedHeaders = new HashSet<String>();
+            this.redactedHeaders = new HashSet<String>();
             this.tracedProperties = new HashSet<String>();
             this.operationName = "";
         }
@@ -97,6 +117,21 @@ public class ClientTracingFeature {
             return this;
         }
 
+        /**
+         * Continues, for each client request, the trace of the server request
+         * being processed on the thread making it (see
+         * ServerTracingFeature.getThreadLocalRequestSpan()), rather than the
+         * trace of a fixed request. The feature can then be registered once
+         * to a Client shared by all resources, instead of to a new WebTarget
+         * for each server request. Client requests made outside of a server
+         * request start new traces. Ignored if a request is set with withRequest.
+         * @return Builder configured to continue the trace of the active request
+         */
+        public Builder withActiveRequest() {
+            this.activeRequest = true;
+            return this;
+        }
+
         /**
          * @param tracedAttributes a set of request attributes that you want 
          *  to tag to spans created for client requests
@@ -107,6 +142,31 @@ public class ClientTracingFeature {
             return this;
         }
 
+        /**
+         * Tags each of these headers, when present, as its own tag named
+         * "http.header." followed by the header name in lower case (e.g.
+         * "http.header.x-request-id"). Only these headers are read, so this
+         * is much cheaper than tracing HEADERS.
+         * @param headerNames the headers to tag
+         * @return Builder configured with added traced headers
+         */
+        public Builder withTracedHeaders(Set<String> headerNames) {
+            this.tracedHeaders = headerNames;
+            return this;
+        }
+
+        /**
+         * The values of these headers are replaced by "&lt;redacted&gt;" in traced
+         * headers and in the HEADERS attribute. Redacting "Cookie" also
+         * reduces the COOKIES attribute to the names of the cookies.
+         * @param headerNames the headers whose values are never tagged, e.g. "Authorization"
+         * @return Builder configured with added redacted headers
+         */
+        public Builder withRedactedHeaders(Set<String> headerNames) {
+            this.redactedHeaders = headerNames;
+            return this;
+        }
+
         /**
          * @param properties properties of the client request to tag 
          *  to spans created for client requests
@@ -126,12 +186,39 @@ public class ClientTracingFeature {
             return this;
         }
 
+        /**
+         * By default, all client requests get a span. With a sampler, client
+         * requests that do not continue the trace of a server request are
+         * only traced if sampled; those that do follow the decision made
+         * for the server request.
+         * @param sampler decides which client requests to trace
+         * @return Builder configured with added sampler
+         */
+        public Builder withSampler(TracingSampler sampler) {
+            this.sampler = sampler;
+            return this;
+        }
+
+        /**
+         * By default, the traced attributes and the sampler are fixed when the
+         * feature is built. With a DynamicTracingPolicy, they are read from its
+         * current TracingPolicy on each request instead, and those set on this
+         * Builder are ignored, as for ServerTracingFeature.Builder.withPolicy().
+         * @param policy to read the traced attributes and sampler from
+         * @return Builder configured with added policy
+         */
+        public Builder withPolicy(DynamicTracingPolicy policy) {
+            this.policy = policy;
+            return this;
+        }
+
         /**
          * @return ClientTracingFeature with the configuration of this Builder 
          */
         public ClientTracingFeature build() {
-            return new ClientTracingFeature(this.tracer, this.request,
-                this.operationName, this.tracedAttributes, this.tracedProperties);
+            return new ClientTracingFeature(this.tracer, this.request, this.activeRequest,
+                this.operationName, this.tracedAttributes, this.tracedHeaders, this.redactedHeaders,
+                this.tracedProperties, this.sampler, this.policy);
         }
     }
 }
\ No newline at end of file
@@ -2,31 +2,91 @@ package io.opentracing.contrib.dropwizard;
 
 import io.opentracing.Tracer;
 import io.opentracing.Span;
+import io.opentracing.SpanContext;
 
-import java.util.concurrent.ConcurrentHashMap;
+import com.codahale.metrics.MetricRegistry;
+import org.glassfish.jersey.server.ContainerRequest;
+
+import java.util.Collections;
 import java.util.Map;
-import javax.ws.rs.core.Context;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+import javax.ws.rs.container.ContainerRequestContext;
 import javax.ws.rs.core.Request;
 import javax.ws.rs.client.ClientRequestContext;
 
 /**
- * 
+ * Keeps track of the spans of in-flight server and client requests.
+ *
+ * By default spans are kept in process-wide maps keyed by request. When built
+ * with DropWizardTracer.Builder.withRequestScopedSpans(), each span is instead
+ * stored as a property of the request it belongs to, so requests never touch
+ * shared state.
  *
+ * The maps can be bounded, so that spans whose response filter never runs
+ * (e.g. on connection resets or client ProcessingExceptions) don't pile up:
+ * see DropWizardTracer.Builder.withOrphanedSpanTimeout() and
+ * DropWizardTracer.Builder.withMaxInFlightSpans().
+ *
+ * Built with DropWizardTracer.Builder.withMetricRegistry(), it also keeps
+ * request rate, error rate and duration metrics of each server and client
+ * operation, sampled or not, and with
+ * DropWizardTracer.Builder.withOverheadMetrics() metrics of the overhead of
+ * tracing itself.
  */
 public class DropWizardTracer {
 
+    static final String SPAN_PROPERTY = DropWizardTracer.class.getName() + ".span";
+    static final String UNSAMPLED_CONTEXT_PROPERTY = DropWizardTracer.class.getName() + ".unsampledContext";
+
+    /**
+     * The unsampled span context of requests that were not sampled and were
+     * called without a span context, so that the client requests and tasks
+     * they start don't sample a trace of their own. It is never injected.
+     */
+    static final SpanContext UNSAMPLED_ROOT = new SpanContext() {
+        @Override
+        public Iterable<Map.Entry<String, String>> baggageItems() {
+            return Collections.<String, String>emptyMap().entrySet();
+        }
+    };
+
     private Tracer tracer;
-    private Map<Request, Span> serverSpans;
-    private Map<ClientRequestContext, Span> clientSpans;
+    private InFlightSpans<Request> serverSpans;
+    private InFlightSpans<ClientRequestContext> clientSpans;
+    private final boolean requestScopedSpans;
+    private final AtomicLong rejectedSpans;
+    private final MetricRegistry metricRegistry;
+    private final ConcurrentMap<String, OperationMetrics> serverMetrics;
+    private final ConcurrentMap<String, OperationMetrics> clientMetrics;
+    private final TracingOverhead overhead;
+    private final TraceParentCodec traceParentCodec;
 
     /**
      * Create a tracer for DropWizard applications.
      * @param tracer an io.opentracing.Tracer to trace requests with
      */
     public DropWizardTracer(Tracer tracer) {
-        this.serverSpans = new ConcurrentHashMap<Request, Span>();
-        this.clientSpans = new ConcurrentHashMap<ClientRequestContext, Span>();
+        this(tracer, false, 0, 0, null, 0, null);
+    }
+
+    private DropWizardTracer(Tracer tracer, boolean requestScopedSpans, int maxInFlightSpans,
+            long orphanedSpanTimeoutNanos, MetricRegistry metricRegistry, int overheadSamplingPeriod,
+            TraceParentCodec traceParentCodec) {
+        this.serverSpans = new InFlightSpans<Request>(maxInFlightSpans, orphanedSpanTimeoutNanos);
+        this.clientSpans = new InFlightSpans<ClientRequestContext>(maxInFlightSpans, orphanedSpanTimeoutNanos);
         this.tracer = tracer;
+        this.requestScopedSpans = requestScopedSpans;
+        this.rejectedSpans = new AtomicLong();
+        this.metricRegistry = metricRegistry;
+        this.serverMetrics = new ConcurrentHashMap<String, OperationMetrics>();
+        this.clientMetrics = new ConcurrentHashMap<String, OperationMetrics>();
+        this.overhead = overheadSamplingPeriod > 0
+            ? new TracingOverhead(metricRegistry, this, overheadSamplingPeriod)
+            : null;
+        this.traceParentCodec = traceParentCodec;
     }
 
     /**
@@ -37,44 +97,390 @@ public class DropWizardTracer {
     }
 
     /**
-     * @param request for which we want to find the associated span 
-     * @return the span for this server request, if it exists and isn't 
+     * @param request for which we want to find the associated span
+     * @return the span for this server request, if it exists and isn't
      *  finished. Otherwise returns null.
+     *
+     * NOTE: with request scoped spans, a Request injected with @Context is
+     * a proxy rather than the request itself; the span is then looked up
+     * through ServerTracingFeature.getThreadLocalRequestSpan().
      */
     public Span getSpan(Request request) {
-        return this.serverSpans.get(request);
+        if (!this.requestScopedSpans) {
+            return this.serverSpans.get(request);
+        }
+        if (request instanceof ContainerRequestContext) {
+            return getSpan((ContainerRequestContext) request);
+        }
+        return ServerTracingFeature.getThreadLocalRequestSpan();
+    }
+
+    /**
+     * @param requestContext context of the server request for which we
+     *  want to find the associated span
+     * @return the span for this server request, if it exists and isn't
+     *  finished. Otherwise returns null.
+     */
+    public Span getSpan(ContainerRequestContext requestContext) {
+        if (this.requestScopedSpans) {
+            return (Span) requestContext.getProperty(SPAN_PROPERTY);
+        }
+        return this.serverSpans.get(requestContext.getRequest());
+    }
+
+    /**
+     * A Jersey ContainerRequest is both a Request and a
+     * ContainerRequestContext, so this overload spares callers a cast.
+     * @param request the server request for which we want to find the
+     *  associated span
+     * @return the span for this server request, if it exists and isn't
+     *  finished. Otherwise returns null.
+     */
+    public Span getSpan(ContainerRequest request) {
+        return getSpan((ContainerRequestContext) request);
     }
 
     /**
      * @param requestCtx context for which we want to find the associated span
-     * @return the span for this client request, if it exists and is 
+     * @return the span for this client request, if it exists and is
      *  not finished. Otherwise returns null.
      */
     public Span getSpan(ClientRequestContext requestCtx) {
+        if (this.requestScopedSpans) {
+            return (Span) requestCtx.getProperty(SPAN_PROPERTY);
+        }
         return this.clientSpans.get(requestCtx);
     }
 
+    /**
+     * @param request a server request that was not sampled
+     * @return the span context this server request was called with, if it
+     *  was not sampled (an empty span context, that must not be injected,
+     *  if it was called without one). Otherwise returns null.
+     */
+    protected SpanContext getUnsampledSpanContext(Request request) {
+        if (request instanceof ContainerRequestContext) {
+            return (SpanContext) ((ContainerRequestContext) request).getProperty(UNSAMPLED_CONTEXT_PROPERTY);
+        }
+        return ServerTracingFeature.threadLocalUnsampledContext.get();
+    }
+
+    /**
+     * @return the number of server and client spans currently kept in the
+     *  in-flight maps (always 0 with request scoped spans)
+     */
+    public int getInFlightSpanCount() {
+        return this.serverSpans.size() + this.clientSpans.size();
+    }
+
+    /**
+     * @return the number of spans that were finished and tagged as abandoned
+     *  because they stayed in flight longer than the orphaned span timeout
+     */
+    public long getReapedSpanCount() {
+        return this.serverSpans.reaped() + this.clientSpans.reaped();
+    }
+
+    /**
+     * @return the number of spans that were finished and tagged as abandoned
+     *  as soon as they started, because the maximum number of in-flight spans
+     *  was reached
+     */
+    public long getRejectedSpanCount() {
+        return this.rejectedSpans.get();
+    }
+
     protected void addServerSpan(Request request, Span span) {
-        this.serverSpans.put(request, span);
+        if (!this.serverSpans.put(request, span)) {
+            reject(span);
+        }
+    }
+
+    protected void addServerSpan(ContainerRequestContext requestContext, Span span) {
+        if (this.requestScopedSpans) {
+            requestContext.setProperty(SPAN_PROPERTY, span);
+        } else {
+            addServerSpan(requestContext.getRequest(), span);
+        }
+    }
+
+    protected void addServerSpan(ContainerRequest request, Span span) {
+        addServerSpan((ContainerRequestContext) request, span);
+    }
+
+    protected void addUnsampledSpanContext(ContainerRequestContext requestContext, SpanContext spanContext) {
+        requestContext.setProperty(UNSAMPLED_CONTEXT_PROPERTY, spanContext);
     }
 
     protected void addClientSpan(ClientRequestContext requestCtx, Span span) {
-        this.clientSpans.put(requestCtx, span);
+        if (this.requestScopedSpans) {
+            requestCtx.setProperty(SPAN_PROPERTY, span);
+        } else if (!this.clientSpans.put(requestCtx, span)) {
+            reject(span);
+        }
     }
 
     protected void finishServerSpan(Request request) {
-        Span span = this.serverSpans.get(request);
+        Span span = this.serverSpans.remove(request);
         if (span != null) {
-            this.serverSpans.remove(request);
-            span.finish();
+            finish(span);
         }
     }
 
+    protected void finishServerSpan(ContainerRequestContext requestContext) {
+        if (!this.requestScopedSpans) {
+            finishServerSpan(requestContext.getRequest());
+            return;
+        }
+        Span span = (Span) requestContext.getProperty(SPAN_PROPERTY);
+        if (span != null) {
+            requestContext.removeProperty(SPAN_PROPERTY);
+            finish(span);
+        }
+    }
+
+    protected void finishServerSpan(ContainerRequest request) {
+        finishServerSpan((ContainerRequestContext) request);
+    }
+
     protected void finishClientSpan(ClientRequestContext requestCtx) {
-        Span span = this.clientSpans.get(requestCtx);
+        Span span;
+        if (this.requestScopedSpans) {
+            span = (Span) requestCtx.getProperty(SPAN_PROPERTY);
+            if (span != null) {
+                requestCtx.removeProperty(SPAN_PROPERTY);
+            }
+        } else {
+            span = this.clientSpans.remove(requestCtx);
+        }
+        if (span != null) {
+            finish(span);
+        }
+    }
+
+    /**
+     * Keeps the span of a client request in flight until its response entity
+     * is closed. With request scoped spans and an orphaned span timeout, the
+     * span is moved to the in-flight client spans, so that it is reaped if the
+     * entity is never closed.
+     */
+    void deferClientSpan(ClientRequestContext requestCtx) {
+        if (!this.requestScopedSpans || !this.clientSpans.reaps()) {
+            return;
+        }
+        Span span = (Span) requestCtx.getProperty(SPAN_PROPERTY);
+        if (span != null && this.clientSpans.put(requestCtx, span)) {
+            requestCtx.removeProperty(SPAN_PROPERTY);
+        }
+    }
+
+    /**
+     * Finishes the span of a client request whose response entity was closed,
+     * tagged with the counts of its entities, unless it was reaped meanwhile.
+     */
+    void finishDeferredClientSpan(ClientRequestContext requestCtx, EntityStreamTracker tracker) {
+        Span span = this.requestScopedSpans ? (Span) requestCtx.getProperty(SPAN_PROPERTY) : null;
+        if (span != null) {
+            requestCtx.removeProperty(SPAN_PROPERTY);
+        } else {
+            span = this.clientSpans.remove(requestCtx);
+        }
         if (span != null) {
-            this.clientSpans.remove(requestCtx);
+            tracker.tag();
+            finish(span);
+        }
+    }
+
+    private void finish(Span span) {
+        if (this.overhead != null && this.overhead.timed()) {
+            long startNanos = System.nanoTime();
+            span.finish();
+            this.overhead.finished(startNanos);
+        } else {
             span.finish();
         }
     }
+
+    /**
+     * @return the metrics of the overhead of tracing, or null if this tracer
+     *  doesn't keep them
+     */
+    TracingOverhead getOverhead() {
+        return this.overhead;
+    }
+
+    /**
+     * @return the codec to propagate span contexts with, or null to use the
+     *  headers of the tracer
+     */
+    TraceParentCodec getTraceParentCodec() {
+        return this.traceParentCodec;
+    }
+
+    /**
+     * @return the registry to register metrics to, or null if this tracer
+     *  keeps no metrics
+     */
+    MetricRegistry getMetricRegistry() {
+        return this.metricRegistry;
+    }
+
+    /**
+     * @return the metrics of server requests with this operation name, or
+     *  null if this tracer keeps no metrics
+     */
+    OperationMetrics getServerMetrics(String operationName) {
+        return getMetrics(this.serverMetrics, "server", operationName);
+    }
+
+    /**
+     * @return the metrics of client requests with this operation name, or
+     *  null if this tracer keeps no metrics
+     */
+    OperationMetrics getClientMetrics(String operationName) {
+        return getMetrics(this.clientMetrics, "client", operationName);
+    }
+
+    private OperationMetrics getMetrics(ConcurrentMap<String, OperationMetrics> metrics, String kind,
+            String operationName) {
+        if (this.metricRegistry == null) {
+            return null;
+        }
+        OperationMetrics operationMetrics = metrics.get(operationName);
+        if (operationMetrics == null) {
+            operationMetrics = new OperationMetrics(this.metricRegistry,
+                MetricRegistry.name(DropWizardTracer.class, kind, OperationMetrics.metricName(operationName)));
+            OperationMetrics existing = metrics.putIfAbsent(operationName, operationMetrics);
+            if (existing != null) {
+                operationMetrics = existing;
+            }
+        }
+        return operationMetrics;
+    }
+
+    private void reject(Span span) {
+        this.rejectedSpans.incrementAndGet();
+        span.setTag(InFlightSpans.ABANDONED_TAG, true);
+        span.finish();
+    }
+
+    /**
+     * Use this class to configure and build a DropWizardTracer
+     */
+    public static class Builder {
+
+        private final Tracer tracer;
+        private boolean requestScopedSpans;
+        private int maxInFlightSpans;
+        private long orphanedSpanTimeoutNanos;
+        private MetricRegistry metricRegistry;
+        private int overheadSamplingPeriod;
+        private TraceParentCodec traceParentCodec;
+
+        /**
+         * @param tracer an io.opentracing.Tracer to trace requests with
+         */
+        public Builder(Tracer tracer) {
+            this.tracer = tracer;
+            this.requestScopedSpans = false;
+            this.maxInFlightSpans = 0;
+            this.orphanedSpanTimeoutNanos = 0;
+        }
+
+        /**
+         * By default, the spans of in-flight requests are kept in maps shared
+         * by all requests. With request scoped spans, each span is stored as
+         * a property of its ContainerRequestContext or ClientRequestContext
+         * instead, which avoids any contention between concurrent requests.
+         * @return Builder configured to use request scoped spans
+         */
+        public Builder withRequestScopedSpans() {
+            this.requestScopedSpans = true;
+            return this;
+        }
+
+        /**
+         * Spans whose response filter never runs are otherwise kept forever.
+         * With a timeout, spans in flight for longer than that are tagged as
+         * abandoned and finished, by a daemon thread checking every half of
+         * the timeout. Choose a timeout well above your slowest legitimate
+         * request.
+         * @param timeout age after which an in-flight span is abandoned
+         * @param unit unit of timeout
+         * @return Builder configured with an orphaned span timeout
+         */
+        public Builder withOrphanedSpanTimeout(long timeout, TimeUnit unit) {
+            this.orphanedSpanTimeoutNanos = unit.toNanos(timeout);
+            return this;
+        }
+
+        /**
+         * Once this many server (or client) spans are in flight, new spans are
+         * tagged as abandoned and finished right away instead of being kept.
+         * @param maxInFlightSpans maximum number of spans kept per map
+         * @return Builder configured with a maximum number of in-flight spans
+         */
+        public Builder withMaxInFlightSpans(int maxInFlightSpans) {
+            this.maxInFlightSpans = maxInFlightSpans;
+            return this;
+        }
+
+        /**
+         * Keeps, for each server and client operation, a Timer of its requests
+         * ("io.opentracing.contrib.dropwizard.DropWizardTracer.[server|client].[operation name].requests")
+         * and a Meter of its failed requests (same name, ending in ".errors"),
+         * whether or not the requests are sampled. A server request failed if
+         * its response status is 5xx or it could not be answered; a client
+         * request failed if its response status is 5xx. Characters of
+         * operation names that are not letters, digits, '_' or '-' are
+         * replaced by '_' in metric names.
+         * @param metricRegistry to register the metrics to, e.g. environment.metrics()
+         * @return Builder configured with added metricRegistry
+         */
+        public Builder withMetricRegistry(MetricRegistry metricRegistry) {
+            this.metricRegistry = metricRegistry;
+            return this;
+        }
+
+        /**
+         * Also keeps metrics of what tracing costs, under
+         * "io.opentracing.contrib.dropwizard.DropWizardTracer.overhead": the
+         * nanoseconds spent extracting, tagging, injecting and finishing spans,
+         * the numbers of sampled and unsampled requests, and the numbers of
+         * in-flight, reaped and rejected spans. Requires a metric registry.
+         * @param samplingPeriod time one in samplingPeriod extractions,
+         *  taggings, injections and finishes (e.g. 100), or 1 to time them all
+         * @return Builder configured to keep overhead metrics
+         */
+        public Builder withOverheadMetrics(int samplingPeriod) {
+            this.overheadSamplingPeriod = samplingPeriod;
+            return this;
+        }
+
+        /**
+         * Propagates span contexts to and from other services using this
+         * codec in a single traceparent header, instead of the headers of
+         * the tracer. Requests with the headers of the tracer are still
+         * extracted, so services can switch to the codec one at a time,
+         * callees first.
+         * @param traceParentCodec to propagate span contexts with
+         * @return Builder configured with added traceParentCodec
+         */
+        public Builder withTraceParentCodec(TraceParentCodec traceParentCodec) {
+            this.traceParentCodec = traceParentCodec;
+            return this;
+        }
+
+        /**
+         * @return DropWizardTracer with the configuration of this Builder
+         */
+        public DropWizardTracer build() {
+            if (this.overheadSamplingPeriod > 0 && this.metricRegistry == null) {
+                throw new IllegalStateException("overhead metrics require a metric registry");
+            }
+            return new DropWizardTracer(this.tracer, this.requestScopedSpans,
+                this.maxInFlightSpans, this.orphanedSpanTimeoutNanos, this.metricRegistry,
+                this.overheadSamplingPeriod, this.traceParentCodec);
+        }
+    }
 }
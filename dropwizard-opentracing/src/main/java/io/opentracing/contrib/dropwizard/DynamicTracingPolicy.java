@@ -0,0 +1,52 @@
+package io.opentracing.contrib.dropwizard;
+
+/**
+ * The current TracingPolicy of the filters built with it (see
+ * ServerTracingFeature.Builder.withPolicy() and
+ * ClientTracingFeature.Builder.withPolicy()).
+ *
+ * Filters read the policy through a single volatile reference, once per
+ * request, so setting a new policy takes effect on the next requests
+ * without any locking. See TracingPolicyTask to set it from the admin port.
+ */
+public class DynamicTracingPolicy {
+
+    private final TracingPolicy initialPolicy;
+    private volatile TracingPolicy policy;
+
+    /**
+     * @param initialPolicy the policy to start with
+     */
+    public DynamicTracingPolicy(TracingPolicy initialPolicy) {
+        this.initialPolicy = initialPolicy;
+        this.policy = initialPolicy;
+    }
+
+    /**
+     * @return the current policy
+     */
+    public TracingPolicy get() {
+        return this.policy;
+    }
+
+    /**
+     * @return the policy this DynamicTracingPolicy was created with
+     */
+    public TracingPolicy getInitialPolicy() {
+        return this.initialPolicy;
+    }
+
+    /**
+     * @param policy to apply to the next requests
+     */
+    public void set(TracingPolicy policy) {
+        this.policy = policy;
+    }
+
+    /**
+     * Sets the policy back to the one this DynamicTracingPolicy was created with.
+     */
+    public void reset() {
+        this.policy = this.initialPolicy;
+    }
+}
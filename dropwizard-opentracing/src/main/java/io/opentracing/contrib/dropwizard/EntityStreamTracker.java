@@ -0,0 +1,219 @@
+package io.opentracing.contrib.dropwizard;
+
+import io.opentracing.Span;
+
+import java.io.FilterInputStream;
+import java.io.FilterOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Counts the bytes of the request and response entities of a traced request
+ * as they go through, and when their first and last bytes went through,
+ * for ServerAttribute.ENTITY_STREAM and ClientAttribute.ENTITY_STREAM.
+ *
+ * The entity streams are wrapped in pass-through streams which neither
+ * buffer nor copy anything. Once both entities are done with, i.e. once the
+ * response entity is closed, the span is tagged, right before it is
+ * finished, with, for each of "Request" and "Response" that had an entity:
+ * "[Request|Response] Bytes", "[Request|Response] First Byte Micros" and
+ * "[Request|Response] Last Byte Micros", times being relative to the start
+ * of the request.
+ *
+ * A tracker is only ever used by one request, and each of its entity streams
+ * is only ever read or written by one thread at a time.
+ */
+final class EntityStreamTracker {
+
+    static final String PROPERTY = EntityStreamTracker.class.getName();
+
+    private final Span span;
+    private final long startNanos;
+    private final Counter request;
+    private final Counter response;
+
+    EntityStreamTracker(Span span) {
+        this.span = span;
+        this.startNanos = System.nanoTime();
+        this.request = new Counter("Request");
+        this.response = new Counter("Response");
+    }
+
+    /**
+     * @return an InputStream counting the request entity read from in
+     */
+    InputStream countRequest(InputStream in) {
+        return new CountingInputStream(in, this.request, null);
+    }
+
+    /**
+     * @return an OutputStream counting the request entity written to out
+     */
+    OutputStream countRequest(OutputStream out) {
+        return new CountingOutputStream(out, this.request, null);
+    }
+
+    /**
+     * Unlike on servers, the span is not tagged when the response entity is
+     * closed, as it may have been reaped by then.
+     * @param onClose run once the response entity is closed
+     * @return an InputStream counting the response entity read from in
+     */
+    InputStream countResponse(InputStream in, Runnable onClose) {
+        return new CountingInputStream(in, this.response, onClose);
+    }
+
+    /**
+     * @param onClose run once the response entity is closed, after the span
+     *  was tagged, or null
+     * @return an OutputStream counting the response entity written to out
+     */
+    OutputStream countResponse(OutputStream out, final Runnable onClose) {
+        return new CountingOutputStream(out, this.response, new Runnable() {
+            @Override
+            public void run() {
+                tag();
+                closed(onClose);
+            }
+        });
+    }
+
+    /**
+     * Tags the span with what was counted so far.
+     */
+    void tag() {
+        this.request.tag(this.span, this.startNanos);
+        this.response.tag(this.span, this.startNanos);
+    }
+
+    private static void closed(Runnable onClose) {
+        if (onClose != null) {
+            onClose.run();
+        }
+    }
+
+    private static final class Counter {
+
+        private final String prefix;
+        private long bytes;
+        private long firstNanos;
+        private long lastNanos;
+        private boolean counting;
+
+        Counter(String prefix) {
+            this.prefix = prefix;
+        }
+
+        void add(long count) {
+            if (count <= 0) {
+                return;
+            }
+            long now = System.nanoTime();
+            if (!this.counting) {
+                this.counting = true;
+                this.firstNanos = now;
+            }
+            this.lastNanos = now;
+            this.bytes += count;
+        }
+
+        void tag(Span span, long startNanos) {
+            if (!this.counting) {
+                return;
+            }
+            span.setTag(this.prefix + " Bytes", this.bytes);
+            span.setTag(this.prefix + " First Byte Micros",
+                TimeUnit.NANOSECONDS.toMicros(this.firstNanos - startNanos));
+            span.setTag(this.prefix + " Last Byte Micros",
+                TimeUnit.NANOSECONDS.toMicros(this.lastNanos - startNanos));
+        }
+    }
+
+    private final class CountingInputStream extends FilterInputStream {
+
+        private final Counter counter;
+        private Runnable onClose;
+
+        CountingInputStream(InputStream in, Counter counter, Runnable onClose) {
+            super(in);
+            this.counter = counter;
+            this.onClose = onClose;
+        }
+
+        @Override
+        public int read() throws IOException {
+            int b = this.in.read();
+            if (b >= 0) {
+                this.counter.add(1);
+            }
+            return b;
+        }
+
+        @Override
+        public int read(byte[] b, int off, int len) throws IOException {
+            int count = this.in.read(b, off, len);
+            this.counter.add(count);
+            return count;
+        }
+
+        @Override
+        public long skip(long n) throws IOException {
+            long count = this.in.skip(n);
+            this.counter.add(count);
+            return count;
+        }
+
+        @Override
+        public boolean markSupported() {
+            return false;
+        }
+
+        @Override
+        public void close() throws IOException {
+            try {
+                this.in.close();
+            } finally {
+                Runnable onClose = this.onClose;
+                this.onClose = null;
+                closed(onClose);
+            }
+        }
+    }
+
+    private final class CountingOutputStream extends FilterOutputStream {
+
+        private final Counter counter;
+        private Runnable onClose;
+
+        CountingOutputStream(OutputStream out, Counter counter, Runnable onClose) {
+            super(out);
+            this.counter = counter;
+            this.onClose = onClose;
+        }
+
+        @Override
+        public void write(int b) throws IOException {
+            this.out.write(b);
+            this.counter.add(1);
+        }
+
+        @Override
+        public void write(byte[] b, int off, int len) throws IOException {
+            this.out.write(b, off, len);
+            this.counter.add(len);
+        }
+
+        @Override
+        public void close() throws IOException {
+            try {
+                this.out.close();
+            } finally {
+                Runnable onClose = this.onClose;
+                this.onClose = null;
+                closed(onClose);
+            }
+        }
+    }
+}
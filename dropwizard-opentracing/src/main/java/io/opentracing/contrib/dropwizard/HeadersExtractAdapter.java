@@ -0,0 +1,147 @@
+package io.opentracing.contrib.dropwizard;
+
+import io.opentracing.propagation.TextMap;
+
+import java.util.Iterator;
+import java.util.List;
+import java.util.Map;
+import java.util.NoSuchElementException;
+import javax.ws.rs.core.MultivaluedMap;
+
+/**
+ * A TextMap for Tracer.extract() that reads the request headers in place,
+ * instead of copying them into a new map first.
+ *
+ * When built with the names of the headers used by the tracer, only those
+ * headers are looked up; otherwise every header is iterated, with its first
+ * value. Either way, the iterator reuses one Map.Entry, which is only valid
+ * until the next call to next().
+ */
+public class HeadersExtractAdapter implements TextMap {
+
+    private final MultivaluedMap<String, String> headers;
+    private final String[] headerNames;
+
+    /**
+     * @param headers the request headers
+     */
+    public HeadersExtractAdapter(MultivaluedMap<String, String> headers) {
+        this(headers, null);
+    }
+
+    /**
+     * @param headers the request headers
+     * @param headerNames the only headers to extract from, or null to
+     *  extract from all headers
+     */
+    public HeadersExtractAdapter(MultivaluedMap<String, String> headers, String[] headerNames) {
+        this.headers = headers;
+        this.headerNames = headerNames;
+    }
+
+    @Override
+    public Iterator<Map.Entry<String, String>> iterator() {
+        if (this.headerNames == null) {
+            return new AllHeaders(this.headers.entrySet().iterator());
+        }
+        return new NamedHeaders(this.headers, this.headerNames);
+    }
+
+    @Override
+    public void put(String key, String value) {
+        throw new UnsupportedOperationException("put should never be used with Tracer.extract()");
+    }
+
+    private static final class Header implements Map.Entry<String, String> {
+
+        String key;
+        String value;
+
+        @Override
+        public String getKey() {
+            return this.key;
+        }
+
+        @Override
+        public String getValue() {
+            return this.value;
+        }
+
+        @Override
+        public String setValue(String value) {
+            throw new UnsupportedOperationException();
+        }
+    }
+
+    private static final class AllHeaders implements Iterator<Map.Entry<String, String>> {
+
+        private final Iterator<Map.Entry<String, List<String>>> entries;
+        private final Header header = new Header();
+
+        AllHeaders(Iterator<Map.Entry<String, List<String>>> entries) {
+            this.entries = entries;
+        }
+
+        @Override
+        public boolean hasNext() {
+            return this.entries.hasNext();
+        }
+
+        @Override
+        public Map.Entry<String, String> next() {
+            Map.Entry<String, List<String>> entry = this.entries.next();
+            List<String> values = entry.getValue();
+            this.header.key = entry.getKey();
+            this.header.value = values == null || values.isEmpty() ? null : values.get(0);
+            return this.header;
+        }
+
+        @Override
+        public void remove() {
+            throw new UnsupportedOperationException();
+        }
+    }
+
+    private static final class NamedHeaders implements Iterator<Map.Entry<String, String>> {
+
+        private final MultivaluedMap<String, String> headers;
+        private final String[] headerNames;
+        private final Header header = new Header();
+        private int index;
+        private String nextValue;
+
+        NamedHeaders(MultivaluedMap<String, String> headers, String[] headerNames) {
+            this.headers = headers;
+            this.headerNames = headerNames;
+            advance();
+        }
+
+        private void advance() {
+            this.nextValue = null;
+            while (this.index < this.headerNames.length && this.nextValue == null) {
+                this.nextValue = this.headers.getFirst(this.headerNames[this.index++]);
+            }
+        }
+
+        @Override
+        public boolean hasNext() {
+            return this.nextValue != null;
+        }
+
+        @Override
+        public Map.Entry<String, String> next() {
+            if (this.nextValue == null) {
+                throw new NoSuchElementException();
+            }
+            this.header.key = this.headerNames[this.index - 1];
+            this.header.value = this.nextValue;
+            advance();
+            return this.header;
+        }
+
+        @Override
+        public void remove() {
+            throw new UnsupportedOperationException();
+        }
+    }
+}
@@ -0,0 +1,174 @@
+package io.opentracing.contrib.dropwizard;
+
+import io.opentracing.Span;
+
+import java.lang.ref.WeakReference;
+import java.util.Iterator;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.ScheduledFuture;
+import java.util.concurrent.ThreadFactory;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * The spans of in-flight requests, keyed by request.
+ *
+ * The registry can be bounded in size and in age: spans older than maxAgeNanos
+ * are reaped (tagged as abandoned and finished) by a daemon thread shared by
+ * all registries, every half of maxAgeNanos, so that request threads never
+ * sweep the registry and orphans are reaped even once traffic stops. Once
+ * maxSpans spans are in flight new spans are refused instead of growing the
+ * heap.
+ */
+final class InFlightSpans<K> {
+
+    static final String ABANDONED_TAG = "abandoned";
+
+    private final ConcurrentHashMap<K, Entry> spans;
+    private final int maxSpans;
+    private final long maxAgeNanos;
+    private final AtomicInteger live;
+    private final AtomicLong reaped;
+
+    /**
+     * @param maxSpans maximum number of spans in flight, 0 for no limit
+     * @param maxAgeNanos age after which a span is reaped, 0 to never reap
+     */
+    InFlightSpans(int maxSpans, long maxAgeNanos) {
+        this.spans = new ConcurrentHashMap<K, Entry>();
+        this.maxSpans = maxSpans;
+        this.maxAgeNanos = maxAgeNanos;
+        this.live = new AtomicInteger();
+        this.reaped = new AtomicLong();
+        if (maxAgeNanos > 0) {
+            Reaper.schedule(this, Math.max(maxAgeNanos / 2, TimeUnit.MILLISECONDS.toNanos(1)));
+        }
+    }
+
+    /**
+     * @return false if the registry is full and the span was not added
+     */
+    boolean put(K key, Span span) {
+        long now = System.nanoTime();
+        if (this.maxSpans > 0 && this.live.get() >= this.maxSpans) {
+            return false;
+        }
+        if (this.spans.put(key, new Entry(span, now)) == null) {
+            this.live.incrementAndGet();
+        }
+        return true;
+    }
+
+    Span get(K key) {
+        Entry entry = this.spans.get(key);
+        return entry == null ? null : entry.span;
+    }
+
+    Span remove(K key) {
+        Entry entry = this.spans.remove(key);
+        if (entry == null) {
+            return null;
+        }
+        this.live.decrementAndGet();
+        return entry.span;
+    }
+
+    /**
+     * @return whether spans are reaped once older than maxAgeNanos
+     */
+    boolean reaps() {
+        return this.maxAgeNanos > 0;
+    }
+
+    /**
+     * @return the number of spans in flight
+     */
+    int size() {
+        return this.live.get();
+    }
+
+    /**
+     * @return the number of spans reaped since this registry was created
+     */
+    long reaped() {
+        return this.reaped.get();
+    }
+
+    /**
+     * Tags as abandoned and finishes any span older than maxAgeNanos.
+     */
+    void reap(long now) {
+        Iterator<Map.Entry<K, Entry>> iterator = this.spans.entrySet().iterator();
+        while (iterator.hasNext()) {
+            Map.Entry<K, Entry> mapEntry = iterator.next();
+            Entry entry = mapEntry.getValue();
+            if (now - entry.startNanos > this.maxAgeNanos
+                    && this.spans.remove(mapEntry.getKey(), entry)) {
+                this.live.decrementAndGet();
+                this.reaped.incrementAndGet();
+                entry.span.setTag(ABANDONED_TAG, true);
+                entry.span.finish();
+            }
+        }
+    }
+
+    /**
+     * Reaps a registry periodically, until it is garbage collected.
+     */
+    private static final class Reaper implements Runnable {
+
+        private static final ScheduledExecutorService EXECUTOR = Executors.newSingleThreadScheduledExecutor(
+            new ThreadFactory() {
+                @Override
+                public Thread newThread(Runnable runnable) {
+                    Thread thread = new Thread(runnable, "in-flight-span-reaper");
+                    thread.setDaemon(true);
+                    return thread;
+                }
+            });
+
+        private final WeakReference<InFlightSpans<?>> spans;
+        private volatile ScheduledFuture<?> future;
+
+        private Reaper(InFlightSpans<?> spans) {
+            this.spans = new WeakReference<InFlightSpans<?>>(spans);
+        }
+
+        static void schedule(InFlightSpans<?> spans, long periodNanos) {
+            Reaper reaper = new Reaper(spans);
+            reaper.future = EXECUTOR.scheduleWithFixedDelay(reaper, periodNanos, periodNanos, TimeUnit.NANOSECONDS);
+        }
+
+        @Override
+        public void run() {
+            InFlightSpans<?> spans = this.spans.get();
+            if (spans == null) {
+                ScheduledFuture<?> future = this.future;
+                if (future != null) {
+                    future.cancel(false);
+                }
+                return;
+            }
+            try {
+                spans.reap(System.nanoTime());
+            } catch (RuntimeException e) {
+                // a failing span must not stop the reaper
+            }
+        }
+    }
+
+    private static final class Entry {
+
+        final Span span;
+        final long startNanos;
+
+        Entry(Span span, long startNanos) {
+            this.span = span;
+            this.startNanos = startNanos;
+        }
+    }
+}
@@ -0,0 +1,102 @@
+package io.opentracing.contrib.dropwizard;
+
+import io.opentracing.Span;
+import org.eclipse.jetty.server.HttpChannel;
+
+import javax.servlet.Filter;
+import javax.servlet.FilterChain;
+import javax.servlet.FilterConfig;
+import javax.servlet.ServletException;
+import javax.servlet.ServletRequest;
+import javax.servlet.ServletResponse;
+import java.io.IOException;
+
+/**
+ * A servlet filter that records when Jetty received each request, so that
+ * its server span starts then rather than when Jersey's request filters run,
+ * and is tagged with the time the request spent before reaching them:
+ *
+ * - "Connection Wait Micros": from accepting the connection to reading the
+ *   request, only for the first request of each connection. This includes
+ *   the wait for a thread of Jetty's thread pool, and the time the client
+ *   took to send the request.
+ * - "Jetty Micros": from reading the request to the first servlet filter,
+ *   i.e. Jetty's handlers (e.g. request logging and gzip)
+ * - "Dispatch Micros": from the first servlet filter to Jersey's request
+ *   filters, i.e. the other servlet filters, and Jersey matching the request
+ *
+ * Jetty stamps requests in milliseconds, so the first two are multiples of
+ * 1000. Register this filter before any other, e.g. by overriding
+ * TracingBundle.tracesJettyEntry(), or with
+ *
+ *      environment.servlets().addFilter("jetty-entry-tracing", new JettyEntryTracingFilter())
+ *          .addMappingForUrlPatterns(EnumSet.of(DispatcherType.REQUEST), false, "/*");
+ */
+public class JettyEntryTracingFilter implements Filter {
+
+    /**
+     * The request attribute, and so Jersey request property, holding the
+     * JettyEntry of a request.
+     */
+    static final String PROPERTY = JettyEntryTracingFilter.class.getName();
+
+    @Override
+    public void init(FilterConfig filterConfig) throws ServletException {
+    }
+
+    @Override
+    public void doFilter(ServletRequest request, ServletResponse response, FilterChain chain)
+            throws IOException, ServletException {
+        HttpChannel<?> channel = HttpChannel.getCurrentHttpChannel();
+        if (channel != null && request.getAttribute(PROPERTY) == null) {
+            request.setAttribute(PROPERTY, new JettyEntry(channel));
+        }
+        chain.doFilter(request, response);
+    }
+
+    @Override
+    public void destroy() {
+    }
+
+    /**
+     * When Jetty received a request, and when it reached this filter.
+     */
+    static final class JettyEntry {
+
+        private static final long UNSET = -1;
+
+        private final long acceptedMillis;
+        private final long receivedMillis;
+        private final long enteredMillis;
+        private final long enteredNanos;
+
+        JettyEntry(HttpChannel<?> channel) {
+            this.receivedMillis = channel.getRequest().getTimeStamp();
+            this.acceptedMillis = channel.getRequests() <= 1
+                ? channel.getEndPoint().getCreatedTimeStamp()
+                : UNSET;
+            this.enteredMillis = System.currentTimeMillis();
+            this.enteredNanos = System.nanoTime();
+        }
+
+        /**
+         * @return when Jetty received the request, in microseconds since the
+         *  epoch, to start its span with
+         */
+        long receivedMicros() {
+            return this.receivedMillis * 1000;
+        }
+
+        /**
+         * Tags the time the request spent before reaching Jersey's request
+         * filters, which are running now.
+         */
+        void tag(Span span) {
+            if (this.acceptedMillis != UNSET) {
+                span.setTag("Connection Wait Micros", (this.receivedMillis - this.acceptedMillis) * 1000);
+            }
+            span.setTag("Jetty Micros", (this.enteredMillis - this.receivedMillis) * 1000);
+            span.setTag("Dispatch Micros", (System.nanoTime() - this.enteredNanos) / 1000);
+        }
+    }
+}
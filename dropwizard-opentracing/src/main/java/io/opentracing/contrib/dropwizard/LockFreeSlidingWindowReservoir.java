@@ -0,0 +1,50 @@
+package io.opentracing.contrib.dropwizard;
+
+import com.codahale.metrics.Reservoir;
+import com.codahale.metrics.Snapshot;
+import com.codahale.metrics.UniformSnapshot;
+
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.AtomicLongArray;
+
+/**
+ * A Reservoir of the last measurements, like SlidingWindowReservoir, but
+ * recording a measurement is a single atomic increment and store instead of
+ * taking a lock, so that request threads never wait on each other.
+ *
+ * Snapshots may mix measurements recorded while they are taken; that is fine
+ * for percentiles of request durations.
+ */
+final class LockFreeSlidingWindowReservoir implements Reservoir {
+
+    private final AtomicLongArray measurements;
+    private final AtomicLong count;
+
+    /**
+     * @param size the number of measurements to keep
+     */
+    LockFreeSlidingWindowReservoir(int size) {
+        this.measurements = new AtomicLongArray(size);
+        this.count = new AtomicLong();
+    }
+
+    @Override
+    public int size() {
+        return (int) Math.min(this.count.get(), this.measurements.length());
+    }
+
+    @Override
+    public void update(long value) {
+        long index = this.count.getAndIncrement();
+        this.measurements.set((int) (index % this.measurements.length()), value);
+    }
+
+    @Override
+    public Snapshot getSnapshot() {
+        long[] values = new long[size()];
+        for (int i = 0; i < values.length; i++) {
+            values[i] = this.measurements.get(i);
+        }
+        return new UniformSnapshot(values);
+    }
+}
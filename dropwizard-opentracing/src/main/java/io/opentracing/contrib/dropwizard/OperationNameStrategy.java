@@ -0,0 +1,19 @@
+package io.opentracing.contrib.dropwizard;
+
+import javax.ws.rs.container.ResourceInfo;
+
+/**
+ * OperationNameStrategy names the spans of requests to a resource method that
+ * has no explicit operation name.
+ *
+ * It is called once per resource method, when the ServerTracingFeature is
+ * configured, so implementations may be as expensive as they need to be.
+ * See StandardOperationNameStrategy for the strategies provided.
+ */
+public interface OperationNameStrategy {
+    /**
+     * @param resourceInfo the resource class and method being traced
+     * @return the operation name for all spans of requests to that method
+     */
+    String getOperationName(ResourceInfo resourceInfo);
+}
@@ -0,0 +1,157 @@
+package io.opentracing.contrib.dropwizard;
+
+import io.opentracing.Span;
+import org.glassfish.jersey.server.model.ResourceMethod;
+import org.glassfish.jersey.server.monitoring.RequestEvent;
+import org.glassfish.jersey.server.monitoring.RequestEventListener;
+
+import java.lang.reflect.Method;
+import java.util.Collections;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.TimeUnit;
+import javax.ws.rs.container.ContainerRequestContext;
+
+/**
+ * Times the phases Jersey goes through for requests to traced resource
+ * methods, with System.nanoTime() at each request event, and tags them to the
+ * span of the request once its response is written:
+ *
+ * - "Matching Micros": matching the request to a resource method
+ * - "Request Filters Micros": running the request filters
+ * - "Resource Method Micros": running the resource method
+ * - "Response Filters Micros": running the response filters
+ * - "Entity Write Micros": writing the response, i.e. running the
+ *   MessageBodyWriter (e.g. Jackson serialization)
+ *
+ * As the response is written after the response filters, the span of a timed
+ * request is finished when it is written rather than by the
+ * ServerResponseTracingFilter.
+ *
+ * Like ServerTracingRequestEventListener, a single instance is used for all
+ * requests, and it passes every event on to the
+ * ServerTracingRequestEventListener. The start of each request is kept per
+ * thread, as it is known before the request is matched, and the timings of
+ * a request are only allocated, as a property of the request, once it is
+ * matched to a traced resource method.
+ */
+final class PhaseTimingRequestEventListener implements RequestEventListener {
+
+    /**
+     * Set on requests whose span is to be finished once their response is
+     * written.
+     */
+    static final String PROPERTY = PhaseTimingRequestEventListener.class.getName();
+
+    private static final String TIMINGS_PROPERTY = PhaseTimings.class.getName();
+
+    private static final long UNSET = Long.MIN_VALUE;
+
+    private final DropWizardTracer tracer;
+    private final RequestEventListener delegate;
+    private final Set<Method> tracedMethods;
+    private final ThreadLocal<long[]> startNanos;
+
+    PhaseTimingRequestEventListener(DropWizardTracer tracer, RequestEventListener delegate) {
+        this.tracer = tracer;
+        this.delegate = delegate;
+        this.tracedMethods = Collections.newSetFromMap(new ConcurrentHashMap<Method, Boolean>());
+        this.startNanos = new ThreadLocal<long[]>() {
+            @Override
+            protected long[] initialValue() {
+                return new long[1];
+            }
+        };
+    }
+
+    /**
+     * @param method a resource method whose requests are traced, and so timed
+     */
+    void traced(Method method) {
+        this.tracedMethods.add(method);
+    }
+
+    /**
+     * Records the start of a request, on the thread that matches it.
+     */
+    void started() {
+        this.startNanos.get()[0] = System.nanoTime();
+    }
+
+    @Override
+    public void onEvent(RequestEvent event) {
+        long now = System.nanoTime();
+        ContainerRequestContext request = event.getContainerRequest();
+        if (event.getType() == RequestEvent.Type.REQUEST_MATCHED) {
+            ResourceMethod method = event.getUriInfo().getMatchedResourceMethod();
+            if (method != null && this.tracedMethods.contains(method.getInvocable().getDefinitionMethod())) {
+                request.setProperty(TIMINGS_PROPERTY, new PhaseTimings(this.startNanos.get()[0], now));
+            }
+        } else if (request != null) {
+            PhaseTimings timings = (PhaseTimings) request.getProperty(TIMINGS_PROPERTY);
+            if (timings != null) {
+                timings.onEvent(event, request, now);
+            }
+        }
+        this.delegate.onEvent(event);
+    }
+
+    /**
+     * The timings of one request.
+     */
+    private final class PhaseTimings {
+
+        private final long startNanos;
+        private final long matchedNanos;
+        private long filteredNanos = UNSET;
+        private long methodStartNanos = UNSET;
+        private long methodFinishedNanos = UNSET;
+        private long responseFiltersStartNanos = UNSET;
+        private long responseFiltersFinishedNanos = UNSET;
+
+        PhaseTimings(long startNanos, long matchedNanos) {
+            this.startNanos = startNanos;
+            this.matchedNanos = matchedNanos;
+        }
+
+        void onEvent(RequestEvent event, ContainerRequestContext request, long now) {
+            switch (event.getType()) {
+                case REQUEST_FILTERED:
+                    this.filteredNanos = now;
+                    request.setProperty(PROPERTY, Boolean.TRUE);
+                    break;
+                case RESOURCE_METHOD_START:
+                    this.methodStartNanos = now;
+                    break;
+                case RESOURCE_METHOD_FINISHED:
+                    this.methodFinishedNanos = now;
+                    break;
+                case RESP_FILTERS_START:
+                    this.responseFiltersStartNanos = now;
+                    break;
+                case RESP_FILTERS_FINISHED:
+                    this.responseFiltersFinishedNanos = now;
+                    break;
+                case FINISHED:
+                    Span span = tracer.getSpan(request);
+                    if (span != null) {
+                        tag(span, "Matching Micros", this.startNanos, this.matchedNanos);
+                        tag(span, "Request Filters Micros", this.matchedNanos, this.filteredNanos);
+                        tag(span, "Resource Method Micros", this.methodStartNanos, this.methodFinishedNanos);
+                        tag(span, "Response Filters Micros", this.responseFiltersStartNanos,
+                            this.responseFiltersFinishedNanos);
+                        tag(span, "Entity Write Micros", this.responseFiltersFinishedNanos, now);
+                    }
+                    break;
+                default:
+                    break;
+            }
+        }
+    }
+
+    private static void tag(Span span, String key, long fromNanos, long toNanos) {
+        if (fromNanos != UNSET && toNanos != UNSET) {
+            span.setTag(key, TimeUnit.NANOSECONDS.toMicros(toNanos - fromNanos));
+        }
+    }
+}
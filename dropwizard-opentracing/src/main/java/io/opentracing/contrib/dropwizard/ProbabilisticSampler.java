@@ -0,0 +1,67 @@
+package io.opentracing.contrib.dropwizard;
+
+import java.util.HashMap;
+import java.util.Map;
+import java.util.concurrent.ThreadLocalRandom;
+
+/**
+ * A TracingSampler that samples a fixed fraction of requests, optionally
+ * with a different rate for some operation names.
+ */
+public class ProbabilisticSampler implements TracingSampler {
+
+    private final double rate;
+    private final Map<String, Double> operationRates;
+
+    /**
+     * @param rate fraction of requests to sample, between 0 and 1
+     */
+    public ProbabilisticSampler(double rate) {
+        this(rate, new HashMap<String, Double>());
+    }
+
+    /**
+     * @param rate fraction of requests to sample, between 0 and 1, for
+     *  operations without a rate of their own
+     * @param operationRates fractions of requests to sample by operation name
+     */
+    public ProbabilisticSampler(double rate, Map<String, Double> operationRates) {
+        checkRate(rate);
+        for (Double operationRate : operationRates.values()) {
+            checkRate(operationRate);
+        }
+        this.rate = rate;
+        this.operationRates = new HashMap<String, Double>(operationRates);
+    }
+
+    @Override
+    public boolean sample(String operationName) {
+        double rate = this.rate;
+        if (!this.operationRates.isEmpty()) {
+            Double operationRate = this.operationRates.get(operationName);
+            if (operationRate != null) {
+                rate = operationRate;
+            }
+        }
+        return rate >= 1.0 || (rate > 0.0 && ThreadLocalRandom.current().nextDouble() < rate);
+    }
+
+    double getRate() {
+        return this.rate;
+    }
+
+    Map<String, Double> getOperationRates() {
+        return this.operationRates;
+    }
+
+    @Override
+    public String toString() {
+        return "ProbabilisticSampler{rate=" + this.rate + ", operationRates=" + this.operationRates + "}";
+    }
+
+    private static void checkRate(double rate) {
+        if (!(rate >= 0.0 && rate <= 1.0)) {
+            throw new IllegalArgumentException("sample rate must be between 0 and 1, got " + rate);
+        }
+    }
+}
@@ -0,0 +1,88 @@
+package io.opentracing.contrib.dropwizard;
+
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * A TracingSampler that samples at most a fixed number of spans per second
+ * for each operation name, so that traffic spikes don't increase the number
+ * of spans while rarely called operations are still sampled.
+ *
+ * Each operation has its own token bucket, holding up to one second worth of
+ * spans. A bucket is a single AtomicLong, the time at which it will be full
+ * again, updated with compare-and-set, so sampling never takes a lock.
+ * Once maxOperations buckets exist, further operation names share one bucket,
+ * which keeps the memory used bounded when operation names are not (e.g. when
+ * they are request URIs).
+ */
+public class RateLimitingSampler implements TracingSampler {
+
+    private static final int DEFAULT_MAX_OPERATIONS = 1000;
+
+    private final long nanosPerSpan;
+    private final long burstNanos;
+    private final int maxOperations;
+    private final ConcurrentMap<String, AtomicLong> buckets;
+    private final AtomicLong overflowBucket;
+
+    /**
+     * @param spansPerSecond maximum number of spans sampled per second for
+     *  each operation name
+     */
+    public RateLimitingSampler(double spansPerSecond) {
+        this(spansPerSecond, DEFAULT_MAX_OPERATIONS);
+    }
+
+    /**
+     * @param spansPerSecond maximum number of spans sampled per second for
+     *  each operation name
+     * @param maxOperations maximum number of operation names rate limited
+     *  separately, beyond which operations share a single rate limit
+     */
+    public RateLimitingSampler(double spansPerSecond, int maxOperations) {
+        if (!(spansPerSecond > 0.0)) {
+            throw new IllegalArgumentException("spans per second must be positive, got " + spansPerSecond);
+        }
+        this.nanosPerSpan = Math.max(1L, (long) (TimeUnit.SECONDS.toNanos(1) / spansPerSecond));
+        this.burstNanos = Math.max(this.nanosPerSpan, TimeUnit.SECONDS.toNanos(1));
+        this.maxOperations = maxOperations;
+        this.buckets = new ConcurrentHashMap<String, AtomicLong>();
+        this.overflowBucket = newBucket();
+    }
+
+    @Override
+    public boolean sample(String operationName) {
+        AtomicLong bucket = this.buckets.get(operationName);
+        if (bucket == null) {
+            bucket = addBucket(operationName);
+        }
+        long now = System.nanoTime();
+        while (true) {
+            long fullAt = bucket.get();
+            // the bucket can't hold more than burstNanos worth of spans
+            long from = now - fullAt > 0 ? now : fullAt;
+            long next = from + this.nanosPerSpan;
+            if (next - now > this.burstNanos) {
+                return false;
+            }
+            if (bucket.compareAndSet(fullAt, next)) {
+                return true;
+            }
+        }
+    }
+
+    private AtomicLong addBucket(String operationName) {
+        if (this.buckets.size() >= this.maxOperations) {
+            return this.overflowBucket;
+        }
+        AtomicLong bucket = newBucket();
+        AtomicLong existing = this.buckets.putIfAbsent(operationName, bucket);
+        return existing == null ? bucket : existing;
+    }
+
+    private AtomicLong newBucket() {
+        return new AtomicLong(System.nanoTime() - this.burstNanos);
+    }
+}
@@ -0,0 +1,177 @@
+package io.opentracing.contrib.dropwizard;
+
+import io.opentracing.Span;
+
+import java.util.Set;
+import javax.ws.rs.container.ContainerRequestContext;
+import javax.ws.rs.core.SecurityContext;
+
+/**
+ * Tags one ServerAttribute of a request to its span.
+ *
+ * The configured set of ServerAttributes is compiled once into an array of
+ * extractors, so that tracing a request is a plain loop over that array.
+ */
+abstract class ServerAttributeExtractor {
+
+    abstract void extract(ContainerRequestContext requestContext, Span span);
+
+    /**
+     * @param attributes the ServerAttributes to trace
+     * @return an extractor for each of the attributes, in declaration order
+     */
+    static ServerAttributeExtractor[] compile(Set<ServerAttribute> attributes) {
+        return compile(attributes, HeaderTags.NONE);
+    }
+
+    /**
+     * @param attributes the ServerAttributes to trace
+     * @param headerTags the headers to tag individually and to redact
+     * @return an extractor for each of the attributes, in declaration order,
+     *  redacting HEADERS and COOKIES if needed, then one for the traced headers
+     */
+    static ServerAttributeExtractor[] compile(Set<ServerAttribute> attributes, final HeaderTags headerTags) {
+        ServerAttributeExtractor[] extractors = new ServerAttributeExtractor[
+            attributes.size() + (headerTags.tracesHeaders() ? 1 : 0)];
+        int i = 0;
+        for (ServerAttribute attribute : ServerAttribute.values()) {
+            if (attributes.contains(attribute)) {
+                extractors[i++] = headerTags.redactsHeaders()
+                    ? forRedactedAttribute(attribute, headerTags)
+                    : forAttribute(attribute);
+            }
+        }
+        if (headerTags.tracesHeaders()) {
+            extractors[i] = new ServerAttributeExtractor() {
+                void extract(ContainerRequestContext requestContext, Span span) {
+                    headerTags.tag(requestContext.getHeaders(), span);
+                }
+            };
+        }
+        return extractors;
+    }
+
+    private static ServerAttributeExtractor forRedactedAttribute(ServerAttribute attribute,
+            final HeaderTags headerTags) {
+        switch (attribute) {
+            case COOKIES:
+                if (!headerTags.isRedacted("Cookie")) {
+                    return forAttribute(attribute);
+                }
+                // only the names of the cookies
+                return new ServerAttributeExtractor() {
+                    void extract(ContainerRequestContext requestContext, Span span) {
+                        setTag(span, "Cookies", requestContext.getCookies().keySet());
+                    }
+                };
+            case HEADERS:
+                return new ServerAttributeExtractor() {
+                    void extract(ContainerRequestContext requestContext, Span span) {
+                        span.setTag("Headers", headerTags.toString(requestContext.getHeaders()));
+                    }
+                };
+            default:
+                return forAttribute(attribute);
+        }
+    }
+
+    static ServerAttributeExtractor forAttribute(ServerAttribute attribute) {
+        switch (attribute) {
+            case ACCEPTABLE_LANGUAGES:
+                return new ServerAttributeExtractor() {
+                    void extract(ContainerRequestContext requestContext, Span span) {
+                        setTag(span, "Acceptable Languages", requestContext.getAcceptableLanguages());
+                    }
+                };
+            case ACCEPTABLE_MEDIA_TYPES:
+                return new ServerAttributeExtractor() {
+                    void extract(ContainerRequestContext requestContext, Span span) {
+                        setTag(span, "Acceptable Media Types", requestContext.getAcceptableMediaTypes());
+                    }
+                };
+            case COOKIES:
+                return new ServerAttributeExtractor() {
+                    void extract(ContainerRequestContext requestContext, Span span) {
+                        setTag(span, "Cookies", requestContext.getCookies());
+                    }
+                };
+            case DATE:
+                return new ServerAttributeExtractor() {
+                    void extract(ContainerRequestContext requestContext, Span span) {
+                        setTag(span, "Date", requestContext.getDate());
+                    }
+                };
+            case ENTITY_STREAM:
+                return new ServerAttributeExtractor() {
+                    void extract(ContainerRequestContext requestContext, Span span) {
+                        EntityStreamTracker tracker = new EntityStreamTracker(span);
+                        requestContext.setProperty(EntityStreamTracker.PROPERTY, tracker);
+                        if (requestContext.hasEntity()) {
+                            requestContext.setEntityStream(tracker.countRequest(requestContext.getEntityStream()));
+                        }
+                    }
+                };
+            case HEADERS:
+                return new ServerAttributeExtractor() {
+                    void extract(ContainerRequestContext requestContext, Span span) {
+                        setTag(span, "Headers", requestContext.getHeaders());
+                    }
+                };
+            case LANGUAGE:
+                return new ServerAttributeExtractor() {
+                    void extract(ContainerRequestContext requestContext, Span span) {
+                        setTag(span, "Language", requestContext.getLanguage());
+                    }
+                };
+            case CONTENT_LENGTH:
+                return new ServerAttributeExtractor() {
+                    void extract(ContainerRequestContext requestContext, Span span) {
+                        span.setTag("Content Length", requestContext.getLength());
+                    }
+                };
+            case METHOD:
+                return new ServerAttributeExtractor() {
+                    void extract(ContainerRequestContext requestContext, Span span) {
+                        setTag(span, SpanTags.HTTP_METHOD, requestContext.getMethod());
+                    }
+                };
+            case MEDIA_TYPE:
+                return new ServerAttributeExtractor() {
+                    void extract(ContainerRequestContext requestContext, Span span) {
+                        setTag(span, "Media Type", requestContext.getMediaType());
+                    }
+                };
+            case PROPERTY_NAMES:
+                return new ServerAttributeExtractor() {
+                    void extract(ContainerRequestContext requestContext, Span span) {
+                        setTag(span, "Property Names", requestContext.getPropertyNames());
+                    }
+                };
+            case SECURITY_CONTEXT:
+                return new ServerAttributeExtractor() {
+                    void extract(ContainerRequestContext requestContext, Span span) {
+                        SecurityContext securityContext = requestContext.getSecurityContext();
+                        if (securityContext != null) {
+                            setTag(span, "Security Context", securityContext.getAuthenticationScheme());
+                        }
+                    }
+                };
+            case URI:
+                return new ServerAttributeExtractor() {
+                    void extract(ContainerRequestContext requestContext, Span span) {
+                        // the absolute path leaves out the query string, which may hold
+                        // tokens or personal data
+                        setTag(span, SpanTags.HTTP_URL, requestContext.getUriInfo().getAbsolutePath());
+                    }
+                };
+            default:
+                throw new IllegalArgumentException("Unsupported ServerAttribute: " + attribute);
+        }
+    }
+
+    static void setTag(Span span, String key, Object value) {
+        if (value != null) {
+            span.setTag(key, value.toString());
+        }
+    }
+}
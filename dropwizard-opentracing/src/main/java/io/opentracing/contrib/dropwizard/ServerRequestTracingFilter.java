@@ -2,14 +2,15 @@ package io.opentracing.contrib.dropwizard;
 
 import io.opentracing.Span;
 import io.opentracing.SpanContext;
+import io.opentracing.Tracer;
 import io.opentracing.propagation.Format;
-import io.opentracing.propagation.TextMapExtractAdapter;
 
 import javax.ws.rs.container.ContainerRequestContext;
 import javax.ws.rs.container.ContainerRequestFilter;
-import javax.ws.rs.core.MultivaluedMap;
 import java.io.IOException;
-import java.util.HashMap;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
 import java.util.Set;
 
 /**
@@ -19,14 +20,18 @@ import java.util.Set;
 public class ServerRequestTracingFilter implements ContainerRequestFilter {
 
     private final DropWizardTracer tracer;
-    private final Set<ServerAttribute> tracedAttributes;
-    private final Set<String> tracedProperties;
-    private String operationName;
-    private RequestSpanDecorator decorator;
+    private final ServerAttributeExtractor[] attributeExtractors;
+    private final String[] tracedProperties;
+    private final String operationName;
+    private final RequestSpanDecorator decorator;
+    private final String[] extractedHeaders;
+    private final TracingSampler sampler;
+    private final DynamicTracingPolicy policy;
 
     /**
      * @param tracer to trace requests with
-     * @param operationName for any spans created by this filter
+     * @param operationName for any spans created by this filter; if empty,
+     *  the name of the matched resource class is used
      * @param tracedAttributes any ServiceAttributes to log to spans
      * @param tracedProperties any request properties to log to spans
      * @param decorator an optional decorator for the request spans
@@ -37,117 +42,152 @@ public class ServerRequestTracingFilter implements ContainerRequestFilter {
         Set<ServerAttribute> tracedAttributes, 
         Set<String> tracedProperties,
         RequestSpanDecorator decorator
+    ) {
+        this(tracer, operationName, ServerAttributeExtractor.compile(tracedAttributes),
+            tracedProperties.toArray(new String[tracedProperties.size()]), decorator, null, null, null);
+    }
+
+    ServerRequestTracingFilter(
+        DropWizardTracer tracer,
+        String operationName,
+        ServerAttributeExtractor[] attributeExtractors,
+        String[] tracedProperties,
+        RequestSpanDecorator decorator,
+        String[] extractedHeaders,
+        TracingSampler sampler,
+        DynamicTracingPolicy policy
     ) {
         this.tracer = tracer;
         this.operationName = operationName;
         this.tracedProperties = tracedProperties;
-        this.tracedAttributes = tracedAttributes;
+        this.attributeExtractors = attributeExtractors;
         this.decorator = decorator;
+        this.extractedHeaders = extractedHeaders;
+        this.sampler = sampler;
+        this.policy = policy;
     }
     
     @Override
     public void filter(ContainerRequestContext requestContext) throws IOException {
         // set the operation name
-        if (this.operationName.equals("")) {
-            for (Object resource : requestContext.getUriInfo().getMatchedResources()) {
-                this.operationName += resource.getClass().getSimpleName() + " ";
+        String operationName = this.operationName;
+        if (operationName.isEmpty()) {
+            operationName = matchedResourceName(requestContext);
+        }
+
+        // read the policy once for the whole request
+        ServerAttributeExtractor[] attributeExtractors = this.attributeExtractors;
+        RequestSpanDecorator decorator = this.decorator;
+        TracingSampler sampler = this.sampler;
+        if (this.policy != null) {
+            TracingPolicy policy = this.policy.get();
+            attributeExtractors = policy.serverAttributeExtractors;
+            decorator = policy.getRequestSpanDecorator();
+            // the sampleRate of a @Trace annotation is only the default rate
+            // of its operation, which the policy can set a rate of its own for
+            if (sampler == null || hasOperationRate(policy.getSampler(), operationName)) {
+                sampler = policy.getSampler();
             }
         }
 
-        // format the headers for extraction
-        Span span;
-        MultivaluedMap<String, String> rawHeaders = requestContext.getHeaders();
-        final HashMap<String, String> headers = new HashMap<String, String>();
-        for (String key : rawHeaders.keySet()){
-            headers.put(key, rawHeaders.get(key).get(0));
+        // time the request, whether or not it is sampled; metrics are only
+        // registered once an operation is first requested
+        OperationMetrics metrics = tracer.getServerMetrics(operationName);
+        if (metrics != null) {
+            requestContext.setProperty(OperationMetrics.PROPERTY, metrics.start());
         }
 
+        TracingOverhead overhead = tracer.getOverhead();
+        boolean timed = overhead != null && overhead.timed();
+
         // extract the client span
+        long startNanos = timed ? System.nanoTime() : 0;
+        SpanContext parentSpan;
+        TraceParentCodec traceParentCodec = tracer.getTraceParentCodec();
         try {
-            SpanContext parentSpan = tracer.getTracer().extract(
+            parentSpan = tracer.getTracer().extract(
                     Format.Builtin.HTTP_HEADERS,
-                    new TextMapExtractAdapter(headers));
-            if (parentSpan == null){
-                span = tracer.getTracer().buildSpan(this.operationName).start();
-            } else {
-                span = tracer.getTracer().buildSpan(this.operationName).asChildOf(parentSpan).start();
-            }
+                    traceParentCodec == null
+                        ? new HeadersExtractAdapter(requestContext.getHeaders(), this.extractedHeaders)
+                        : traceParentCodec.extractAdapter(requestContext.getHeaders(), this.extractedHeaders));
         } catch(IllegalArgumentException e) {
-            span = tracer.getTracer().buildSpan(this.operationName).start();
+            parentSpan = null;
+        }
+        if (timed) {
+            overhead.extracted(startNanos);
         }
 
-        // trace attributes
-        for (ServerAttribute attribute : this.tracedAttributes) {
-            switch(attribute) {
-                case ACCEPTABLE_LANGUAGES: 
-                    try { span.setTag("Acceptable Languages", requestContext.getAcceptableLanguages().toString()); }
-                    catch(NullPointerException npe) {}
-                    break;
-                case ACCEPTABLE_MEDIA_TYPES: 
-                    try { span.setTag("Acceptable Media Types", requestContext.getAcceptableMediaTypes().toString()); }
-                    catch(NullPointerException npe) {}
-                    break;
-                case COOKIES:
-                    try { span.setTag("Cookies", requestContext.getCookies().toString()); }
-                    catch(NullPointerException npe) {}
-                    break;
-                case DATE:
-                    try { span.setTag("Date", requestContext.getDate().toString()); }
-                    catch(NullPointerException npe) {}
-                    break;
-                case ENTITY_STREAM:
-                    try { span.log("Entity Stream", requestContext.getEntityStream()); }
-                    catch(NullPointerException npe) {}
-                    break;
-                case HEADERS:
-                    try { span.setTag("Headers", requestContext.getHeaders().toString()); }
-                    catch(NullPointerException npe) {}
-                    break;
-                case LANGUAGE:
-                    try { span.setTag("Language", requestContext.getLanguage().toString()); }
-                    catch(NullPointerException npe) {}
-                    break;
-                case CONTENT_LENGTH:
-                    try { span.setTag("Content Length", requestContext.getLength()); }
-                    catch(NullPointerException npe) {}
-                    break;
-                case METHOD:
-                    try { span.setTag("Method", requestContext.getMethod()); }
-                    catch(NullPointerException npe) {}
-                    break;
-                case MEDIA_TYPE: 
-                    try { span.setTag("Media Type", requestContext.getMediaType().toString()); }
-                    catch(NullPointerException npe) {}
-                    break;
-                case PROPERTY_NAMES:
-                    try { span.setTag("Property Names", requestContext.getPropertyNames().toString()); }
-                    catch(NullPointerException npe) {}
-                    break;
-                case SECURITY_CONTEXT:
-                    try { span.setTag("Security Context", requestContext.getSecurityContext().getAuthenticationScheme()); }
-                    catch(NullPointerException npe) {}
-                    break;
-                case URI:
-                    try { span.setTag("URI", requestContext.getUriInfo().getAbsolutePath().toString()); }
-                    catch(NullPointerException npe) {}
-                    break;
+        // requests that are not sampled only propagate their span context,
+        // and those called without one keep their client requests from
+        // starting traces of their own
+        if (sampler != null && !sampler.sample(operationName)) {
+            SpanContext unsampledContext = parentSpan != null ? parentSpan : DropWizardTracer.UNSAMPLED_ROOT;
+            tracer.addUnsampledSpanContext(requestContext, unsampledContext);
+            ServerTracingFeature.threadLocalUnsampledContext.set(unsampledContext);
+            if (overhead != null) {
+                overhead.count(false);
             }
+            return;
+        }
+        if (overhead != null) {
+            overhead.count(true);
         }
 
-        // trace properties
+        // start the span when Jetty received the request, if it was recorded
+        JettyEntryTracingFilter.JettyEntry entry =
+            (JettyEntryTracingFilter.JettyEntry) requestContext.getProperty(JettyEntryTracingFilter.PROPERTY);
+        Tracer.SpanBuilder spanBuilder = tracer.getTracer().buildSpan(operationName);
+        if (parentSpan != null) {
+            spanBuilder = spanBuilder.asChildOf(parentSpan);
+        }
+        if (entry != null) {
+            spanBuilder = spanBuilder.withStartTimestamp(entry.receivedMicros());
+        }
+        Span span = spanBuilder.start();
+        if (entry != null) {
+            entry.tag(span);
+        }
+
+        // trace attributes
+        startNanos = timed ? System.nanoTime() : 0;
+        for (ServerAttributeExtractor extractor : attributeExtractors) {
+            extractor.extract(requestContext, span);
+        }
+
+        // trace properties, in a single log event
+        Map<String, Object> properties = null;
         for (String propertyName : this.tracedProperties) {
             Object property = requestContext.getProperty(propertyName);
             if (property != null) {
-                span.log(propertyName, property);
+                if (properties == null) {
+                    properties = new LinkedHashMap<String, Object>();
+                }
+                properties.put(propertyName, property);
             }
         }
+        if (properties != null) {
+            span.log(SpanTags.PROPERTIES_EVENT, properties);
+        }
 
-        if (this.decorator != null) {
-            this.decorator.decorate(requestContext, span);
+        if (decorator != null) {
+            decorator.decorate(requestContext, span);
+        }
+        if (timed) {
+            overhead.tagged(startNanos);
         }
 
         // add the new span to the trace
-        tracer.addServerSpan(requestContext.getRequest(), span);
+        tracer.addServerSpan(requestContext, span);
         ServerTracingFeature.threadLocalRequestSpan.set(span);
     }
+
+    private static String matchedResourceName(ContainerRequestContext requestContext) {
+        List<Object> resources = requestContext.getUriInfo().getMatchedResources();
+        return resources.isEmpty() ? "" : resources.get(0).getClass().getSimpleName();
+    }
+
+    private static boolean hasOperationRate(TracingSampler sampler, String operationName) {
+        return sampler instanceof ProbabilisticSampler
+            && ((ProbabilisticSampler) sampler).getOperationRates().containsKey(operationName);
+    }
 }
@@ -1,5 +1,7 @@
 package io.opentracing.contrib.dropwizard;
 
+import io.opentracing.Span;
+
 import java.io.IOException;
 
 import javax.ws.rs.container.ContainerRequestContext;
@@ -32,8 +34,37 @@ public class ServerResponseTracingFilter implements ContainerResponseFilter {
     }
     
     @Override
-    public void filter(ContainerRequestContext requestContext, ContainerResponseContext responseContext) throws IOException {
-        tracer.finishServerSpan(requestContext.getRequest());
+    public void filter(final ContainerRequestContext requestContext, ContainerResponseContext responseContext) throws IOException {
+        OperationMetrics.Timing timing = (OperationMetrics.Timing) requestContext.getProperty(OperationMetrics.PROPERTY);
+        if (timing != null) {
+            requestContext.removeProperty(OperationMetrics.PROPERTY);
+            timing.stop(responseContext.getStatus() >= 500);
+        }
+
+        Span span = tracer.getSpan(requestContext);
+        if (span != null) {
+            SpanTags.setStatusCode(span, responseContext.getStatus());
+        }
+
+        // with phase timings, the span is finished once the response is written
+        boolean timed = requestContext.getProperty(PhaseTimingRequestEventListener.PROPERTY) != null;
+        EntityStreamTracker tracker = (EntityStreamTracker) requestContext.getProperty(EntityStreamTracker.PROPERTY);
+        if (tracker != null && responseContext.hasEntity()) {
+            // finish the span once the response entity is written
+            responseContext.setEntityStream(tracker.countResponse(responseContext.getEntityStream(),
+                timed ? null : new Runnable() {
+                    @Override
+                    public void run() {
+                        tracer.finishServerSpan(requestContext);
+                    }
+                }));
+        } else if (!timed) {
+            if (tracker != null) {
+                tracker.tag();
+            }
+            tracer.finishServerSpan(requestContext);
+        }
         ServerTracingFeature.threadLocalRequestSpan.set(null);
+        ServerTracingFeature.threadLocalUnsampledContext.set(null);
     }
 }
\ No newline at end of file
@@ -6,68 +6,121 @@ import javax.ws.rs.container.DynamicFeature;
 import javax.ws.rs.container.ResourceInfo;
 import javax.ws.rs.core.FeatureContext;
 import javax.ws.rs.ext.Provider;
+import org.glassfish.jersey.server.monitoring.ApplicationEvent;
+import org.glassfish.jersey.server.monitoring.ApplicationEventListener;
+import org.glassfish.jersey.server.monitoring.RequestEvent;
+import org.glassfish.jersey.server.monitoring.RequestEventListener;
 
 import io.opentracing.Span;
+import io.opentracing.SpanContext;
 
 /**
  * When registered to a DropWizard application, this feature
  * registers filters to trace the any requests to the application.
+ *
+ * It also listens to the events of each request, to trace requests to
+ * asynchronous resource methods (see ServerTracingRequestEventListener).
  * 
  * This feature is configured and built using ServerTracingFeature.Builder
  */
 @Provider
-public class ServerTracingFeature implements DynamicFeature {
+public class ServerTracingFeature implements DynamicFeature, ApplicationEventListener {
 
     private final DropWizardTracer tracer;
-    private final Set<ServerAttribute> tracedAttributes;
-    private final Set<String> tracedProperties;
+    private final ServerAttributeExtractor[] attributeExtractors;
+    private final String[] tracedProperties;
     private final boolean traceAll;
     private final String operationName;
+    private final OperationNameStrategy operationNameStrategy;
     private final RequestSpanDecorator decorator;
+    private final String[] extractedHeaders;
+    private final TracingSampler sampler;
+    private final RequestEventListener requestEventListener;
+    private final PhaseTimingRequestEventListener phaseTimingListener;
+    private final DynamicTracingPolicy policy;
     static ThreadLocal<Span> threadLocalRequestSpan = new ThreadLocal<Span>();
+    static ThreadLocal<SpanContext> threadLocalUnsampledContext = new ThreadLocal<SpanContext>();
 
     private ServerTracingFeature(
         DropWizardTracer tracer, 
         String operationName,
+        OperationNameStrategy operationNameStrategy,
         Set<ServerAttribute> tracedAttributes, 
+        Set<String> tracedHeaders,
+        Set<String> redactedHeaders,
         Set<String> tracedProperties,
         boolean traceAll,
-        RequestSpanDecorator decorator
+        RequestSpanDecorator decorator,
+        Set<String> extractedHeaders,
+        TracingSampler sampler,
+        boolean phaseTimings,
+        DynamicTracingPolicy policy
     ) {
         this.tracer = tracer;
         this.operationName = operationName;
-        this.tracedAttributes = tracedAttributes;
-        this.tracedProperties = tracedProperties;
+        this.operationNameStrategy = operationNameStrategy;
+        this.attributeExtractors = ServerAttributeExtractor.compile(tracedAttributes,
+            new HeaderTags(tracedHeaders, redactedHeaders));
+        this.tracedProperties = tracedProperties.toArray(new String[tracedProperties.size()]);
         this.traceAll = traceAll;
         this.decorator = decorator;
+        this.extractedHeaders = extractedHeaders == null ? null
+            : extractedHeaders.toArray(new String[extractedHeaders.size()]);
+        this.sampler = sampler;
+        this.requestEventListener = new ServerTracingRequestEventListener(tracer);
+        this.phaseTimingListener = phaseTimings
+            ? new PhaseTimingRequestEventListener(tracer, this.requestEventListener)
+            : null;
+        this.policy = policy;
     }
 
     @Override
     public void configure(ResourceInfo resourceInfo, FeatureContext context) {
         Trace annotation = resourceInfo.getResourceMethod().getAnnotation(Trace.class);
+        if (annotation == null && !traceAll) {
+            return;
+        }
         String operationName = this.operationName;
-        if (annotation != null) {
-            if (!annotation.operationName().equals("")) {
-                operationName = annotation.operationName();
-            }
-            context.register(new ServerRequestTracingFilter(this.tracer, operationName,
-                this.tracedAttributes, this.tracedProperties, this.decorator));
-            context.register(new ServerResponseTracingFilter(this.tracer));  
-        } else {
-            if (traceAll) {
-                context.register(new ServerRequestTracingFilter(this.tracer, operationName,
-                    this.tracedAttributes, this.tracedProperties, this.decorator));
-                context.register(new ServerResponseTracingFilter(this.tracer));
-            } 
+        if (annotation != null && !annotation.operationName().equals("")) {
+            operationName = annotation.operationName();
+        } else if (operationName.equals("")) {
+            operationName = this.operationNameStrategy.getOperationName(resourceInfo);
+        }
+        // the sampler of the policy applies, unless it has no rate of its own
+        // for the operation of an annotation with a sampleRate
+        TracingSampler sampler = this.policy == null ? this.sampler : null;
+        if (annotation != null && annotation.sampleRate() >= 0) {
+            sampler = new ProbabilisticSampler(annotation.sampleRate());
+        }
+        context.register(new ServerRequestTracingFilter(this.tracer, operationName,
+            this.attributeExtractors, this.tracedProperties, this.decorator, this.extractedHeaders,
+            sampler, this.policy));
+        context.register(new ServerResponseTracingFilter(this.tracer));
+        if (this.phaseTimingListener != null) {
+            this.phaseTimingListener.traced(resourceInfo.getResourceMethod());
         }
     }
 
+    @Override
+    public void onEvent(ApplicationEvent event) {
+    }
+
+    @Override
+    public RequestEventListener onRequest(RequestEvent requestEvent) {
+        if (this.phaseTimingListener != null) {
+            this.phaseTimingListener.started();
+            return this.phaseTimingListener;
+        }
+        return this.requestEventListener;
+    }
+
     /**
      * Returns the Span associated with the active DropWizard request.
      *
      * NOTE: this may return null when there is no active DropWizard request or that request is not traced; moreover,
      * if request processing moves from thread to thread, this mechanism may return null or perhaps even the wrong
-     * Span. Use with some caution. If it is possible to explicitly propagate a Span, that will always be more rigorous
+     * Span. Requests to asynchronous resource methods are followed from the thread running the resource method to
+     * the thread their response is processed on, but not to the threads in between. Use with some caution. If it is possible to explicitly propagate a Span, that will always be more rigorous
      * (though of course it's also often not practical or expedient).
      *
      * @return The Span associated with the active DropWizard request.
@@ -76,6 +129,17 @@ public class ServerTracingFeature implements DynamicFeature {
         return ServerTracingFeature.threadLocalRequestSpan.get();
     }
 
+    /**
+     * Returns whether the active DropWizard request was not sampled, so that work done for it (e.g. the statements
+     * traced by dropwizard-jdbi-opentracing) should not start traces of its own. The same caveats as for
+     * getThreadLocalRequestSpan() apply.
+     *
+     * @return true if the active DropWizard request was not sampled
+     */
+    public static boolean isThreadLocalRequestUnsampled() {
+        return ServerTracingFeature.threadLocalUnsampledContext.get() != null;
+    }
+
     /**
      * Use this class to configure and build a ServerTracingFeature
      */
@@ -83,10 +147,17 @@ public class ServerTracingFeature implements DynamicFeature {
 
         private final DropWizardTracer tracer;
         private Set<ServerAttribute> tracedAttributes;
+        private Set<String> tracedHeaders;
+        private Set<String> redactedHeaders;
         private Set<String> tracedProperties;
         private boolean traceAll;
         private String operationName;
+        private OperationNameStrategy operationNameStrategy;
         private RequestSpanDecorator decorator;
+        private Set<String> extractedHeaders;
+        private TracingSampler sampler;
+        private boolean phaseTimings;
+        private DynamicTracingPolicy policy;
 
         /**
          * @param tracer to use to trace requests to the server
@@ -94,9 +165,12 @@ public class ServerTracingFeature implements DynamicFeature {
         public Builder(DropWizardTracer tracer) {
             this.tracer = tracer;
             this.tracedAttributes = new HashSet<ServerAttribute>();
+            this.tracedHeaders = new HashSet<String>();
+            this.redactedHeaders = new HashSet<String>();
             this.tracedProperties = new HashSet<String>();
             this.traceAll = true;
             this.operationName = "";
+            this.operationNameStrategy = StandardOperationNameStrategy.RESOURCE_CLASS;
         }
 
         /**
@@ -109,6 +183,31 @@ public class ServerTracingFeature implements DynamicFeature {
             return this;
         }
 
+        /**
+         * Tags each of these headers, when present, as its own tag named
+         * "http.header." followed by the header name in lower case (e.g.
+         * "http.header.x-request-id"). Only these headers are read, so this
+         * is much cheaper than tracing HEADERS.
+         * @param headerNames the headers to tag
+         * @return Builder configured with added traced headers
+         */
+        public Builder withTracedHeaders(Set<String> headerNames) {
+            this.tracedHeaders = headerNames;
+            return this;
+        }
+
+        /**
+         * The values of these headers are replaced by "&lt;redacted&gt;" in traced
+         * headers and in the HEADERS attribute. Redacting "Cookie" also
+         * reduces the COOKIES attribute to the names of the cookies.
+         * @param headerNames the headers whose values are never tagged, e.g. "Authorization"
+         * @return Builder configured with added redacted headers
+         */
+        public Builder withRedactedHeaders(Set<String> headerNames) {
+            this.redactedHeaders = headerNames;
+            return this;
+        }
+
         /**
          * @param properties a set of request properties of the client request to tag 
          *  to spans created for client requests
@@ -139,17 +238,91 @@ public class ServerTracingFeature implements DynamicFeature {
             return this;
         }
 
+        /**
+         * @param operationName for spans created by this feature, unless
+         *  overridden by a @Trace annotation
+         * @return Builder configured with added operationName
+         */
         public Builder withOperationName(String operationName) {
             this.operationName = operationName;
             return this;
         }
 
+        /**
+         * @param operationNameStrategy names the spans of resource methods without
+         *  an operation name, once per method. Defaults to
+         *  StandardOperationNameStrategy.RESOURCE_CLASS
+         * @return Builder configured with added operationNameStrategy
+         */
+        public Builder withOperationNameStrategy(OperationNameStrategy operationNameStrategy) {
+            this.operationNameStrategy = operationNameStrategy;
+            return this;
+        }
+
+        /**
+         * By default, every request header is offered to the tracer to extract
+         * the parent span context from. If you know which headers your tracer
+         * uses (e.g. "ot-tracer-traceid", "ot-tracer-spanid" and
+         * "ot-tracer-sampled"), only those are then looked up.
+         * NOTE: baggage headers not in this set are not extracted.
+         * @param headerNames the headers to extract span contexts from
+         * @return Builder configured with added extracted headers
+         */
+        public Builder withExtractedHeaders(Set<String> headerNames) {
+            this.extractedHeaders = headerNames;
+            return this;
+        }
+
+        /**
+         * By default, all traced requests get a span. With a sampler, the
+         * sampler decides for each request whether to build a span, unless
+         * overridden by the sampleRate of a @Trace annotation. Requests that
+         * are not sampled only propagate the span context they were called with.
+         * @param sampler decides which requests to trace
+         * @return Builder configured with added sampler
+         */
+        public Builder withSampler(TracingSampler sampler) {
+            this.sampler = sampler;
+            return this;
+        }
+
+        /**
+         * By default, a span covers the request filters, the resource method
+         * and the response filters. With phase timings, each span is tagged
+         * with the time spent matching the request, in request filters, in
+         * the resource method, in response filters and writing the response
+         * entity, and is only finished once the response entity is written.
+         * @return Builder configured to time the phases of requests
+         */
+        public Builder withPhaseTimings() {
+            this.phaseTimings = true;
+            return this;
+        }
+
+        /**
+         * By default, the traced attributes, the decorator and the sampler are
+         * fixed when the feature is built. With a DynamicTracingPolicy, they
+         * are read from its current TracingPolicy on each request instead, and
+         * those set on this Builder are ignored. The sampleRate of a @Trace
+         * annotation is then the default rate of its operation: it applies
+         * unless the sampler of the current policy is a ProbabilisticSampler
+         * with a rate for that operation, e.g. set with TracingPolicyTask's
+         * sampleRate.[operation name], which takes precedence.
+         * @param policy to read the traced attributes, decorator and sampler from
+         * @return Builder configured with added policy
+         */
+        public Builder withPolicy(DynamicTracingPolicy policy) {
+            this.policy = policy;
+            return this;
+        }
+
         /**
          * @return ServerTracingFeature with the configuration of this Builder
          */
         public ServerTracingFeature build() {
-            return new ServerTracingFeature(this.tracer, this.operationName, 
-                this.tracedAttributes, this.tracedProperties, this.traceAll, this.decorator);
+            return new ServerTracingFeature(this.tracer, this.operationName, this.operationNameStrategy,
+                this.tracedAttributes, this.tracedHeaders, this.redactedHeaders, this.tracedProperties, this.traceAll, this.decorator,
+                this.extractedHeaders, this.sampler, this.phaseTimings, this.policy);
         }
     }
 }
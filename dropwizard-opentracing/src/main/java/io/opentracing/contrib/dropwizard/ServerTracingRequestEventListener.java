@@ -0,0 +1,106 @@
+package io.opentracing.contrib.dropwizard;
+
+import io.opentracing.Span;
+import io.opentracing.tag.Tags;
+import org.glassfish.jersey.server.model.ResourceMethod;
+import org.glassfish.jersey.server.monitoring.RequestEvent;
+import org.glassfish.jersey.server.monitoring.RequestEventListener;
+
+import javax.ws.rs.ServiceUnavailableException;
+import javax.ws.rs.container.ContainerRequestContext;
+
+/**
+ * Follows each request through Jersey, so that requests to asynchronous
+ * (@Suspended AsyncResponse) resource methods are traced as well as
+ * synchronous ones.
+ *
+ * The thread that runs the resource method is released as soon as the method
+ * returns, and the response is processed on whichever thread resumes the
+ * AsyncResponse, so the thread local request span is moved from the one to
+ * the other. Once the response is written (where CompletionCallbacks are
+ * called), the span is finished if the response filters didn't finish it,
+ * e.g. because of an unmapped exception or a dropped connection, and tagged
+ * as an error if the response could not be written.
+ *
+ * Requests to asynchronous resource methods that time out without a timeout
+ * handler are tagged with TIMEOUT_TAG. Requests whose response filters didn't
+ * run are counted in the operation metrics then as well.
+ *
+ * The listener keeps no per-request state, so a single instance is used for
+ * all requests.
+ */
+final class ServerTracingRequestEventListener implements RequestEventListener {
+
+    static final String TIMEOUT_TAG = "timeout";
+
+    private final DropWizardTracer tracer;
+
+    ServerTracingRequestEventListener(DropWizardTracer tracer) {
+        this.tracer = tracer;
+    }
+
+    @Override
+    public void onEvent(RequestEvent event) {
+        ContainerRequestContext request = event.getContainerRequest();
+        switch (event.getType()) {
+            case RESOURCE_METHOD_FINISHED:
+                // an asynchronous request resumes on another thread
+                ServerTracingFeature.threadLocalRequestSpan.set(null);
+                ServerTracingFeature.threadLocalUnsampledContext.set(null);
+                break;
+            case RESP_FILTERS_START:
+                ServerTracingFeature.threadLocalRequestSpan.set(this.tracer.getSpan(request));
+                ServerTracingFeature.threadLocalUnsampledContext.set(this.tracer.getUnsampledSpanContext(request.getRequest()));
+                break;
+            case ON_EXCEPTION:
+                if (isTimeout(event)) {
+                    Span timedOutSpan = this.tracer.getSpan(request);
+                    if (timedOutSpan != null) {
+                        timedOutSpan.setTag(TIMEOUT_TAG, true);
+                    }
+                }
+                break;
+            case FINISHED:
+                OperationMetrics.Timing timing = (OperationMetrics.Timing) request.getProperty(OperationMetrics.PROPERTY);
+                if (timing != null) {
+                    // the response filters didn't run
+                    request.removeProperty(OperationMetrics.PROPERTY);
+                    timing.stop(!event.isSuccess() || event.getContainerResponse() == null
+                        || event.getContainerResponse().getStatus() >= 500);
+                }
+                Span span = this.tracer.getSpan(request);
+                if (span != null) {
+                    // the response filters didn't run, the response entity wasn't
+                    // closed, or the request's phases are timed
+                    if (!event.isSuccess()) {
+                        Tags.ERROR.set(span, true);
+                    }
+                    EntityStreamTracker tracker = (EntityStreamTracker) request.getProperty(EntityStreamTracker.PROPERTY);
+                    if (tracker != null) {
+                        tracker.tag();
+                    }
+                    this.tracer.finishServerSpan(request);
+                }
+                ServerTracingFeature.threadLocalRequestSpan.set(null);
+                ServerTracingFeature.threadLocalUnsampledContext.set(null);
+                break;
+            default:
+                break;
+        }
+    }
+
+    /**
+     * @return whether this exception is the one Jersey resumes a suspended
+     *  request with when it times out
+     */
+    private static boolean isTimeout(RequestEvent event) {
+        ResourceMethod method = event.getUriInfo().getMatchedResourceMethod();
+        if (method == null || !method.isSuspendDeclared()) {
+            return false;
+        }
+        Throwable exception = event.getException();
+        // Jersey wraps the exception in a MappableException
+        return exception instanceof ServiceUnavailableException
+            || (exception != null && exception.getCause() instanceof ServiceUnavailableException);
+    }
+}
@@ -0,0 +1,82 @@
+package io.opentracing.contrib.dropwizard;
+
+import java.lang.annotation.Annotation;
+import java.lang.reflect.Method;
+import javax.ws.rs.HttpMethod;
+import javax.ws.rs.Path;
+import javax.ws.rs.container.ResourceInfo;
+
+/**
+ * The OperationNameStrategies provided with DropWizard-OpenTracing.
+ */
+public enum StandardOperationNameStrategy implements OperationNameStrategy {
+
+    /**
+     * The simple name of the resource class, e.g. "UserResource"
+     */
+    RESOURCE_CLASS {
+        @Override
+        public String getOperationName(ResourceInfo resourceInfo) {
+            return resourceInfo.getResourceClass().getSimpleName();
+        }
+    },
+
+    /**
+     * The simple name of the resource class and the name of the resource
+     * method, e.g. "UserResource.getUser"
+     */
+    CLASS_AND_METHOD {
+        @Override
+        public String getOperationName(ResourceInfo resourceInfo) {
+            return resourceInfo.getResourceClass().getSimpleName() + "."
+                + resourceInfo.getResourceMethod().getName();
+        }
+    },
+
+    /**
+     * The HTTP method and the @Path template of the resource method,
+     * e.g. "GET /users/{id}"
+     */
+    HTTP_METHOD_AND_PATH {
+        @Override
+        public String getOperationName(ResourceInfo resourceInfo) {
+            Method method = resourceInfo.getResourceMethod();
+            StringBuilder path = new StringBuilder();
+            appendPath(path, resourceInfo.getResourceClass().getAnnotation(Path.class));
+            appendPath(path, method.getAnnotation(Path.class));
+            if (path.length() == 0) {
+                path.append('/');
+            }
+            String httpMethod = httpMethod(method);
+            return httpMethod == null ? path.toString() : httpMethod + " " + path;
+        }
+    };
+
+    private static void appendPath(StringBuilder builder, Path path) {
+        if (path == null) {
+            return;
+        }
+        String value = path.value();
+        int start = 0;
+        int end = value.length();
+        while (start < end && value.charAt(start) == '/') {
+            start++;
+        }
+        while (end > start && value.charAt(end - 1) == '/') {
+            end--;
+        }
+        if (start < end) {
+            builder.append('/').append(value, start, end);
+        }
+    }
+
+    private static String httpMethod(Method method) {
+        for (Annotation annotation : method.getAnnotations()) {
+            HttpMethod httpMethod = annotation.annotationType().getAnnotation(HttpMethod.class);
+            if (httpMethod != null) {
+                return httpMethod.value();
+            }
+        }
+        return null;
+    }
+}
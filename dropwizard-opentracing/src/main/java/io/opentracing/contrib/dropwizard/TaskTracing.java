@@ -0,0 +1,256 @@
+package io.opentracing.contrib.dropwizard;
+
+import com.codahale.metrics.MetricRegistry;
+import com.codahale.metrics.Timer;
+import io.opentracing.Span;
+import io.opentracing.SpanContext;
+import io.opentracing.Tracer;
+
+import java.util.concurrent.Callable;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Traces each task run by a TracedExecutorService or a
+ * TracedScheduledExecutorService built with it, with a span starting when
+ * the task was submitted (or, for scheduled tasks, when it was due), and
+ * tagged with:
+ *
+ * - "Queue Wait Micros": from submitting the task (or when it was due) to
+ *   a thread of the executor starting it
+ * - "Execution Micros": running the task
+ *
+ * Tasks submitted while a traced request is processed follow its sampling
+ * decision; with withRequestParent(), their spans are children of its span.
+ * Other tasks, and every run of a periodic task, are traced if sampled.
+ * While a task runs, its span is the request span of the thread, so client
+ * requests it makes continue its trace.
+ *
+ * If the DropWizardTracer keeps metrics, the queue wait and execution time
+ * of every task, traced or not, are also timed with Timers named
+ * "[operation name].queue-wait" and "[operation name].execution", prefixed
+ * with "io.opentracing.contrib.dropwizard.DropWizardTracer.task", the
+ * operation name being sanitized as for request metrics.
+ */
+public final class TaskTracing {
+
+    private final DropWizardTracer tracer;
+    private final String operationName;
+    private final boolean requestParent;
+    private final TracingSampler sampler;
+    private final Timer queueWaits;
+    private final Timer executions;
+
+    private TaskTracing(DropWizardTracer tracer, String operationName, boolean requestParent,
+            TracingSampler sampler) {
+        this.tracer = tracer;
+        this.operationName = operationName;
+        this.requestParent = requestParent;
+        this.sampler = sampler;
+        MetricRegistry metricRegistry = tracer.getMetricRegistry();
+        if (metricRegistry == null) {
+            this.queueWaits = null;
+            this.executions = null;
+        } else {
+            String prefix = MetricRegistry.name(DropWizardTracer.class, "task",
+                OperationMetrics.metricName(operationName));
+            this.queueWaits = metricRegistry.timer(MetricRegistry.name(prefix, "queue-wait"));
+            this.executions = metricRegistry.timer(MetricRegistry.name(prefix, "execution"));
+        }
+    }
+
+    public static class Builder {
+
+        private final DropWizardTracer tracer;
+        private final String operationName;
+        private boolean requestParent;
+        private TracingSampler sampler;
+
+        /**
+         * @param tracer to trace the tasks with
+         * @param operationName for the spans of the tasks, e.g. the name of
+         *  the executor
+         */
+        public Builder(DropWizardTracer tracer, String operationName) {
+            this.tracer = tracer;
+            this.operationName = operationName;
+            this.requestParent = false;
+        }
+
+        /**
+         * Makes the spans of tasks submitted while a traced request is
+         * processed children of the span of that request, found with
+         * ServerTracingFeature.getThreadLocalRequestSpan(). By default,
+         * their spans start new traces.
+         * @return Builder configured to parent tasks to the submitting request
+         */
+        public Builder withRequestParent() {
+            this.requestParent = true;
+            return this;
+        }
+
+        /**
+         * By default, all tasks get a span. With a sampler, tasks that are
+         * not submitted while a traced request is processed are only traced
+         * if sampled.
+         * @param sampler decides which tasks to trace
+         * @return Builder configured with added sampler
+         */
+        public Builder withSampler(TracingSampler sampler) {
+            this.sampler = sampler;
+            return this;
+        }
+
+        /**
+         * @return TaskTracing with the configuration of this Builder
+         */
+        public TaskTracing build() {
+            return new TaskTracing(this.tracer, this.operationName, this.requestParent, this.sampler);
+        }
+    }
+
+    /**
+     * @param task submitted now
+     * @return a Runnable tracing task
+     */
+    Runnable wrap(Runnable task) {
+        return wrap(task, 0, 0);
+    }
+
+    /**
+     * @param task submitted now
+     * @return a Callable tracing task
+     */
+    <V> Callable<V> wrap(Callable<V> task) {
+        return wrap(task, 0);
+    }
+
+    /**
+     * @param task scheduled now
+     * @param delayNanos until the first run of task
+     * @param periodNanos between the starts of runs of task if positive,
+     *  between the end of a run and the start of the next if negative, or 0
+     *  if task is run once
+     * @return a Runnable tracing task
+     */
+    Runnable wrap(final Runnable task, long delayNanos, long periodNanos) {
+        if (task instanceof TracedTask) {
+            return task;
+        }
+        return new TracedTask<Void>(delayNanos, periodNanos) {
+            @Override
+            Void execute() {
+                task.run();
+                return null;
+            }
+        };
+    }
+
+    /**
+     * @param task scheduled now
+     * @param delayNanos until task is run
+     * @return a Callable tracing task
+     */
+    <V> Callable<V> wrap(final Callable<V> task, long delayNanos) {
+        if (task instanceof TracedTask) {
+            return task;
+        }
+        return new TracedTask<V>(delayNanos, 0) {
+            @Override
+            V execute() throws Exception {
+                return task.call();
+            }
+        };
+    }
+
+    /**
+     * A task traced each time it is run.
+     */
+    private abstract class TracedTask<V> implements Runnable, Callable<V> {
+
+        private final Span requestSpan;
+        private final SpanContext unsampledContext;
+        private final long periodNanos;
+        private long dueNanos;
+
+        TracedTask(long delayNanos, long periodNanos) {
+            this.requestSpan = ServerTracingFeature.threadLocalRequestSpan.get();
+            this.unsampledContext = ServerTracingFeature.threadLocalUnsampledContext.get();
+            this.periodNanos = periodNanos;
+            this.dueNanos = System.nanoTime() + delayNanos;
+        }
+
+        abstract V execute() throws Exception;
+
+        @Override
+        public void run() {
+            try {
+                call();
+            } catch (RuntimeException e) {
+                throw e;
+            } catch (Exception e) {
+                // execute() of a Runnable throws no checked exception
+                throw new IllegalStateException(e);
+            }
+        }
+
+        @Override
+        public V call() throws Exception {
+            long startNanos = System.nanoTime();
+            long queueWaitNanos = Math.max(startNanos - this.dueNanos, 0);
+            if (queueWaits != null) {
+                queueWaits.update(queueWaitNanos, TimeUnit.NANOSECONDS);
+            }
+
+            // periodic runs are not part of the request that scheduled them
+            Span parentSpan = this.periodNanos == 0 ? this.requestSpan : null;
+            SpanContext unsampledContext = this.periodNanos == 0 ? this.unsampledContext : null;
+            Span span = null;
+            if (parentSpan != null
+                    || (unsampledContext == null && (sampler == null || sampler.sample(operationName)))) {
+                Tracer.SpanBuilder spanBuilder = tracer.getTracer().buildSpan(operationName)
+                    .withStartTimestamp(TimeUnit.MILLISECONDS.toMicros(System.currentTimeMillis())
+                        - TimeUnit.NANOSECONDS.toMicros(queueWaitNanos));
+                if (parentSpan != null && requestParent) {
+                    spanBuilder = spanBuilder.asChildOf(parentSpan.context());
+                }
+                span = spanBuilder.start();
+                span.setTag("Queue Wait Micros", TimeUnit.NANOSECONDS.toMicros(queueWaitNanos));
+                unsampledContext = null;
+            }
+
+            Span previousSpan = ServerTracingFeature.threadLocalRequestSpan.get();
+            SpanContext previousContext = ServerTracingFeature.threadLocalUnsampledContext.get();
+            ServerTracingFeature.threadLocalRequestSpan.set(span);
+            ServerTracingFeature.threadLocalUnsampledContext.set(unsampledContext);
+            try {
+                return execute();
+            } catch (Exception e) {
+                if (span != null) {
+                    SpanTags.setError(span, e);
+                }
+                throw e;
+            } catch (Error e) {
+                if (span != null) {
+                    SpanTags.setError(span, e);
+                }
+                throw e;
+            } finally {
+                ServerTracingFeature.threadLocalRequestSpan.set(previousSpan);
+                ServerTracingFeature.threadLocalUnsampledContext.set(previousContext);
+                long endNanos = System.nanoTime();
+                if (executions != null) {
+                    executions.update(endNanos - startNanos, TimeUnit.NANOSECONDS);
+                }
+                if (span != null) {
+                    span.setTag("Execution Micros", TimeUnit.NANOSECONDS.toMicros(endNanos - startNanos));
+                    span.finish();
+                }
+                if (this.periodNanos > 0) {
+                    this.dueNanos += this.periodNanos;
+                } else if (this.periodNanos < 0) {
+                    this.dueNanos = endNanos - this.periodNanos;
+                }
+            }
+        }
+    }
+}
@@ -14,9 +14,18 @@ import java.lang.annotation.Target;
  *  then all spans created for requests to the
  *  annotated resource method will have the 
  *  specified operationName
+ *
+ * If you pass in a sample rate such as
+ *      Trace(sampleRate=0.01)
+ *  then only that fraction of the requests to the
+ *  annotated resource method will be traced, whatever
+ *  TracingSampler the ServerTracingFeature is built with.
+ *  With a DynamicTracingPolicy, a rate the policy sets
+ *  for the operation takes precedence
  */
 @Retention(RetentionPolicy.RUNTIME)
 @Target(ElementType.METHOD)
 public @interface Trace {
     String operationName() default "";
+    double sampleRate() default -1;
 }
\ No newline at end of file
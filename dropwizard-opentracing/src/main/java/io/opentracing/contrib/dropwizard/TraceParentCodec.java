@@ -0,0 +1,354 @@
+package io.opentracing.contrib.dropwizard;
+
+import io.opentracing.SpanContext;
+import io.opentracing.Tracer;
+import io.opentracing.propagation.Format;
+import io.opentracing.propagation.TextMap;
+
+import javax.ws.rs.core.MultivaluedMap;
+import java.util.Iterator;
+import java.util.Map;
+import java.util.NoSuchElementException;
+
+/**
+ * Propagates span contexts between services traced by DropWizardTracers
+ * built with it in a single header of fixed width, in the format of the W3C
+ * traceparent header:
+ *
+ *      00-[32 hex digits of trace id]-[16 hex digits of span id]-[2 hex digits of flags]
+ *
+ * instead of the headers of the tracer. The tracer still injects and
+ * extracts span contexts: the values it injects in its trace id, span id and
+ * sampled headers are packed into the traceparent header, and unpacked into
+ * those headers for it to extract. Other headers it injects, e.g. baggage,
+ * are sent as they are.
+ *
+ * Ids are sent as they are injected by the tracer, left-padded with zeros,
+ * so they must be hex. If they aren't, the headers of the tracer are sent
+ * instead. Requests without a traceparent header are extracted from the
+ * headers of the tracer, so services that don't use this codec can still
+ * call services that do.
+ */
+public final class TraceParentCodec {
+
+    /**
+     * The name of the header by default.
+     */
+    public static final String TRACE_PARENT = "traceparent";
+
+    private static final int TRACE_ID_OFFSET = 3;
+    private static final int TRACE_ID_LENGTH = 32;
+    private static final int SPAN_ID_OFFSET = TRACE_ID_OFFSET + TRACE_ID_LENGTH + 1;
+    private static final int SPAN_ID_LENGTH = 16;
+    private static final int FLAGS_OFFSET = SPAN_ID_OFFSET + SPAN_ID_LENGTH + 1;
+    private static final int LENGTH = FLAGS_OFFSET + 2;
+
+    private final String headerName;
+    private final String traceIdHeader;
+    private final String spanIdHeader;
+    private final String sampledHeader;
+    private final String sampledValue;
+    private final String unsampledValue;
+
+    private TraceParentCodec(String headerName, String traceIdHeader, String spanIdHeader,
+            String sampledHeader, String sampledValue, String unsampledValue) {
+        this.headerName = headerName;
+        this.traceIdHeader = traceIdHeader;
+        this.spanIdHeader = spanIdHeader;
+        this.sampledHeader = sampledHeader;
+        this.sampledValue = sampledValue;
+        this.unsampledValue = unsampledValue;
+    }
+
+    public static class Builder {
+
+        private final String traceIdHeader;
+        private final String spanIdHeader;
+        private String headerName;
+        private String sampledHeader;
+        private String sampledValue;
+        private String unsampledValue;
+
+        /**
+         * @param traceIdHeader the header the tracer injects the trace id in,
+         *  e.g. "ot-tracer-traceid" or "X-B3-TraceId"
+         * @param spanIdHeader the header the tracer injects the span id in,
+         *  e.g. "ot-tracer-spanid" or "X-B3-SpanId"
+         */
+        public Builder(String traceIdHeader, String spanIdHeader) {
+            this.traceIdHeader = traceIdHeader;
+            this.spanIdHeader = spanIdHeader;
+            this.headerName = TRACE_PARENT;
+        }
+
+        /**
+         * @param headerName the header to send span contexts in, "traceparent" by default
+         * @return Builder configured with added headerName
+         */
+        public Builder withHeaderName(String headerName) {
+            this.headerName = headerName;
+            return this;
+        }
+
+        /**
+         * By default, span contexts are always sent as sampled, and the
+         * tracer extracts them without a sampled header.
+         * @param sampledHeader the header the tracer injects whether the span
+         *  is sampled in, e.g. "ot-tracer-sampled" or "X-B3-Sampled"
+         * @param sampledValue its value for sampled spans, e.g. "true" or "1"
+         * @param unsampledValue its value for other spans, e.g. "false" or "0"
+         * @return Builder configured with added sampled header
+         */
+        public Builder withSampledHeader(String sampledHeader, String sampledValue, String unsampledValue) {
+            this.sampledHeader = sampledHeader;
+            this.sampledValue = sampledValue;
+            this.unsampledValue = unsampledValue;
+            return this;
+        }
+
+        /**
+         * @return TraceParentCodec with the configuration of this Builder
+         */
+        public TraceParentCodec build() {
+            return new TraceParentCodec(this.headerName, this.traceIdHeader, this.spanIdHeader,
+                this.sampledHeader, this.sampledValue, this.unsampledValue);
+        }
+    }
+
+    /**
+     * Injects spanContext with tracer, in a traceparent header if possible.
+     * @param tracer to inject spanContext with
+     * @param spanContext to inject
+     * @param headers the headers of the client request
+     */
+    void inject(Tracer tracer, SpanContext spanContext, MultivaluedMap<String, Object> headers) {
+        InjectAdapter adapter = new InjectAdapter(headers);
+        tracer.inject(spanContext, Format.Builtin.HTTP_HEADERS, adapter);
+        adapter.flush();
+    }
+
+    /**
+     * @param headers the headers of the server request
+     * @param headerNames the only headers to extract from besides the
+     *  traceparent header, or null to extract from all headers
+     * @return a TextMap for Tracer.extract() reading the traceparent header,
+     *  if any, as the headers of the tracer, and then the other headers
+     */
+    TextMap extractAdapter(MultivaluedMap<String, String> headers, String[] headerNames) {
+        HeadersExtractAdapter headersAdapter = new HeadersExtractAdapter(headers, headerNames);
+        String traceParent = headers.getFirst(this.headerName);
+        if (traceParent == null || !isValid(traceParent)) {
+            return headersAdapter;
+        }
+        return new ExtractAdapter(traceParent, headersAdapter);
+    }
+
+    private static boolean isValid(String traceParent) {
+        // later versions may append fields
+        if (traceParent.length() < LENGTH
+                || (traceParent.length() > LENGTH && traceParent.charAt(LENGTH) != '-')
+                || traceParent.charAt(TRACE_ID_OFFSET - 1) != '-'
+                || traceParent.charAt(SPAN_ID_OFFSET - 1) != '-'
+                || traceParent.charAt(FLAGS_OFFSET - 1) != '-'
+                || traceParent.startsWith("ff")) {
+            return false;
+        }
+        return isHex(traceParent, 0, 2)
+            && isHex(traceParent, TRACE_ID_OFFSET, TRACE_ID_LENGTH)
+            && isHex(traceParent, SPAN_ID_OFFSET, SPAN_ID_LENGTH)
+            && isHex(traceParent, FLAGS_OFFSET, 2)
+            && !isZero(traceParent, TRACE_ID_OFFSET, TRACE_ID_LENGTH)
+            && !isZero(traceParent, SPAN_ID_OFFSET, SPAN_ID_LENGTH);
+    }
+
+    private static boolean isHex(CharSequence chars, int offset, int length) {
+        for (int i = offset; i < offset + length; i++) {
+            char c = chars.charAt(i);
+            if ((c < '0' || c > '9') && (c < 'a' || c > 'f') && (c < 'A' || c > 'F')) {
+                return false;
+            }
+        }
+        return true;
+    }
+
+    private static boolean isZero(CharSequence chars, int offset, int length) {
+        for (int i = offset; i < offset + length; i++) {
+            if (chars.charAt(i) != '0') {
+                return false;
+            }
+        }
+        return true;
+    }
+
+    /**
+     * Collects the ids and sampled flag the tracer injects, and puts the
+     * other headers it injects as they are.
+     */
+    private final class InjectAdapter implements TextMap {
+
+        private final MultivaluedMap<String, Object> headers;
+        private String traceId;
+        private String spanId;
+        private String sampled;
+
+        InjectAdapter(MultivaluedMap<String, Object> headers) {
+            this.headers = headers;
+        }
+
+        @Override
+        public void put(String key, String value) {
+            if (key.equalsIgnoreCase(traceIdHeader)) {
+                this.traceId = value;
+            } else if (key.equalsIgnoreCase(spanIdHeader)) {
+                this.spanId = value;
+            } else if (sampledHeader != null && key.equalsIgnoreCase(sampledHeader)) {
+                this.sampled = value;
+            } else {
+                this.headers.putSingle(key, value);
+            }
+        }
+
+        @Override
+        public Iterator<Map.Entry<String, String>> iterator() {
+            throw new UnsupportedOperationException("iterator should never be used with Tracer.inject()");
+        }
+
+        /**
+         * Puts the traceparent header, or the headers of the tracer if its
+         * ids can't be packed in it.
+         */
+        void flush() {
+            if (this.traceId != null && this.spanId != null
+                    && !this.traceId.isEmpty() && !this.spanId.isEmpty()
+                    && this.traceId.length() <= TRACE_ID_LENGTH && isHex(this.traceId, 0, this.traceId.length())
+                    && this.spanId.length() <= SPAN_ID_LENGTH && isHex(this.spanId, 0, this.spanId.length())) {
+                char[] traceParent = new char[LENGTH];
+                traceParent[0] = '0';
+                traceParent[1] = '0';
+                traceParent[TRACE_ID_OFFSET - 1] = '-';
+                pad(this.traceId, traceParent, TRACE_ID_OFFSET, TRACE_ID_LENGTH);
+                traceParent[SPAN_ID_OFFSET - 1] = '-';
+                pad(this.spanId, traceParent, SPAN_ID_OFFSET, SPAN_ID_LENGTH);
+                traceParent[FLAGS_OFFSET - 1] = '-';
+                boolean isSampled = this.sampled == null || this.sampled.equalsIgnoreCase(sampledValue);
+                traceParent[FLAGS_OFFSET] = '0';
+                traceParent[FLAGS_OFFSET + 1] = isSampled ? '1' : '0';
+                this.headers.putSingle(headerName, new String(traceParent));
+                return;
+            }
+            if (this.traceId != null) {
+                this.headers.putSingle(traceIdHeader, this.traceId);
+            }
+            if (this.spanId != null) {
+                this.headers.putSingle(spanIdHeader, this.spanId);
+            }
+            if (this.sampled != null) {
+                this.headers.putSingle(sampledHeader, this.sampled);
+            }
+        }
+
+        private void pad(String id, char[] chars, int offset, int length) {
+            int padding = length - id.length();
+            for (int i = 0; i < padding; i++) {
+                chars[offset + i] = '0';
+            }
+            for (int i = 0; i < id.length(); i++) {
+                chars[offset + padding + i] = Character.toLowerCase(id.charAt(i));
+            }
+        }
+    }
+
+    /**
+     * Iterates over the ids and sampled flag of a traceparent header, as the
+     * headers of the tracer, and then over the other headers (e.g. baggage).
+     * Like HeadersExtractAdapter, it reuses one Map.Entry.
+     */
+    private final class ExtractAdapter implements TextMap, Iterator<Map.Entry<String, String>>,
+            Map.Entry<String, String> {
+
+        private final String traceParent;
+        private final HeadersExtractAdapter headers;
+        private final int decodedHeaders;
+        private int index;
+        private Iterator<Map.Entry<String, String>> otherHeaders;
+        private String key;
+        private String value;
+
+        ExtractAdapter(String traceParent, HeadersExtractAdapter headers) {
+            this.traceParent = traceParent;
+            this.headers = headers;
+            this.decodedHeaders = sampledHeader == null ? 2 : 3;
+        }
+
+        @Override
+        public Iterator<Map.Entry<String, String>> iterator() {
+            return this;
+        }
+
+        @Override
+        public void put(String key, String value) {
+            throw new UnsupportedOperationException("put should never be used with Tracer.extract()");
+        }
+
+        @Override
+        public boolean hasNext() {
+            if (this.index < this.decodedHeaders) {
+                return true;
+            }
+            if (this.otherHeaders == null) {
+                this.otherHeaders = this.headers.iterator();
+            }
+            return this.otherHeaders.hasNext();
+        }
+
+        @Override
+        public Map.Entry<String, String> next() {
+            if (this.index >= this.decodedHeaders) {
+                if (!hasNext()) {
+                    throw new NoSuchElementException();
+                }
+                return this.otherHeaders.next();
+            }
+            switch (this.index++) {
+                case 0:
+                    // 64 bit trace ids are sent in the low half
+                    int offset = isZero(this.traceParent, TRACE_ID_OFFSET, TRACE_ID_LENGTH / 2)
+                        ? TRACE_ID_OFFSET + TRACE_ID_LENGTH / 2
+                        : TRACE_ID_OFFSET;
+                    this.key = traceIdHeader;
+                    this.value = this.traceParent.substring(offset, TRACE_ID_OFFSET + TRACE_ID_LENGTH);
+                    return this;
+                case 1:
+                    this.key = spanIdHeader;
+                    this.value = this.traceParent.substring(SPAN_ID_OFFSET, SPAN_ID_OFFSET + SPAN_ID_LENGTH);
+                    return this;
+                default:
+                    this.key = sampledHeader;
+                    this.value = (Character.digit(this.traceParent.charAt(FLAGS_OFFSET + 1), 16) & 1) == 1
+                        ? sampledValue
+                        : unsampledValue;
+                    return this;
+            }
+        }
+
+        @Override
+        public void remove() {
+            throw new UnsupportedOperationException();
+        }
+
+        @Override
+        public String getKey() {
+            return this.key;
+        }
+
+        @Override
+        public String getValue() {
+            return this.value;
+        }
+
+        @Override
+        public String setValue(String value) {
+            throw new UnsupportedOperationException();
+        }
+    }
+}
@@ -0,0 +1,49 @@
+package io.opentracing.contrib.dropwizard;
+
+import org.glassfish.jersey.client.ClientAsyncExecutor;
+import org.glassfish.jersey.spi.ExecutorServiceProvider;
+
+import java.util.concurrent.ExecutorService;
+
+/**
+ * Runs the asynchronous invocations of a client (AsyncInvoker) with the
+ * request span of the thread that made them, like a TracedExecutorService.
+ *
+ * Jersey runs the client filters of an asynchronous invocation, and its
+ * InvocationCallback, on a thread of its client async executor, where the
+ * request span of the thread that made the invocation is not set. Client
+ * spans of a ClientTracingFeature built withActiveRequest() would then
+ * start new traces. Register this provider to the client to fix that, e.g.
+ *
+ *      client.register(new TracedAsyncExecutorProvider(Executors.newFixedThreadPool(8)));
+ *
+ * With Dropwizard's JerseyClientBuilder, pass a TracedExecutorService to
+ * JerseyClientBuilder.using(ExecutorService) instead.
+ *
+ * Reactive (rx()) invocations are not run on this executor, but on the one
+ * the reactive client is created with: create it with a TracedExecutorService,
+ * e.g. RxListenableFuture.from(client, new TracedExecutorService(executor)).
+ */
+@ClientAsyncExecutor
+public class TracedAsyncExecutorProvider implements ExecutorServiceProvider {
+
+    private final ExecutorService executor;
+
+    /**
+     * @param executor to run the asynchronous invocations, shut down when
+     *  the client is closed
+     */
+    public TracedAsyncExecutorProvider(ExecutorService executor) {
+        this.executor = new TracedExecutorService(executor);
+    }
+
+    @Override
+    public ExecutorService getExecutorService() {
+        return this.executor;
+    }
+
+    @Override
+    public void dispose(ExecutorService executorService) {
+        executorService.shutdown();
+    }
+}
@@ -0,0 +1,54 @@
+package io.opentracing.contrib.dropwizard;
+
+import io.opentracing.Span;
+import io.opentracing.SpanContext;
+
+import java.util.concurrent.Callable;
+
+/**
+ * Calls a Callable with the request span of the thread that created it, so
+ * that ServerTracingFeature.getThreadLocalRequestSpan() (and client requests
+ * continuing the trace) work on the thread the Callable is called on.
+ *
+ * Use TracedCallable.wrap() or a TracedExecutorService to create them.
+ */
+public final class TracedCallable<V> implements Callable<V> {
+
+    private final Callable<V> delegate;
+    private final Span span;
+    private final SpanContext unsampledContext;
+
+    private TracedCallable(Callable<V> delegate, Span span, SpanContext unsampledContext) {
+        this.delegate = delegate;
+        this.span = span;
+        this.unsampledContext = unsampledContext;
+    }
+
+    /**
+     * @param task to call with the request span of the calling thread
+     * @return a Callable calling task with the request span of the calling
+     *  thread, or task itself if the calling thread has no request span
+     */
+    public static <V> Callable<V> wrap(Callable<V> task) {
+        Span span = ServerTracingFeature.threadLocalRequestSpan.get();
+        SpanContext unsampledContext = ServerTracingFeature.threadLocalUnsampledContext.get();
+        if ((span == null && unsampledContext == null) || task instanceof TracedCallable) {
+            return task;
+        }
+        return new TracedCallable<V>(task, span, unsampledContext);
+    }
+
+    @Override
+    public V call() throws Exception {
+        Span previousSpan = ServerTracingFeature.threadLocalRequestSpan.get();
+        SpanContext previousContext = ServerTracingFeature.threadLocalUnsampledContext.get();
+        ServerTracingFeature.threadLocalRequestSpan.set(this.span);
+        ServerTracingFeature.threadLocalUnsampledContext.set(this.unsampledContext);
+        try {
+            return this.delegate.call();
+        } finally {
+            ServerTracingFeature.threadLocalRequestSpan.set(previousSpan);
+            ServerTracingFeature.threadLocalUnsampledContext.set(previousContext);
+        }
+    }
+}
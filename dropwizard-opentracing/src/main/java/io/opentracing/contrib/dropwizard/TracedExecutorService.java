@@ -0,0 +1,132 @@
+package io.opentracing.contrib.dropwizard;
+
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.List;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Future;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.TimeoutException;
+
+/**
+ * An ExecutorService running each task with the request span of the thread
+ * that submitted it (see TracedRunnable and TracedCallable).
+ *
+ * Tasks submitted from threads without a request span are passed on as they
+ * are, so wrapping an executor costs nothing when requests aren't traced.
+ *
+ * Built with a TaskTracing, it traces each task with its own span instead,
+ * tagged with the time the task waited in the queue of the executor.
+ */
+public class TracedExecutorService implements ExecutorService {
+
+    private final ExecutorService delegate;
+    final TaskTracing taskTracing;
+
+    /**
+     * @param delegate the executor to run the tasks
+     */
+    public TracedExecutorService(ExecutorService delegate) {
+        this(delegate, null);
+    }
+
+    /**
+     * @param delegate the executor to run the tasks
+     * @param taskTracing to trace each task with, or null to only run the
+     *  tasks with the request span of the thread that submitted them
+     */
+    public TracedExecutorService(ExecutorService delegate, TaskTracing taskTracing) {
+        this.delegate = delegate;
+        this.taskTracing = taskTracing;
+    }
+
+    @Override
+    public void execute(Runnable command) {
+        this.delegate.execute(wrap(command));
+    }
+
+    @Override
+    public Future<?> submit(Runnable task) {
+        return this.delegate.submit(wrap(task));
+    }
+
+    @Override
+    public <T> Future<T> submit(Runnable task, T result) {
+        return this.delegate.submit(wrap(task), result);
+    }
+
+    @Override
+    public <T> Future<T> submit(Callable<T> task) {
+        return this.delegate.submit(wrap(task));
+    }
+
+    @Override
+    public <T> List<Future<T>> invokeAll(Collection<? extends Callable<T>> tasks) throws InterruptedException {
+        return this.delegate.invokeAll(wrap(tasks));
+    }
+
+    @Override
+    public <T> List<Future<T>> invokeAll(Collection<? extends Callable<T>> tasks, long timeout, TimeUnit unit)
+            throws InterruptedException {
+        return this.delegate.invokeAll(wrap(tasks), timeout, unit);
+    }
+
+    @Override
+    public <T> T invokeAny(Collection<? extends Callable<T>> tasks)
+            throws InterruptedException, ExecutionException {
+        return this.delegate.invokeAny(wrap(tasks));
+    }
+
+    @Override
+    public <T> T invokeAny(Collection<? extends Callable<T>> tasks, long timeout, TimeUnit unit)
+            throws InterruptedException, ExecutionException, TimeoutException {
+        return this.delegate.invokeAny(wrap(tasks), timeout, unit);
+    }
+
+    @Override
+    public void shutdown() {
+        this.delegate.shutdown();
+    }
+
+    @Override
+    public List<Runnable> shutdownNow() {
+        return this.delegate.shutdownNow();
+    }
+
+    @Override
+    public boolean isShutdown() {
+        return this.delegate.isShutdown();
+    }
+
+    @Override
+    public boolean isTerminated() {
+        return this.delegate.isTerminated();
+    }
+
+    @Override
+    public boolean awaitTermination(long timeout, TimeUnit unit) throws InterruptedException {
+        return this.delegate.awaitTermination(timeout, unit);
+    }
+
+    private Runnable wrap(Runnable task) {
+        return this.taskTracing == null ? TracedRunnable.wrap(task) : this.taskTracing.wrap(task);
+    }
+
+    private <T> Callable<T> wrap(Callable<T> task) {
+        return this.taskTracing == null ? TracedCallable.wrap(task) : this.taskTracing.wrap(task);
+    }
+
+    private <T> Collection<? extends Callable<T>> wrap(Collection<? extends Callable<T>> tasks) {
+        if (this.taskTracing == null && ServerTracingFeature.threadLocalRequestSpan.get() == null
+                && ServerTracingFeature.threadLocalUnsampledContext.get() == null) {
+            return tasks;
+        }
+        List<Callable<T>> wrapped = new ArrayList<Callable<T>>(tasks.size());
+        for (Callable<T> task : tasks) {
+            wrapped.add(wrap(task));
+        }
+        return wrapped;
+    }
+}
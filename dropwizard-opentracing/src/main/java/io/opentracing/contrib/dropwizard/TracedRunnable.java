@@ -0,0 +1,52 @@
+package io.opentracing.contrib.dropwizard;
+
+import io.opentracing.Span;
+import io.opentracing.SpanContext;
+
+/**
+ * Runs a Runnable with the request span of the thread that created it, so
+ * that ServerTracingFeature.getThreadLocalRequestSpan() (and client requests
+ * continuing the trace) work on the thread the Runnable is run on.
+ *
+ * Use TracedRunnable.wrap() or a TracedExecutorService to create them.
+ */
+public final class TracedRunnable implements Runnable {
+
+    private final Runnable delegate;
+    private final Span span;
+    private final SpanContext unsampledContext;
+
+    private TracedRunnable(Runnable delegate, Span span, SpanContext unsampledContext) {
+        this.delegate = delegate;
+        this.span = span;
+        this.unsampledContext = unsampledContext;
+    }
+
+    /**
+     * @param task to run with the request span of the calling thread
+     * @return a Runnable running task with the request span of the calling
+     *  thread, or task itself if the calling thread has no request span
+     */
+    public static Runnable wrap(Runnable task) {
+        Span span = ServerTracingFeature.threadLocalRequestSpan.get();
+        SpanContext unsampledContext = ServerTracingFeature.threadLocalUnsampledContext.get();
+        if ((span == null && unsampledContext == null) || task instanceof TracedRunnable) {
+            return task;
+        }
+        return new TracedRunnable(task, span, unsampledContext);
+    }
+
+    @Override
+    public void run() {
+        Span previousSpan = ServerTracingFeature.threadLocalRequestSpan.get();
+        SpanContext previousContext = ServerTracingFeature.threadLocalUnsampledContext.get();
+        ServerTracingFeature.threadLocalRequestSpan.set(this.span);
+        ServerTracingFeature.threadLocalUnsampledContext.set(this.unsampledContext);
+        try {
+            this.delegate.run();
+        } finally {
+            ServerTracingFeature.threadLocalRequestSpan.set(previousSpan);
+            ServerTracingFeature.threadLocalUnsampledContext.set(previousContext);
+        }
+    }
+}
@@ -0,0 +1,66 @@
+package io.opentracing.contrib.dropwizard;
+
+import java.util.concurrent.Callable;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.ScheduledFuture;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * A ScheduledExecutorService running each task with the request span of the
+ * thread that scheduled it (see TracedRunnable and TracedCallable).
+ *
+ * Built with a TaskTracing, it traces each run of a task with its own span
+ * instead, tagged with the time from when the run was due to its start.
+ */
+public class TracedScheduledExecutorService extends TracedExecutorService implements ScheduledExecutorService {
+
+    private final ScheduledExecutorService delegate;
+
+    /**
+     * @param delegate the executor to run the tasks
+     */
+    public TracedScheduledExecutorService(ScheduledExecutorService delegate) {
+        this(delegate, null);
+    }
+
+    /**
+     * @param delegate the executor to run the tasks
+     * @param taskTracing to trace each run of a task with, or null to only
+     *  run the tasks with the request span of the thread that scheduled them
+     */
+    public TracedScheduledExecutorService(ScheduledExecutorService delegate, TaskTracing taskTracing) {
+        super(delegate, taskTracing);
+        this.delegate = delegate;
+    }
+
+    @Override
+    public ScheduledFuture<?> schedule(Runnable command, long delay, TimeUnit unit) {
+        return this.delegate.schedule(wrap(command, unit.toNanos(delay), 0), delay, unit);
+    }
+
+    @Override
+    public <V> ScheduledFuture<V> schedule(Callable<V> callable, long delay, TimeUnit unit) {
+        Callable<V> wrapped = this.taskTracing == null
+            ? TracedCallable.wrap(callable)
+            : this.taskTracing.wrap(callable, unit.toNanos(delay));
+        return this.delegate.schedule(wrapped, delay, unit);
+    }
+
+    @Override
+    public ScheduledFuture<?> scheduleAtFixedRate(Runnable command, long initialDelay, long period, TimeUnit unit) {
+        return this.delegate.scheduleAtFixedRate(wrap(command, unit.toNanos(initialDelay), unit.toNanos(period)),
+            initialDelay, period, unit);
+    }
+
+    @Override
+    public ScheduledFuture<?> scheduleWithFixedDelay(Runnable command, long initialDelay, long delay, TimeUnit unit) {
+        return this.delegate.scheduleWithFixedDelay(wrap(command, unit.toNanos(initialDelay), -unit.toNanos(delay)),
+            initialDelay, delay, unit);
+    }
+
+    private Runnable wrap(Runnable command, long delayNanos, long periodNanos) {
+        return this.taskTracing == null
+            ? TracedRunnable.wrap(command)
+            : this.taskTracing.wrap(command, delayNanos, periodNanos);
+    }
+}
@@ -0,0 +1,117 @@
+package io.opentracing.contrib.dropwizard;
+
+import io.dropwizard.Configuration;
+import io.dropwizard.ConfiguredBundle;
+import io.dropwizard.setup.Bootstrap;
+import io.dropwizard.setup.Environment;
+import io.opentracing.Tracer;
+
+import javax.servlet.DispatcherType;
+import java.util.EnumSet;
+
+/**
+ * A bundle that traces all requests to a DropWizard application, with a
+ * TracingPolicy that can be changed at runtime through the "tracing" admin
+ * task (see TracingPolicyTask).
+ *
+ * Subclasses provide the io.opentracing.Tracer, and optionally the initial
+ * TracingPolicy and further configuration of the tracer and of the
+ * ServerTracingFeature:
+ *
+ *      bootstrap.addBundle(new TracingBundle&lt;MyConfiguration&gt;() {
+ *          protected Tracer getTracer(MyConfiguration configuration, Environment environment) {
+ *              return someOpenTracingTracer;
+ *          }
+ *      });
+ */
+public abstract class TracingBundle<T extends Configuration> implements ConfiguredBundle<T> {
+
+    private DropWizardTracer tracer;
+    private DynamicTracingPolicy policy;
+
+    /**
+     * @param configuration of the application
+     * @param environment of the application
+     * @return the io.opentracing.Tracer to trace requests with
+     */
+    protected abstract Tracer getTracer(T configuration, Environment environment);
+
+    /**
+     * @param configuration of the application
+     * @return the policy to start with; by default, all requests are traced
+     *  without attributes
+     */
+    protected TracingPolicy getTracingPolicy(T configuration) {
+        return new TracingPolicy.Builder().build();
+    }
+
+    /**
+     * @param builder of the DropWizardTracer, with the metric registry of the
+     *  application
+     * @param configuration of the application
+     * @return the builder, configured further if needed
+     */
+    protected DropWizardTracer.Builder configureTracer(DropWizardTracer.Builder builder, T configuration) {
+        return builder;
+    }
+
+    /**
+     * @param builder of the ServerTracingFeature, with the policy of this bundle
+     * @param configuration of the application
+     * @return the builder, configured further if needed
+     */
+    protected ServerTracingFeature.Builder configureServerTracing(ServerTracingFeature.Builder builder,
+            T configuration) {
+        return builder;
+    }
+
+    /**
+     * @param configuration of the application
+     * @return whether to register a JettyEntryTracingFilter, so that server
+     *  spans start when Jetty received the request; false by default
+     */
+    protected boolean tracesJettyEntry(T configuration) {
+        return false;
+    }
+
+    @Override
+    public void initialize(Bootstrap<?> bootstrap) {
+    }
+
+    @Override
+    public void run(T configuration, Environment environment) throws Exception {
+        this.tracer = configureTracer(new DropWizardTracer.Builder(getTracer(configuration, environment))
+            .withMetricRegistry(environment.metrics()), configuration).build();
+        this.policy = new DynamicTracingPolicy(getTracingPolicy(configuration));
+        environment.jersey().register(configureServerTracing(new ServerTracingFeature.Builder(this.tracer)
+            .withPolicy(this.policy), configuration).build());
+        environment.admin().addTask(new TracingPolicyTask(this.policy));
+        if (tracesJettyEntry(configuration)) {
+            // before any other filter
+            environment.servlets().addFilter("jetty-entry-tracing", new JettyEntryTracingFilter())
+                .addMappingForUrlPatterns(EnumSet.of(DispatcherType.REQUEST), false, "/*");
+        }
+    }
+
+    /**
+     * @return the DropWizardTracer of this bundle, once it has run
+     */
+    public DropWizardTracer getDropWizardTracer() {
+        return this.tracer;
+    }
+
+    /**
+     * @return the policy of this bundle, once it has run
+     */
+    public DynamicTracingPolicy getPolicy() {
+        return this.policy;
+    }
+
+    /**
+     * @return a builder of ClientTracingFeatures that follow the policy of
+     *  this bundle, once it has run
+     */
+    public ClientTracingFeature.Builder newClientTracingFeatureBuilder() {
+        return new ClientTracingFeature.Builder(this.tracer).withPolicy(this.policy);
+    }
+}
@@ -0,0 +1,124 @@
+package io.opentracing.contrib.dropwizard;
+
+import io.opentracing.Span;
+import org.glassfish.jersey.client.ClientRequest;
+import org.glassfish.jersey.client.ClientResponse;
+import org.glassfish.jersey.client.spi.AsyncConnectorCallback;
+import org.glassfish.jersey.client.spi.Connector;
+import org.glassfish.jersey.client.spi.ConnectorProvider;
+
+import javax.ws.rs.client.Client;
+import javax.ws.rs.client.ClientRequestContext;
+import javax.ws.rs.core.Configuration;
+import java.util.concurrent.Future;
+
+/**
+ * Finishes the spans of client requests that fail without a response.
+ *
+ * Client spans are finished by the ClientResponseTracingFilter, which only
+ * runs once a response is received. When the connection is refused or times
+ * out, the connector throws a ProcessingException (or any other
+ * RuntimeException) instead, or, for asynchronous invocations, reports it to
+ * its callback, so the span would never be finished. This provider wraps the
+ * connectors of another provider so that such spans are tagged as errors,
+ * with the exception logged as an "error" event, and finished, and their
+ * requests counted as errors in the operation metrics.
+ *
+ * A request filter that runs after the ClientRequestTracingFilter and throws
+ * keeps the request from reaching the connector, so its span is only
+ * finished by DropWizardTracer.Builder.withOrphanedSpanTimeout(). Give such
+ * filters a lower priority than the default Priorities.USER of the
+ * ClientRequestTracingFilter, so that they run first.
+ *
+ * Set it as the connector provider of the client configuration, e.g.
+ *
+ *      new ClientConfig().connectorProvider(
+ *          new TracingConnectorProvider(tracer, new HttpUrlConnectorProvider()))
+ */
+public class TracingConnectorProvider implements ConnectorProvider {
+
+    private final DropWizardTracer tracer;
+    private final ConnectorProvider delegate;
+
+    /**
+     * @param tracer the tracer the ClientTracingFeature was built with
+     * @param delegate the provider of the connectors to wrap
+     */
+    public TracingConnectorProvider(DropWizardTracer tracer, ConnectorProvider delegate) {
+        this.tracer = tracer;
+        this.delegate = delegate;
+    }
+
+    @Override
+    public Connector getConnector(Client client, Configuration runtimeConfig) {
+        return new TracingConnector(this.tracer, this.delegate.getConnector(client, runtimeConfig));
+    }
+
+    private static final class TracingConnector implements Connector {
+
+        private final DropWizardTracer tracer;
+        private final Connector delegate;
+
+        TracingConnector(DropWizardTracer tracer, Connector delegate) {
+            this.tracer = tracer;
+            this.delegate = delegate;
+        }
+
+        @Override
+        public ClientResponse apply(ClientRequest request) {
+            try {
+                return this.delegate.apply(request);
+            } catch (RuntimeException e) {
+                fail(this.tracer, request, e);
+                throw e;
+            }
+        }
+
+        @Override
+        public Future<?> apply(final ClientRequest request, final AsyncConnectorCallback callback) {
+            try {
+                return this.delegate.apply(request, new AsyncConnectorCallback() {
+                    @Override
+                    public void response(ClientResponse response) {
+                        callback.response(response);
+                    }
+
+                    @Override
+                    public void failure(Throwable failure) {
+                        fail(tracer, request, failure);
+                        callback.failure(failure);
+                    }
+                });
+            } catch (RuntimeException e) {
+                fail(this.tracer, request, e);
+                throw e;
+            }
+        }
+
+        @Override
+        public String getName() {
+            return this.delegate.getName();
+        }
+
+        @Override
+        public void close() {
+            this.delegate.close();
+        }
+    }
+
+    /**
+     * Finishes the span of a client request that failed without a response.
+     */
+    private static void fail(DropWizardTracer tracer, ClientRequestContext requestContext, Throwable failure) {
+        OperationMetrics.Timing timing = (OperationMetrics.Timing) requestContext.getProperty(OperationMetrics.PROPERTY);
+        if (timing != null) {
+            requestContext.removeProperty(OperationMetrics.PROPERTY);
+            timing.stop(true);
+        }
+        Span span = tracer.getSpan(requestContext);
+        if (span != null) {
+            SpanTags.setError(span, failure);
+            tracer.finishClientSpan(requestContext);
+        }
+    }
+}
@@ -0,0 +1,119 @@
+package io.opentracing.contrib.dropwizard;
+
+import com.codahale.metrics.Counter;
+import com.codahale.metrics.Gauge;
+import com.codahale.metrics.Histogram;
+import com.codahale.metrics.Metric;
+import com.codahale.metrics.MetricRegistry;
+import com.codahale.metrics.RatioGauge;
+
+import java.util.concurrent.ThreadLocalRandom;
+
+/**
+ * Metrics of what tracing itself costs, registered under
+ * "io.opentracing.contrib.dropwizard.DropWizardTracer.overhead":
+ *
+ * - Histograms of the nanoseconds spent extracting span contexts, tagging
+ *   spans, injecting span contexts and finishing spans ("extract", "tag",
+ *   "inject" and "finish"). Only one in samplingPeriod calls is timed, so
+ *   that measuring the overhead doesn't add to it.
+ * - Counters of the server and client requests that were and weren't
+ *   sampled ("sampled" and "unsampled"), and their ratio ("sampledRatio").
+ * - Gauges of the spans in flight, reaped and rejected by the tracer
+ *   ("inFlightSpans", "reapedSpans" and "rejectedSpans").
+ */
+final class TracingOverhead {
+
+    private static final int RESERVOIR_SIZE = 1028;
+
+    private final int samplingPeriod;
+    private final Histogram extract;
+    private final Histogram tag;
+    private final Histogram inject;
+    private final Histogram finish;
+    private final Counter sampled;
+    private final Counter unsampled;
+
+    /**
+     * @param samplingPeriod time one in samplingPeriod calls
+     */
+    TracingOverhead(MetricRegistry registry, final DropWizardTracer tracer, int samplingPeriod) {
+        String name = MetricRegistry.name(DropWizardTracer.class, "overhead");
+        this.samplingPeriod = samplingPeriod;
+        this.extract = register(registry, MetricRegistry.name(name, "extract"), newHistogram());
+        this.tag = register(registry, MetricRegistry.name(name, "tag"), newHistogram());
+        this.inject = register(registry, MetricRegistry.name(name, "inject"), newHistogram());
+        this.finish = register(registry, MetricRegistry.name(name, "finish"), newHistogram());
+        this.sampled = register(registry, MetricRegistry.name(name, "sampled"), new Counter());
+        this.unsampled = register(registry, MetricRegistry.name(name, "unsampled"), new Counter());
+        register(registry, MetricRegistry.name(name, "sampledRatio"), new RatioGauge() {
+            @Override
+            protected Ratio getRatio() {
+                long sampled = TracingOverhead.this.sampled.getCount();
+                return Ratio.of(sampled, sampled + TracingOverhead.this.unsampled.getCount());
+            }
+        });
+        register(registry, MetricRegistry.name(name, "inFlightSpans"), new Gauge<Integer>() {
+            @Override
+            public Integer getValue() {
+                return tracer.getInFlightSpanCount();
+            }
+        });
+        register(registry, MetricRegistry.name(name, "reapedSpans"), new Gauge<Long>() {
+            @Override
+            public Long getValue() {
+                return tracer.getReapedSpanCount();
+            }
+        });
+        register(registry, MetricRegistry.name(name, "rejectedSpans"), new Gauge<Long>() {
+            @Override
+            public Long getValue() {
+                return tracer.getRejectedSpanCount();
+            }
+        });
+    }
+
+    /**
+     * @return whether to time this call
+     */
+    boolean timed() {
+        return this.samplingPeriod <= 1 || ThreadLocalRandom.current().nextInt(this.samplingPeriod) == 0;
+    }
+
+    void extracted(long startNanos) {
+        this.extract.update(System.nanoTime() - startNanos);
+    }
+
+    void tagged(long startNanos) {
+        this.tag.update(System.nanoTime() - startNanos);
+    }
+
+    void injected(long startNanos) {
+        this.inject.update(System.nanoTime() - startNanos);
+    }
+
+    void finished(long startNanos) {
+        this.finish.update(System.nanoTime() - startNanos);
+    }
+
+    /**
+     * @param sampled whether a request was sampled
+     */
+    void count(boolean sampled) {
+        (sampled ? this.sampled : this.unsampled).inc();
+    }
+
+    private static Histogram newHistogram() {
+        return new Histogram(new LockFreeSlidingWindowReservoir(RESERVOIR_SIZE));
+    }
+
+    @SuppressWarnings("unchecked")
+    private static <T extends Metric> T register(MetricRegistry registry, String name, T metric) {
+        try {
+            return registry.register(name, metric);
+        } catch (IllegalArgumentException e) {
+            // registered by another DropWizardTracer
+            return (T) registry.getMetrics().get(name);
+        }
+    }
+}
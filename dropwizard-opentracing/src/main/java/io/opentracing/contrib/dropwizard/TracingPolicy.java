@@ -0,0 +1,209 @@
+package io.opentracing.contrib.dropwizard;
+
+import java.util.Collections;
+import java.util.EnumSet;
+import java.util.HashSet;
+import java.util.LinkedHashSet;
+import java.util.Set;
+
+/**
+ * The parts of the tracing configuration that can be changed while the
+ * application runs: the sampler, the traced server and client attributes,
+ * the traced and redacted headers and the request span decorator.
+ *
+ * A TracingPolicy is immutable, and its attributes are compiled when it is
+ * built. To change the policy of running filters, build a new one and set
+ * it on the DynamicTracingPolicy they were built with.
+ *
+ * This policy is configured and built using TracingPolicy.Builder
+ */
+public final class TracingPolicy {
+
+    private final TracingSampler sampler;
+    private final Set<ServerAttribute> serverAttributes;
+    private final Set<ClientAttribute> clientAttributes;
+    private final Set<String> tracedHeaders;
+    private final Set<String> redactedHeaders;
+    private final RequestSpanDecorator decorator;
+    final ServerAttributeExtractor[] serverAttributeExtractors;
+    final ClientAttributeExtractor[] clientAttributeExtractors;
+
+    private TracingPolicy(
+        TracingSampler sampler,
+        Set<ServerAttribute> serverAttributes,
+        Set<ClientAttribute> clientAttributes,
+        Set<String> tracedHeaders,
+        Set<String> redactedHeaders,
+        RequestSpanDecorator decorator
+    ) {
+        HeaderTags headerTags = new HeaderTags(tracedHeaders, redactedHeaders);
+        this.sampler = sampler;
+        this.serverAttributes = Collections.unmodifiableSet(serverAttributes);
+        this.clientAttributes = Collections.unmodifiableSet(clientAttributes);
+        this.tracedHeaders = Collections.unmodifiableSet(tracedHeaders);
+        this.redactedHeaders = Collections.unmodifiableSet(redactedHeaders);
+        this.decorator = decorator;
+        this.serverAttributeExtractors = ServerAttributeExtractor.compile(serverAttributes, headerTags);
+        this.clientAttributeExtractors = ClientAttributeExtractor.compile(clientAttributes, headerTags);
+    }
+
+    /**
+     * @return the sampler deciding which requests to trace, or null to trace all
+     */
+    public TracingSampler getSampler() {
+        return this.sampler;
+    }
+
+    /**
+     * @return the ServerAttributes tagged to server spans
+     */
+    public Set<ServerAttribute> getServerAttributes() {
+        return this.serverAttributes;
+    }
+
+    /**
+     * @return the ClientAttributes tagged to client spans
+     */
+    public Set<ClientAttribute> getClientAttributes() {
+        return this.clientAttributes;
+    }
+
+    /**
+     * @return the headers tagged individually to server and client spans
+     */
+    public Set<String> getTracedHeaders() {
+        return this.tracedHeaders;
+    }
+
+    /**
+     * @return the headers whose values are never tagged
+     */
+    public Set<String> getRedactedHeaders() {
+        return this.redactedHeaders;
+    }
+
+    /**
+     * @return the decorator of server spans, or null if none
+     */
+    public RequestSpanDecorator getRequestSpanDecorator() {
+        return this.decorator;
+    }
+
+    @Override
+    public String toString() {
+        return "TracingPolicy{sampler=" + this.sampler
+            + ", serverAttributes=" + this.serverAttributes
+            + ", clientAttributes=" + this.clientAttributes
+            + ", tracedHeaders=" + this.tracedHeaders
+            + ", redactedHeaders=" + this.redactedHeaders
+            + ", decorator=" + this.decorator + "}";
+    }
+
+    /**
+     * Use this class to configure and build a TracingPolicy
+     */
+    public static class Builder {
+
+        private TracingSampler sampler;
+        private Set<ServerAttribute> serverAttributes;
+        private Set<ClientAttribute> clientAttributes;
+        private Set<String> tracedHeaders;
+        private Set<String> redactedHeaders;
+        private RequestSpanDecorator decorator;
+
+        /**
+         * Starts from a policy that traces all requests, without attributes.
+         */
+        public Builder() {
+            this.serverAttributes = EnumSet.noneOf(ServerAttribute.class);
+            this.clientAttributes = EnumSet.noneOf(ClientAttribute.class);
+            this.tracedHeaders = new HashSet<String>();
+            this.redactedHeaders = new HashSet<String>();
+        }
+
+        /**
+         * @param policy to start from
+         */
+        public Builder(TracingPolicy policy) {
+            this.sampler = policy.sampler;
+            this.serverAttributes = policy.serverAttributes;
+            this.clientAttributes = policy.clientAttributes;
+            this.tracedHeaders = policy.tracedHeaders;
+            this.redactedHeaders = policy.redactedHeaders;
+            this.decorator = policy.decorator;
+        }
+
+        /**
+         * @param sampler decides which requests to trace, or null to trace all
+         * @return Builder configured with added sampler
+         */
+        public Builder withSampler(TracingSampler sampler) {
+            this.sampler = sampler;
+            return this;
+        }
+
+        /**
+         * @param serverAttributes a set of ServerAttributes to tag to server spans
+         * @return Builder configured with added server attributes
+         */
+        public Builder withServerAttributes(Set<ServerAttribute> serverAttributes) {
+            this.serverAttributes = serverAttributes;
+            return this;
+        }
+
+        /**
+         * @param clientAttributes a set of ClientAttributes to tag to client spans
+         * @return Builder configured with added client attributes
+         */
+        public Builder withClientAttributes(Set<ClientAttribute> clientAttributes) {
+            this.clientAttributes = clientAttributes;
+            return this;
+        }
+
+        /**
+         * Tags each of these headers, when present, to server and client spans
+         * as its own tag named "http.header." followed by the header name in
+         * lower case (e.g. "http.header.x-request-id").
+         * @param headerNames the headers to tag
+         * @return Builder configured with added traced headers
+         */
+        public Builder withTracedHeaders(Set<String> headerNames) {
+            this.tracedHeaders = headerNames;
+            return this;
+        }
+
+        /**
+         * The values of these headers are replaced by "&lt;redacted&gt;" in traced
+         * headers and in the HEADERS attributes. Redacting "Cookie" also
+         * reduces the COOKIES attributes to the names of the cookies.
+         * @param headerNames the headers whose values are never tagged
+         * @return Builder configured with added redacted headers
+         */
+        public Builder withRedactedHeaders(Set<String> headerNames) {
+            this.redactedHeaders = headerNames;
+            return this;
+        }
+
+        /**
+         * @param decorator an (optional) RequestSpanDecorator which is applied to each [Request, Span] pair.
+         * @return Builder for chaining
+         */
+        public Builder withRequestSpanDecorator(RequestSpanDecorator decorator) {
+            this.decorator = decorator;
+            return this;
+        }
+
+        /**
+         * @return TracingPolicy with the configuration of this Builder
+         */
+        public TracingPolicy build() {
+            Set<ServerAttribute> serverAttributes = EnumSet.noneOf(ServerAttribute.class);
+            serverAttributes.addAll(this.serverAttributes);
+            Set<ClientAttribute> clientAttributes = EnumSet.noneOf(ClientAttribute.class);
+            clientAttributes.addAll(this.clientAttributes);
+            return new TracingPolicy(this.sampler, serverAttributes, clientAttributes,
+                new LinkedHashSet<String>(this.tracedHeaders), new HashSet<String>(this.redactedHeaders),
+                this.decorator);
+        }
+    }
+}
@@ -0,0 +1,133 @@
+package io.opentracing.contrib.dropwizard;
+
+import com.google.common.collect.ImmutableMultimap;
+import io.dropwizard.servlets.tasks.Task;
+
+import java.io.PrintWriter;
+import java.util.Collection;
+import java.util.EnumSet;
+import java.util.HashMap;
+import java.util.LinkedHashSet;
+import java.util.Map;
+import java.util.Set;
+
+/**
+ * An admin Task that changes a DynamicTracingPolicy while the application
+ * runs, e.g. with
+ *
+ *      curl -X POST 'http://localhost:8081/tasks/tracing?sampleRate=0.01&amp;sampleRate.UserResource=1'
+ *
+ * It takes the following parameters, and prints the resulting policy:
+ *
+ * - sampleRate=[rate]: samples that fraction of requests
+ * - sampleRate.[operation name]=[rate]: samples that fraction of the requests
+ *   to this operation, even if its resource method is annotated with a
+ *   @Trace sampleRate
+ * - serverAttributes=[ServerAttribute,...]: the ServerAttributes to trace,
+ *   none if empty
+ * - clientAttributes=[ClientAttribute,...]: the ClientAttributes to trace,
+ *   none if empty
+ * - tracedHeaders=[header name,...]: the headers to tag individually, none
+ *   if empty. Redacted headers can't be changed by this task.
+ * - reset: starts from the initial policy, rather than the current one,
+ *   before applying any other parameter
+ *
+ * Sample rates replace the sampler of the policy with a ProbabilisticSampler,
+ * keeping the rates of the current one if it is a ProbabilisticSampler.
+ *
+ * The new policy is only set once all parameters are parsed: an invalid
+ * parameter fails the task and leaves the policy unchanged.
+ */
+public class TracingPolicyTask extends Task {
+
+    private static final String SAMPLE_RATE = "sampleRate";
+
+    private final DynamicTracingPolicy policy;
+
+    /**
+     * @param policy to change
+     */
+    public TracingPolicyTask(DynamicTracingPolicy policy) {
+        this("tracing", policy);
+    }
+
+    /**
+     * @param name of the task, in its path: /tasks/[name]
+     * @param policy to change
+     */
+    public TracingPolicyTask(String name, DynamicTracingPolicy policy) {
+        super(name);
+        this.policy = policy;
+    }
+
+    @Override
+    public void execute(ImmutableMultimap<String, String> parameters, PrintWriter output) {
+        TracingPolicy current = parameters.containsKey("reset")
+            ? this.policy.getInitialPolicy()
+            : this.policy.get();
+        TracingPolicy.Builder builder = new TracingPolicy.Builder(current);
+
+        TracingSampler sampler = sampler(current.getSampler(), parameters);
+        if (sampler != null) {
+            builder.withSampler(sampler);
+        }
+        if (parameters.containsKey("serverAttributes")) {
+            builder.withServerAttributes(parse(ServerAttribute.class, parameters.get("serverAttributes")));
+        }
+        if (parameters.containsKey("clientAttributes")) {
+            builder.withClientAttributes(parse(ClientAttribute.class, parameters.get("clientAttributes")));
+        }
+        if (parameters.containsKey("tracedHeaders")) {
+            builder.withTracedHeaders(split(parameters.get("tracedHeaders")));
+        }
+
+        TracingPolicy policy = builder.build();
+        this.policy.set(policy);
+        output.println(policy);
+    }
+
+    /**
+     * @return a ProbabilisticSampler with the sample rates of the parameters,
+     *  or null if there are none
+     */
+    private static TracingSampler sampler(TracingSampler current, ImmutableMultimap<String, String> parameters) {
+        double rate = 1.0;
+        Map<String, Double> operationRates = new HashMap<String, Double>();
+        if (current instanceof ProbabilisticSampler) {
+            rate = ((ProbabilisticSampler) current).getRate();
+            operationRates.putAll(((ProbabilisticSampler) current).getOperationRates());
+        }
+        boolean changed = false;
+        for (Map.Entry<String, String> parameter : parameters.entries()) {
+            String key = parameter.getKey();
+            if (key.equals(SAMPLE_RATE)) {
+                rate = Double.parseDouble(parameter.getValue());
+                changed = true;
+            } else if (key.startsWith(SAMPLE_RATE + ".")) {
+                operationRates.put(key.substring(SAMPLE_RATE.length() + 1), Double.parseDouble(parameter.getValue()));
+                changed = true;
+            }
+        }
+        return changed ? new ProbabilisticSampler(rate, operationRates) : null;
+    }
+
+    private static <E extends Enum<E>> Set<E> parse(Class<E> type, Collection<String> values) {
+        Set<E> attributes = EnumSet.noneOf(type);
+        for (String name : split(values)) {
+            attributes.add(Enum.valueOf(type, name));
+        }
+        return attributes;
+    }
+
+    private static Set<String> split(Collection<String> values) {
+        Set<String> names = new LinkedHashSet<String>();
+        for (String value : values) {
+            for (String name : value.split(",")) {
+                if (!name.trim().isEmpty()) {
+                    names.add(name.trim());
+                }
+            }
+        }
+        return names;
+    }
+}
@@ -0,0 +1,21 @@
+package io.opentracing.contrib.dropwizard;
+
+/**
+ * TracingSampler decides, before any span is built, whether a request is
+ * traced.
+ *
+ * Requests that are not sampled cost next to nothing: no span is built, no
+ * attribute is extracted and no RequestSpanDecorator is called. The span
+ * context a server request was called with is still propagated to client
+ * requests made on its behalf, so downstream services see the same trace.
+ *
+ * Implementations are called on every request, so they should be cheap and
+ * thread safe. See ProbabilisticSampler.
+ */
+public interface TracingSampler {
+    /**
+     * @param operationName the operation name the span would have
+     * @return true to trace the request, false to only propagate its context
+     */
+    boolean sample(String operationName);
+}
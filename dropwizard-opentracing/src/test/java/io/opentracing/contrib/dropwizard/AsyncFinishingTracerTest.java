@@ -0,0 +1,165 @@
+package io.opentracing.contrib.dropwizard;
+
+import io.opentracing.Span;
+import io.opentracing.mock.MockSpan;
+import io.opentracing.mock.MockTracer;
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+
+import java.util.ArrayList;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Set;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+
+public class AsyncFinishingTracerTest {
+
+    private static final int THREADS = 8;
+    private static final int SPANS_PER_THREAD = 10000;
+
+    private MockTracer mockTracer;
+    private AsyncFinishingTracer tracer;
+
+    @Before
+    public void setUp() {
+        this.mockTracer = new MockTracer();
+    }
+
+    @After
+    public void tearDown() throws InterruptedException {
+        if (this.tracer != null) {
+            this.tracer.stop();
+        }
+    }
+
+    private AsyncFinishingTracer start(AsyncFinishingTracer.Builder builder) {
+        this.tracer = builder.build();
+        this.tracer.start();
+        return this.tracer;
+    }
+
+    /**
+     * Starts THREADS * SPANS_PER_THREAD spans, then finishes them from
+     * THREADS threads at once.
+     */
+    private void finishConcurrently() throws InterruptedException {
+        final Span[][] spans = new Span[THREADS][SPANS_PER_THREAD];
+        for (Span[] threadSpans : spans) {
+            for (int i = 0; i < threadSpans.length; i++) {
+                threadSpans[i] = this.tracer.buildSpan("span").start();
+            }
+        }
+        final CountDownLatch ready = new CountDownLatch(1);
+        List<Thread> threads = new ArrayList<Thread>();
+        for (final Span[] threadSpans : spans) {
+            Thread thread = new Thread(new Runnable() {
+                @Override
+                public void run() {
+                    try {
+                        ready.await();
+                    } catch (InterruptedException e) {
+                        return;
+                    }
+                    for (Span span : threadSpans) {
+                        span.finish();
+                    }
+                }
+            });
+            thread.start();
+            threads.add(thread);
+        }
+        ready.countDown();
+        for (Thread thread : threads) {
+            thread.join();
+        }
+    }
+
+    /**
+     * Asserts that the spans finished by the underlying tracer were each
+     * finished once; MockSpan also fails on spans finished twice.
+     */
+    private void assertFinishedOnce(int count) {
+        List<MockSpan> finished = this.mockTracer.finishedSpans();
+        Set<Long> spanIds = new HashSet<Long>();
+        for (MockSpan span : finished) {
+            spanIds.add(span.context().spanId());
+        }
+        assertEquals(count, finished.size());
+        assertEquals(count, spanIds.size());
+    }
+
+    @Test
+    public void concurrentlyFinishedSpansAreAllFinishedOnce() throws InterruptedException {
+        start(new AsyncFinishingTracer.Builder(this.mockTracer)
+            .withCapacity(1024)
+            .withOverflowPolicy(AsyncFinishingTracer.OverflowPolicy.FINISH_ON_CALLER));
+        finishConcurrently();
+        this.tracer.stop();
+
+        assertFinishedOnce(THREADS * SPANS_PER_THREAD);
+        assertEquals(0, this.tracer.getQueuedSpanCount());
+        assertEquals(0, this.tracer.getDroppedSpanCount());
+    }
+
+    @Test
+    public void droppedSpansAreCountedExactly() throws InterruptedException {
+        start(new AsyncFinishingTracer.Builder(this.mockTracer).withCapacity(1024));
+        finishConcurrently();
+        this.tracer.stop();
+
+        long dropped = this.tracer.getDroppedSpanCount();
+        assertFinishedOnce((int) (THREADS * SPANS_PER_THREAD - dropped));
+        assertEquals(0, this.tracer.getCallerFinishedSpanCount());
+    }
+
+    @Test
+    public void spansOverflowingAFullRingBufferAreDropped() throws InterruptedException {
+        // without its background thread, the ring buffer fills up
+        this.tracer = new AsyncFinishingTracer.Builder(this.mockTracer).withCapacity(1000).build();
+        finishConcurrently();
+
+        assertEquals(1024, this.tracer.getQueuedSpanCount());
+        assertEquals(THREADS * SPANS_PER_THREAD - 1024, this.tracer.getDroppedSpanCount());
+        assertEquals(0, this.mockTracer.finishedSpans().size());
+        this.tracer.stop();
+        assertFinishedOnce(1024);
+    }
+
+    @Test
+    public void spansOverflowingAFullRingBufferAreFinishedOnTheCaller() throws InterruptedException {
+        this.tracer = new AsyncFinishingTracer.Builder(this.mockTracer)
+            .withCapacity(1024)
+            .withOverflowPolicy(AsyncFinishingTracer.OverflowPolicy.FINISH_ON_CALLER)
+            .build();
+        finishConcurrently();
+
+        assertEquals(1024, this.tracer.getQueuedSpanCount());
+        assertEquals(THREADS * SPANS_PER_THREAD - 1024, this.tracer.getCallerFinishedSpanCount());
+        assertEquals(0, this.tracer.getDroppedSpanCount());
+        assertFinishedOnce(THREADS * SPANS_PER_THREAD - 1024);
+        this.tracer.stop();
+        assertFinishedOnce(THREADS * SPANS_PER_THREAD);
+    }
+
+    @Test
+    public void finishTimestampsComeFromTheWallClock() throws InterruptedException {
+        start(new AsyncFinishingTracer.Builder(this.mockTracer));
+        Span span = this.tracer.buildSpan("span").start();
+        long beforeMicros = TimeUnit.MILLISECONDS.toMicros(System.currentTimeMillis());
+        span.finish();
+        long afterMicros = TimeUnit.MILLISECONDS.toMicros(System.currentTimeMillis());
+        this.tracer.stop();
+        this.tracer = null;
+
+        assertEquals(1, this.mockTracer.finishedSpans().size());
+        MockSpan finished = this.mockTracer.finishedSpans().get(0);
+        assertTrue(finished.finishMicros() >= beforeMicros);
+        assertTrue(finished.finishMicros() <= afterMicros);
+        assertTrue(finished.finishMicros() >= finished.startMicros());
+    }
+}
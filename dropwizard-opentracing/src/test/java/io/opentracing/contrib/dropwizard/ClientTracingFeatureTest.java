@@ -0,0 +1,277 @@
+package io.opentracing.contrib.dropwizard;
+
+import com.google.common.util.concurrent.FutureCallback;
+import com.google.common.util.concurrent.Futures;
+import com.google.common.util.concurrent.ListenableFuture;
+import io.opentracing.Span;
+import io.opentracing.mock.MockSpan;
+import io.opentracing.mock.MockTracer;
+import org.glassfish.jersey.client.ClientConfig;
+import org.glassfish.jersey.client.rx.guava.RxListenableFuture;
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+
+import javax.ws.rs.ProcessingException;
+import javax.ws.rs.client.Client;
+import javax.ws.rs.client.ClientBuilder;
+import javax.ws.rs.client.InvocationCallback;
+import javax.ws.rs.core.Response;
+import java.util.Collections;
+import java.util.EnumSet;
+import java.util.List;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicReference;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertSame;
+import static org.junit.Assert.assertTrue;
+import static org.junit.Assert.fail;
+
+public class ClientTracingFeatureTest {
+
+    private MockTracer mockTracer;
+    private StubConnectorProvider connector;
+    private Client client;
+
+    @Before
+    public void setUp() {
+        this.mockTracer = new MockTracer();
+        this.connector = new StubConnectorProvider();
+    }
+
+    @After
+    public void tearDown() {
+        ServerTracingFeature.threadLocalRequestSpan.remove();
+        if (this.client != null) {
+            this.client.close();
+        }
+    }
+
+    private Client client(DropWizardTracer tracer, ClientTracingFeature.Builder feature) {
+        this.client = ClientBuilder.newClient(new ClientConfig()
+            .connectorProvider(new TracingConnectorProvider(tracer, this.connector)));
+        feature.build().registerTo(this.client);
+        return this.client;
+    }
+
+    private static ClientTracingFeature.Builder entityStream(DropWizardTracer tracer) {
+        return new ClientTracingFeature.Builder(tracer)
+            .withOperationName("stub")
+            .withTracedAttributes(Collections.singleton(ClientAttribute.ENTITY_STREAM));
+    }
+
+    private Span activeRequestSpan(DropWizardTracer tracer) {
+        Span span = tracer.getTracer().buildSpan("request").start();
+        ServerTracingFeature.threadLocalRequestSpan.set(span);
+        return span;
+    }
+
+    private void assertChildOf(Span parent, MockSpan span) {
+        assertEquals(((MockSpan) parent).context().spanId(), span.parentId());
+    }
+
+    private void awaitFinishedSpans(int count) throws InterruptedException {
+        long deadline = System.nanoTime() + TimeUnit.SECONDS.toNanos(10);
+        while (this.mockTracer.finishedSpans().size() < count && System.nanoTime() < deadline) {
+            Thread.sleep(5);
+        }
+        assertEquals(count, this.mockTracer.finishedSpans().size());
+    }
+
+    @Test
+    public void spansAreFinishedByTheResponseFilter() {
+        DropWizardTracer tracer = new DropWizardTracer(this.mockTracer);
+        Response response = client(tracer, new ClientTracingFeature.Builder(tracer).withOperationName("stub"))
+            .target("http://localhost/hello").request().get();
+
+        assertEquals(1, this.mockTracer.finishedSpans().size());
+        assertEquals(200, this.mockTracer.finishedSpans().get(0).tags().get("http.status_code"));
+        response.close();
+        assertEquals(0, tracer.getInFlightSpanCount());
+    }
+
+    @Test
+    public void urlsAreTaggedWithoutTheirQuery() {
+        DropWizardTracer tracer = new DropWizardTracer(this.mockTracer);
+        client(tracer, new ClientTracingFeature.Builder(tracer)
+                .withTracedAttributes(EnumSet.of(ClientAttribute.URI)))
+            .target("http://localhost/hello").queryParam("token", "secret").request().get().close();
+
+        assertEquals("http://localhost/hello", this.mockTracer.finishedSpans().get(0).tags().get("http.url"));
+    }
+
+    @Test
+    public void entityStreamSpansAreFinishedOnceTheEntityIsRead() {
+        DropWizardTracer tracer = new DropWizardTracer(this.mockTracer);
+        Response response = client(tracer, entityStream(tracer)).target("http://localhost/hello").request().get();
+        assertEquals(0, this.mockTracer.finishedSpans().size());
+
+        assertEquals("hello", response.readEntity(String.class));
+        List<MockSpan> spans = this.mockTracer.finishedSpans();
+        assertEquals(1, spans.size());
+        assertEquals(5L, spans.get(0).tags().get("Response Bytes"));
+        assertTrue(spans.get(0).tags().get("Response Last Byte Micros") instanceof Long);
+        assertEquals(0, tracer.getInFlightSpanCount());
+    }
+
+    @Test
+    public void entityStreamSpansAreFinishedOnceTheResponseIsClosed() {
+        DropWizardTracer tracer = new DropWizardTracer.Builder(this.mockTracer).withRequestScopedSpans().build();
+        Response response = client(tracer, entityStream(tracer)).target("http://localhost/hello").request().get();
+        assertEquals(0, this.mockTracer.finishedSpans().size());
+
+        response.close();
+        assertEquals(1, this.mockTracer.finishedSpans().size());
+        assertEquals(null, this.mockTracer.finishedSpans().get(0).tags().get("Response Bytes"));
+    }
+
+    @Test
+    public void unclosedEntityStreamSpansAreReaped() throws InterruptedException {
+        DropWizardTracer tracer = new DropWizardTracer.Builder(this.mockTracer)
+            .withRequestScopedSpans()
+            .withOrphanedSpanTimeout(20, TimeUnit.MILLISECONDS)
+            .build();
+        Response response = client(tracer, entityStream(tracer)).target("http://localhost/hello").request().get();
+        assertEquals(1, tracer.getInFlightSpanCount());
+
+        awaitFinishedSpans(1);
+        assertEquals(true, this.mockTracer.finishedSpans().get(0).tags().get(InFlightSpans.ABANDONED_TAG));
+        assertEquals(1, tracer.getReapedSpanCount());
+
+        // closing the entity later doesn't finish the span again
+        assertEquals("hello", response.readEntity(String.class));
+        assertEquals(1, this.mockTracer.finishedSpans().size());
+        assertEquals(null, this.mockTracer.finishedSpans().get(0).tags().get("Response Bytes"));
+    }
+
+    @Test
+    public void rxInvocationsContinueTheTraceOfTheActiveRequest() throws Exception {
+        DropWizardTracer tracer = new DropWizardTracer(this.mockTracer);
+        Client client = client(tracer, new ClientTracingFeature.Builder(tracer)
+            .withActiveRequest()
+            .withOperationName("stub"));
+        Span requestSpan = activeRequestSpan(tracer);
+        ExecutorService executor = new TracedExecutorService(Executors.newSingleThreadExecutor());
+        final AtomicReference<Span> callbackSpan = new AtomicReference<Span>();
+        final CountDownLatch called = new CountDownLatch(1);
+        try {
+            ListenableFuture<String> future = RxListenableFuture.from(client, executor)
+                .target("http://localhost/hello").request().rx().get(String.class);
+            Futures.addCallback(future, new FutureCallback<String>() {
+                @Override
+                public void onSuccess(String result) {
+                    callbackSpan.set(ServerTracingFeature.getThreadLocalRequestSpan());
+                    called.countDown();
+                }
+
+                @Override
+                public void onFailure(Throwable failure) {
+                    called.countDown();
+                }
+            }, executor);
+            assertEquals("hello", future.get(10, TimeUnit.SECONDS));
+            assertTrue(called.await(10, TimeUnit.SECONDS));
+        } finally {
+            executor.shutdown();
+        }
+
+        assertSame(requestSpan, callbackSpan.get());
+        assertEquals(1, this.mockTracer.finishedSpans().size());
+        assertChildOf(requestSpan, this.mockTracer.finishedSpans().get(0));
+        assertEquals(0, tracer.getInFlightSpanCount());
+    }
+
+    @Test
+    public void failedRxInvocationsFinishTheirSpans() throws Exception {
+        DropWizardTracer tracer = new DropWizardTracer(this.mockTracer);
+        Client client = client(tracer, new ClientTracingFeature.Builder(tracer)
+            .withActiveRequest()
+            .withOperationName("stub"));
+        Span requestSpan = activeRequestSpan(tracer);
+        this.connector.fail(new ProcessingException("connection refused"));
+        ExecutorService executor = new TracedExecutorService(Executors.newSingleThreadExecutor());
+        try {
+            RxListenableFuture.from(client, executor)
+                .target("http://localhost/hello").request().rx().get(String.class).get(10, TimeUnit.SECONDS);
+            fail("the invocation should have failed");
+        } catch (ExecutionException e) {
+            assertTrue(e.getCause() instanceof ProcessingException);
+        } finally {
+            executor.shutdown();
+        }
+
+        assertEquals(1, this.mockTracer.finishedSpans().size());
+        MockSpan span = this.mockTracer.finishedSpans().get(0);
+        assertChildOf(requestSpan, span);
+        assertEquals(true, span.tags().get("error"));
+        assertEquals(0, tracer.getInFlightSpanCount());
+    }
+
+    @Test
+    public void invocationCallbacksRunWithTheActiveRequestSpan() throws Exception {
+        DropWizardTracer tracer = new DropWizardTracer(this.mockTracer);
+        Client client = client(tracer, new ClientTracingFeature.Builder(tracer)
+            .withActiveRequest()
+            .withOperationName("stub"));
+        client.register(new TracedAsyncExecutorProvider(Executors.newSingleThreadExecutor()));
+        Span requestSpan = activeRequestSpan(tracer);
+        final AtomicReference<Span> callbackSpan = new AtomicReference<Span>();
+        final CountDownLatch called = new CountDownLatch(1);
+
+        client.target("http://localhost/hello").request().async().get(new InvocationCallback<String>() {
+            @Override
+            public void completed(String response) {
+                callbackSpan.set(ServerTracingFeature.getThreadLocalRequestSpan());
+                called.countDown();
+            }
+
+            @Override
+            public void failed(Throwable failure) {
+                called.countDown();
+            }
+        });
+        assertTrue(called.await(10, TimeUnit.SECONDS));
+
+        assertSame(requestSpan, callbackSpan.get());
+        assertEquals(1, this.mockTracer.finishedSpans().size());
+        assertChildOf(requestSpan, this.mockTracer.finishedSpans().get(0));
+    }
+
+    @Test
+    public void failedInvocationCallbacksFinishTheirSpans() throws Exception {
+        DropWizardTracer tracer = new DropWizardTracer(this.mockTracer);
+        Client client = client(tracer, new ClientTracingFeature.Builder(tracer)
+            .withActiveRequest()
+            .withOperationName("stub"));
+        client.register(new TracedAsyncExecutorProvider(Executors.newSingleThreadExecutor()));
+        Span requestSpan = activeRequestSpan(tracer);
+        this.connector.fail(new ProcessingException("connection refused"));
+        final AtomicReference<Throwable> callbackFailure = new AtomicReference<Throwable>();
+        final CountDownLatch called = new CountDownLatch(1);
+
+        client.target("http://localhost/hello").request().async().get(new InvocationCallback<String>() {
+            @Override
+            public void completed(String response) {
+                called.countDown();
+            }
+
+            @Override
+            public void failed(Throwable failure) {
+                callbackFailure.set(failure);
+                called.countDown();
+            }
+        });
+        assertTrue(called.await(10, TimeUnit.SECONDS));
+
+        assertTrue(callbackFailure.get() instanceof ProcessingException);
+        awaitFinishedSpans(1);
+        MockSpan span = this.mockTracer.finishedSpans().get(0);
+        assertChildOf(requestSpan, span);
+        assertEquals(true, span.tags().get("error"));
+    }
+}
@@ -0,0 +1,47 @@
+package io.opentracing.contrib.dropwizard;
+
+import com.codahale.metrics.Gauge;
+import com.codahale.metrics.MetricRegistry;
+import com.codahale.metrics.Timer;
+import org.junit.Before;
+import org.junit.Test;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+import static org.junit.Assert.fail;
+
+public class OperationMetricsTest {
+
+    private MetricRegistry registry;
+
+    @Before
+    public void setUp() {
+        this.registry = new MetricRegistry();
+    }
+
+    @Test
+    public void metricsAlreadyRegisteredAreShared() {
+        new OperationMetrics(this.registry, "op").start().stop(true);
+        new OperationMetrics(this.registry, "op").start().stop(false);
+
+        assertEquals(2, this.registry.timer("op.requests").getCount());
+        assertEquals(1, this.registry.meter("op.errors").getCount());
+    }
+
+    @Test
+    public void metricsOfAnotherTypeFailFast() {
+        this.registry.register("op.requests", new Gauge<Integer>() {
+            @Override
+            public Integer getValue() {
+                return 0;
+            }
+        });
+        try {
+            new OperationMetrics(this.registry, "op");
+            fail();
+        } catch (IllegalArgumentException e) {
+            assertTrue(e.getMessage(), e.getMessage().startsWith(
+                "Can't register a " + Timer.class.getSimpleName() + " as op.requests"));
+        }
+    }
+}
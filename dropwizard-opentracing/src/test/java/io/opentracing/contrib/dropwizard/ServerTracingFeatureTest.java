@@ -0,0 +1,154 @@
+package io.opentracing.contrib.dropwizard;
+
+import com.google.common.collect.ImmutableMultimap;
+import io.opentracing.mock.MockSpan;
+import io.opentracing.mock.MockTracer;
+import org.glassfish.jersey.internal.MapPropertiesDelegate;
+import org.glassfish.jersey.server.ApplicationHandler;
+import org.glassfish.jersey.server.ContainerRequest;
+import org.glassfish.jersey.server.ContainerResponse;
+import org.glassfish.jersey.server.ResourceConfig;
+import org.glassfish.jersey.server.ServerProperties;
+import org.junit.Before;
+import org.junit.Test;
+
+import javax.ws.rs.GET;
+import javax.ws.rs.Path;
+import java.io.ByteArrayOutputStream;
+import java.io.PrintWriter;
+import java.io.StringWriter;
+import java.net.URI;
+import java.util.Collections;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+
+public class ServerTracingFeatureTest {
+
+    @Path("/hello")
+    public static class HelloResource {
+
+        @GET
+        public String hello() {
+            return "hello";
+        }
+
+        @GET
+        @Path("/traced")
+        @Trace(operationName = "traced")
+        public String traced() {
+            return "traced";
+        }
+
+        @GET
+        @Path("/rarely")
+        @Trace(operationName = "rarely", sampleRate = 0)
+        public String rarely() {
+            return "rarely";
+        }
+    }
+
+    private MockTracer mockTracer;
+    private DropWizardTracer tracer;
+
+    @Before
+    public void setUp() {
+        this.mockTracer = new MockTracer();
+        this.tracer = new DropWizardTracer(this.mockTracer);
+    }
+
+    private ContainerResponse get(ServerTracingFeature feature, String path, ByteArrayOutputStream out)
+            throws Exception {
+        return get(feature, path, out, new MapPropertiesDelegate());
+    }
+
+    private ContainerResponse get(ServerTracingFeature feature, String path, ByteArrayOutputStream out,
+            MapPropertiesDelegate properties) throws Exception {
+        ApplicationHandler handler = new ApplicationHandler(
+            new ResourceConfig(HelloResource.class)
+                .property(ServerProperties.BV_FEATURE_DISABLE, true)
+                .register(feature));
+        ContainerRequest request = new ContainerRequest(URI.create("http://localhost/"),
+            URI.create("http://localhost" + path), "GET", null, properties);
+        return handler.apply(request, out).get(10, TimeUnit.SECONDS);
+    }
+
+    @Test
+    public void entityStreamIsCounted() throws Exception {
+        ServerTracingFeature feature = new ServerTracingFeature.Builder(this.tracer)
+            .withTracedAttributes(Collections.singleton(ServerAttribute.ENTITY_STREAM))
+            .build();
+        ByteArrayOutputStream out = new ByteArrayOutputStream();
+        assertEquals(200, get(feature, "/hello", out).getStatus());
+
+        assertEquals("hello", out.toString("UTF-8"));
+        List<MockSpan> spans = this.mockTracer.finishedSpans();
+        assertEquals(1, spans.size());
+        assertEquals(5L, spans.get(0).tags().get("Response Bytes"));
+        assertTrue(spans.get(0).tags().get("Response Last Byte Micros") instanceof Long);
+    }
+
+    @Test
+    public void entityStreamIsCountedWithPhaseTimings() throws Exception {
+        ServerTracingFeature feature = new ServerTracingFeature.Builder(this.tracer)
+            .withTracedAttributes(Collections.singleton(ServerAttribute.ENTITY_STREAM))
+            .withPhaseTimings()
+            .build();
+        ByteArrayOutputStream out = new ByteArrayOutputStream();
+        assertEquals(200, get(feature, "/hello", out).getStatus());
+
+        assertEquals("hello", out.toString("UTF-8"));
+        List<MockSpan> spans = this.mockTracer.finishedSpans();
+        assertEquals(1, spans.size());
+        assertEquals(5L, spans.get(0).tags().get("Response Bytes"));
+        assertTrue(spans.get(0).tags().get("Entity Write Micros") instanceof Long);
+        assertEquals(0, this.tracer.getInFlightSpanCount());
+    }
+
+    @Test
+    public void phasesAreOnlyTimedForTracedResourceMethods() throws Exception {
+        ServerTracingFeature feature = new ServerTracingFeature.Builder(this.tracer)
+            .withTraceAnnotations()
+            .withPhaseTimings()
+            .build();
+        MapPropertiesDelegate properties = new MapPropertiesDelegate();
+        assertEquals(200, get(feature, "/hello", new ByteArrayOutputStream(), properties).getStatus());
+        for (String name : properties.getPropertyNames()) {
+            assertFalse(name, name.startsWith(PhaseTimingRequestEventListener.class.getName()));
+        }
+        assertEquals(0, this.mockTracer.finishedSpans().size());
+
+        assertEquals(200, get(feature, "/hello/traced", new ByteArrayOutputStream()).getStatus());
+        List<MockSpan> spans = this.mockTracer.finishedSpans();
+        assertEquals(1, spans.size());
+        for (String phase : new String[] {"Matching Micros", "Request Filters Micros", "Resource Method Micros",
+                "Response Filters Micros", "Entity Write Micros"}) {
+            assertTrue(phase, spans.get(0).tags().get(phase) instanceof Long);
+        }
+    }
+
+    @Test
+    public void policyRatesOverrideTraceAnnotationRates() throws Exception {
+        DynamicTracingPolicy policy = new DynamicTracingPolicy(new TracingPolicy.Builder().build());
+        ServerTracingFeature feature = new ServerTracingFeature.Builder(this.tracer)
+            .withPolicy(policy)
+            .build();
+        assertEquals(200, get(feature, "/hello/rarely", new ByteArrayOutputStream()).getStatus());
+        assertEquals(0, this.mockTracer.finishedSpans().size());
+
+        new TracingPolicyTask(policy).execute(ImmutableMultimap.of("sampleRate.rarely", "1"),
+            new PrintWriter(new StringWriter()));
+        assertEquals(200, get(feature, "/hello/rarely", new ByteArrayOutputStream()).getStatus());
+        assertEquals(1, this.mockTracer.finishedSpans().size());
+        assertEquals("rarely", this.mockTracer.finishedSpans().get(0).operationName());
+
+        // other rates of the policy leave the annotation's rate in place
+        new TracingPolicyTask(policy).execute(ImmutableMultimap.of("reset", "", "sampleRate", "1"),
+            new PrintWriter(new StringWriter()));
+        assertEquals(200, get(feature, "/hello/rarely", new ByteArrayOutputStream()).getStatus());
+        assertEquals(1, this.mockTracer.finishedSpans().size());
+    }
+}
@@ -0,0 +1,89 @@
+package io.opentracing.contrib.dropwizard;
+
+import org.glassfish.jersey.client.ClientRequest;
+import org.glassfish.jersey.client.ClientResponse;
+import org.glassfish.jersey.client.spi.AsyncConnectorCallback;
+import org.glassfish.jersey.client.spi.Connector;
+import org.glassfish.jersey.client.spi.ConnectorProvider;
+
+import javax.ws.rs.ProcessingException;
+import javax.ws.rs.client.Client;
+import javax.ws.rs.core.Configuration;
+import javax.ws.rs.core.Response;
+import java.io.ByteArrayInputStream;
+import java.nio.charset.Charset;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+
+/**
+ * Answers every client request with the same entity, or fails it, without
+ * any network, running asynchronous requests on a thread of its own.
+ */
+final class StubConnectorProvider implements ConnectorProvider {
+
+    private final ExecutorService executor = Executors.newCachedThreadPool();
+    private volatile String entity = "hello";
+    private volatile ProcessingException failure;
+    private volatile ClientRequest lastRequest;
+
+    void answer(String entity) {
+        this.entity = entity;
+        this.failure = null;
+    }
+
+    void fail(ProcessingException failure) {
+        this.failure = failure;
+    }
+
+    /**
+     * @return the last request that reached the connector
+     */
+    ClientRequest lastRequest() {
+        return this.lastRequest;
+    }
+
+    @Override
+    public Connector getConnector(Client client, Configuration runtimeConfig) {
+        return new Connector() {
+            @Override
+            public ClientResponse apply(ClientRequest request) {
+                lastRequest = request;
+                ProcessingException failure = StubConnectorProvider.this.failure;
+                if (failure != null) {
+                    throw failure;
+                }
+                ClientResponse response = new ClientResponse(Response.Status.OK, request);
+                response.setEntityStream(new ByteArrayInputStream(entity.getBytes(Charset.forName("UTF-8"))));
+                return response;
+            }
+
+            @Override
+            public Future<?> apply(final ClientRequest request, final AsyncConnectorCallback callback) {
+                return executor.submit(new Runnable() {
+                    @Override
+                    public void run() {
+                        ClientResponse response;
+                        try {
+                            response = apply(request);
+                        } catch (ProcessingException e) {
+                            callback.failure(e);
+                            return;
+                        }
+                        callback.response(response);
+                    }
+                });
+            }
+
+            @Override
+            public String getName() {
+                return "stub";
+            }
+
+            @Override
+            public void close() {
+                executor.shutdown();
+            }
+        };
+    }
+}
@@ -0,0 +1,222 @@
+package io.opentracing.contrib.dropwizard;
+
+import io.opentracing.SpanContext;
+import io.opentracing.Tracer;
+import io.opentracing.propagation.Format;
+import io.opentracing.propagation.TextMap;
+import org.junit.Before;
+import org.junit.Test;
+
+import javax.ws.rs.core.MultivaluedHashMap;
+import javax.ws.rs.core.MultivaluedMap;
+import java.util.LinkedHashMap;
+import java.util.Map;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+
+public class TraceParentCodecTest {
+
+    private static final String TRACE_ID = "ot-tracer-traceid";
+    private static final String SPAN_ID = "ot-tracer-spanid";
+    private static final String SAMPLED = "ot-tracer-sampled";
+
+    /**
+     * Injects the headers of its span contexts as they are, and extracts
+     * span contexts of the headers it is offered.
+     */
+    private static final class HeadersTracer implements Tracer {
+
+        @Override
+        public SpanBuilder buildSpan(String operationName) {
+            throw new UnsupportedOperationException();
+        }
+
+        @Override
+        public <C> void inject(SpanContext spanContext, Format<C> format, C carrier) {
+            for (Map.Entry<String, String> header : spanContext.baggageItems()) {
+                ((TextMap) carrier).put(header.getKey(), header.getValue());
+            }
+        }
+
+        @Override
+        public <C> SpanContext extract(Format<C> format, C carrier) {
+            Map<String, String> headers = new LinkedHashMap<String, String>();
+            for (Map.Entry<String, String> header : (TextMap) carrier) {
+                headers.put(header.getKey(), header.getValue());
+            }
+            return new HeadersContext(headers);
+        }
+    }
+
+    private static final class HeadersContext implements SpanContext {
+
+        private final Map<String, String> headers;
+
+        HeadersContext(Map<String, String> headers) {
+            this.headers = headers;
+        }
+
+        @Override
+        public Iterable<Map.Entry<String, String>> baggageItems() {
+            return this.headers.entrySet();
+        }
+    }
+
+    private HeadersTracer tracer;
+    private TraceParentCodec codec;
+
+    @Before
+    public void setUp() {
+        this.tracer = new HeadersTracer();
+        this.codec = new TraceParentCodec.Builder(TRACE_ID, SPAN_ID)
+            .withSampledHeader(SAMPLED, "true", "false")
+            .build();
+    }
+
+    private static Map<String, String> headers(String... namesAndValues) {
+        Map<String, String> headers = new LinkedHashMap<String, String>();
+        for (int i = 0; i < namesAndValues.length; i += 2) {
+            headers.put(namesAndValues[i], namesAndValues[i + 1]);
+        }
+        return headers;
+    }
+
+    private Map<String, String> extract(Map<String, String> headers, String[] headerNames) {
+        MultivaluedMap<String, String> requestHeaders = new MultivaluedHashMap<String, String>();
+        for (Map.Entry<String, String> header : headers.entrySet()) {
+            requestHeaders.putSingle(header.getKey(), header.getValue());
+        }
+        return ((HeadersContext) this.tracer.extract(Format.Builtin.HTTP_HEADERS,
+            this.codec.extractAdapter(requestHeaders, headerNames))).headers;
+    }
+
+    private Map<String, String> extract(String traceParent) {
+        return extract(headers(TraceParentCodec.TRACE_PARENT, traceParent), null);
+    }
+
+    private Map<String, String> inject(Map<String, String> tracerHeaders) {
+        MultivaluedMap<String, Object> requestHeaders = new MultivaluedHashMap<String, Object>();
+        this.codec.inject(this.tracer, new HeadersContext(tracerHeaders), requestHeaders);
+        Map<String, String> headers = new LinkedHashMap<String, String>();
+        for (String name : requestHeaders.keySet()) {
+            headers.put(name, (String) requestHeaders.getFirst(name));
+        }
+        return headers;
+    }
+
+    @Test
+    public void traceParentIsExtractedAsTheTracerHeaders() {
+        assertEquals(headers(TRACE_ID, "4bf92f3577b34da6a3ce929d0e0e4736", SPAN_ID, "00f067aa0ba902b7",
+                SAMPLED, "true", TraceParentCodec.TRACE_PARENT,
+                "00-4bf92f3577b34da6a3ce929d0e0e4736-00f067aa0ba902b7-01"),
+            extract("00-4bf92f3577b34da6a3ce929d0e0e4736-00f067aa0ba902b7-01"));
+        assertEquals("false", extract("00-4bf92f3577b34da6a3ce929d0e0e4736-00f067aa0ba902b7-00").get(SAMPLED));
+    }
+
+    @Test
+    public void sixtyFourBitTraceIdsAreExtractedFromTheLowHalf() {
+        assertEquals("a3ce929d0e0e4736",
+            extract("00-0000000000000000a3ce929d0e0e4736-00f067aa0ba902b7-01").get(TRACE_ID));
+        assertEquals("0000000000000001a3ce929d0e0e4736",
+            extract("00-0000000000000001a3ce929d0e0e4736-00f067aa0ba902b7-01").get(TRACE_ID));
+    }
+
+    @Test
+    public void upperCaseHexIsAccepted() {
+        Map<String, String> headers = extract("00-4BF92F3577B34DA6A3CE929D0E0E4736-00F067AA0BA902B7-01");
+        assertEquals("4BF92F3577B34DA6A3CE929D0E0E4736", headers.get(TRACE_ID));
+        assertEquals("00F067AA0BA902B7", headers.get(SPAN_ID));
+    }
+
+    @Test
+    public void laterVersionsMayAppendFields() {
+        assertEquals("00f067aa0ba902b7",
+            extract("01-4bf92f3577b34da6a3ce929d0e0e4736-00f067aa0ba902b7-01-extra").get(SPAN_ID));
+    }
+
+    @Test
+    public void malformedTraceParentsFallBackToTheTracerHeaders() {
+        String[] malformed = {
+            "",
+            "00-4bf92f3577b34da6a3ce929d0e0e4736-00f067aa0ba902b7",
+            "00-4bf92f3577b34da6a3ce929d0e0e4736-00f067aa0ba902b7-01x",
+            "00_4bf92f3577b34da6a3ce929d0e0e4736-00f067aa0ba902b7-01",
+            "00-4bf92f3577b34da6a3ce929d0e0e4736_00f067aa0ba902b7-01",
+            "00-4bf92f3577b34da6a3ce929d0e0e4736-00f067aa0ba902b7_01",
+            "00-4bf92f3577b34da6a3ce929d0e0e473g-00f067aa0ba902b7-01",
+            "00-4bf92f3577b34da6a3ce929d0e0e4736-00f067aa0ba902bz-01",
+            "00-4bf92f3577b34da6a3ce929d0e0e4736-00f067aa0ba902b7-0x",
+            "00-4bf92f3577b34da6-a3ce929d0e0e4736-00f067aa0ba902b7-01",
+        };
+        for (String traceParent : malformed) {
+            Map<String, String> headers = headers(TraceParentCodec.TRACE_PARENT, traceParent,
+                TRACE_ID, "1", SPAN_ID, "2");
+            assertEquals(traceParent, headers, extract(headers, null));
+        }
+    }
+
+    @Test
+    public void badVersionsAreRejected() {
+        assertFalse(extract("ff-4bf92f3577b34da6a3ce929d0e0e4736-00f067aa0ba902b7-01").containsKey(TRACE_ID));
+        assertFalse(extract("0g-4bf92f3577b34da6a3ce929d0e0e4736-00f067aa0ba902b7-01").containsKey(TRACE_ID));
+    }
+
+    @Test
+    public void allZeroIdsAreRejected() {
+        assertFalse(extract("00-00000000000000000000000000000000-00f067aa0ba902b7-01").containsKey(TRACE_ID));
+        assertFalse(extract("00-4bf92f3577b34da6a3ce929d0e0e4736-0000000000000000-01").containsKey(SPAN_ID));
+    }
+
+    @Test
+    public void requestsWithoutTraceParentAreExtractedFromTheTracerHeaders() {
+        Map<String, String> headers = headers(TRACE_ID, "1", SPAN_ID, "2", "ot-baggage-user", "alice");
+        assertEquals(headers, extract(headers, null));
+        assertEquals(headers(TRACE_ID, "1", SPAN_ID, "2"), extract(headers, new String[] {TRACE_ID, SPAN_ID}));
+    }
+
+    @Test
+    public void extractedHeadersFollowTheTraceParent() {
+        Map<String, String> headers = extract(headers(
+            TraceParentCodec.TRACE_PARENT, "00-4bf92f3577b34da6a3ce929d0e0e4736-00f067aa0ba902b7-01",
+            "ot-baggage-user", "alice", "accept", "text/plain"),
+            new String[] {"ot-baggage-user"});
+        assertEquals(headers(TRACE_ID, "4bf92f3577b34da6a3ce929d0e0e4736", SPAN_ID, "00f067aa0ba902b7",
+            SAMPLED, "true", "ot-baggage-user", "alice"), headers);
+    }
+
+    @Test
+    public void tracerIdsAreInjectedInTheTraceParent() {
+        assertEquals(headers("ot-baggage-user", "alice",
+                TraceParentCodec.TRACE_PARENT, "00-0000000000000000000000000000abcd-00000000000000ef-01"),
+            inject(headers(TRACE_ID, "abcd", SPAN_ID, "EF", SAMPLED, "true", "ot-baggage-user", "alice")));
+        assertEquals(headers(TraceParentCodec.TRACE_PARENT, "00-4bf92f3577b34da6a3ce929d0e0e4736-00f067aa0ba902b7-00"),
+            inject(headers(TRACE_ID, "4bf92f3577b34da6a3ce929d0e0e4736", SPAN_ID, "00f067aa0ba902b7",
+                SAMPLED, "false")));
+    }
+
+    @Test
+    public void idsThatDontFitAreInjectedInTheTracerHeaders() {
+        Map<String, String> notHex = headers(TRACE_ID, "not-hex", SPAN_ID, "2", SAMPLED, "true");
+        assertEquals(notHex, inject(notHex));
+        Map<String, String> tooLong = headers(TRACE_ID, "1", SPAN_ID, "100f067aa0ba902b7");
+        assertEquals(tooLong, inject(tooLong));
+        Map<String, String> noSpanId = headers(TRACE_ID, "1");
+        assertEquals(noSpanId, inject(noSpanId));
+    }
+
+    @Test
+    public void spanContextsSurviveTheRoundTrip() {
+        this.codec = new TraceParentCodec.Builder(TRACE_ID, SPAN_ID).build();
+        Map<String, String> tracerHeaders = headers(TRACE_ID, "a3ce929d0e0e4736", SPAN_ID, "00f067aa0ba902b7",
+            "ot-baggage-user", "alice");
+        Map<String, String> injected = inject(tracerHeaders);
+        assertTrue(injected.containsKey(TraceParentCodec.TRACE_PARENT));
+        assertFalse(injected.containsKey(TRACE_ID));
+
+        Map<String, String> extracted = extract(injected, new String[] {"ot-baggage-user"});
+        assertEquals(tracerHeaders, extracted);
+        assertEquals(injected, inject(extracted));
+    }
+}